@@ -0,0 +1,69 @@
+package es.uvigo.det.labredes.dualeee.benchmarks;
+
+import es.uvigo.det.labredes.dualeee.*;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * This class compares the direct dispatch of built-in events with the reflective dispatch of events
+ * that name their own handler method.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+    /**
+     * The simulation run whose event list handles the events.
+     */
+    private SimulationContext context;
+    /**
+     * The event dispatched directly to the link handler.
+     */
+    private FrameDropEvent direct_event;
+    /**
+     * The event dispatched through its handler method name.
+     */
+    private FrameDropEvent reflective_event;
+
+    /**
+     * Creates the link and the events.
+     */
+    @Setup(Level.Trial)
+    public void setup () {
+	context = new SimulationContext();
+	context.output = new PrintStream(new ByteArrayOutputStream());
+	context.start();
+	direct_event = new FrameDropEvent(0, 0);
+	reflective_event = new FrameDropEvent(0, "handleFrameDropEvent", 0);
+    }
+
+    /**
+     * Handles a frame drop event dispatched directly.
+     *
+     * @return the time of the last event handled
+     */
+    @Benchmark
+    public long direct () {
+	context.event_handler.handleEvent(direct_event);
+	return context.event_handler.getSimulationTime();
+    }
+
+    /**
+     * Handles a frame drop event dispatched through reflection.
+     *
+     * @return the time of the last event handled
+     */
+    @Benchmark
+    public long reflective () {
+	context.event_handler.handleEvent(reflective_event);
+	return context.event_handler.getSimulationTime();
+    }
+}
@@ -0,0 +1,71 @@
+package es.uvigo.det.labredes.dualeee.benchmarks;
+
+import es.uvigo.det.labredes.dualeee.*;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * This class measures the cost of the EeeLink event handlers in each operation mode.
+ * <p>
+ * Every operation takes the next event of a never-ending simulation and hands it to the link, so the
+ * handlers are exercised in the mix of frame arrivals, transmissions and state transitions of a real run.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EeeLinkBenchmark {
+    /**
+     * The operation mode of the link.
+     */
+    @Param({"dual", "fast", "deep", "dual_dyn"})
+    public String operation_mode;
+    /**
+     * The traffic distribution.
+     */
+    @Param({"poisson", "pareto"})
+    public String traffic_distribution;
+    /**
+     * The arrival rate (in bits per second).
+     */
+    @Param({"1e9", "20e9"})
+    public double arrival_rate;
+
+    /**
+     * The simulation run.
+     */
+    private SimulationContext context;
+
+    /**
+     * Starts a simulation that does not end during the benchmark.
+     */
+    @Setup(Level.Trial)
+    public void setup () {
+	context = new SimulationContext();
+	context.operation_mode = operation_mode;
+	context.traffic_distribution = traffic_distribution;
+	context.arrival_rate = arrival_rate;
+	context.simulation_length = Long.MAX_VALUE / 2;
+	context.output = new PrintStream(new ByteArrayOutputStream());
+	context.start();
+    }
+
+    /**
+     * Handles the next event.
+     *
+     * @return the time of the handled event
+     */
+    @Benchmark
+    public long handleNextEvent () {
+	Event event = context.event_handler.getNextEvent(true);
+	context.event_handler.handleEvent(event);
+	return event.time;
+    }
+}
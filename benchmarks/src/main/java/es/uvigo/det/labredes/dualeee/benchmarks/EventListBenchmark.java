@@ -0,0 +1,102 @@
+package es.uvigo.det.labredes.dualeee.benchmarks;
+
+import es.uvigo.det.labredes.dualeee.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * This class measures the cost of the event list operations for several pending-set sizes and event queues.
+ * <p>
+ * The pending set is kept at a constant size with the classic hold model: the next event is removed and
+ * added back with a random increment of its event time, so every operation is one getNextEvent plus one addEvent.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventListBenchmark {
+    /**
+     * The number of pending events.
+     */
+    @Param({"16", "1024", "65536"})
+    public int pending_events;
+    /**
+     * The type of the event queue.
+     */
+    @Param({"binary", "quaternary", "calendar"})
+    public String event_queue_type;
+
+    /**
+     * The event list under test.
+     */
+    private EventList event_list;
+    /**
+     * The precomputed time increments (in picoseconds), drawn from an exponential distribution.
+     */
+    private long[] increments;
+    /**
+     * The index of the next time increment.
+     */
+    private int next_increment;
+
+    /**
+     * Fills the event list with the pending events.
+     */
+    @Setup(Level.Trial)
+    public void setup () {
+	SimulationContext context = new SimulationContext();
+	event_list = new EventList(context, Long.MAX_VALUE, EventQueue.create(event_queue_type));
+	Random rng = new Random(context.simulation_seed);
+	increments = new long[1 << 16];
+	for (int i = 0; i < increments.length; i++) {
+	    increments[i] = 1 + (long) (-Math.log(1 - rng.nextDouble()) * 1e6 * pending_events);
+	}
+	next_increment = 0;
+	for (int i = 0; i < pending_events; i++) {
+	    event_list.addEvent(new FrameDropEvent(nextIncrement(), i));
+	}
+    }
+
+    /**
+     * Returns the next time increment.
+     */
+    private long nextIncrement () {
+	long increment = increments[next_increment];
+	next_increment = (next_increment + 1) & (increments.length - 1);
+	return increment;
+    }
+
+    /**
+     * Removes the next event and adds it back later in time.
+     *
+     * @return the removed event
+     */
+    @Benchmark
+    public Event hold () {
+	Event event = event_list.getNextEvent(true);
+	event.time += nextIncrement();
+	event_list.addEvent(event);
+	return event;
+    }
+
+    /**
+     * Adds a state transition event at the head of the list, removes it by scanning the list
+     * and then performs a hold operation.
+     *
+     * @return true if the state transition event was removed
+     */
+    @Benchmark
+    public boolean removeStateTransitionEvent () {
+	Event head = event_list.getNextEvent(false);
+	event_list.addEvent(new StateTransitionEvent(head.time, EeeState.FAST_WAKE));
+	boolean removed = event_list.removeStateTransitionEvent(EeeState.FAST_WAKE);
+	hold();
+	return removed;
+    }
+}
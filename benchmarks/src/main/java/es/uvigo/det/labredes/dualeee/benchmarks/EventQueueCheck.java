@@ -0,0 +1,174 @@
+package es.uvigo.det.labredes.dualeee.benchmarks;
+
+import es.uvigo.det.labredes.dualeee.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * EventQueueCheck: checks every event queue type against a sorted reference with random operations.
+ * <p>
+ * The simulations of ScenarioBenchmark keep only a handful of pending events per link, so they hardly
+ * exercise the code paths of the event queues that depend on the number of pending events, such as the
+ * resizes of the calendar queue. This check adds, polls, peeks and removes random events, growing the
+ * queue up to thousands of events and shrinking it back to empty several times, and compares every result
+ * with that of a TreeSet ordered by EventQueue.ORDER. Event times never go back before the last polled event,
+ * as in a simulation, and are drawn from several regimes: close events, simultaneous events (ordered by their
+ * sequence numbers) and events far in the future, which leave the calendar queue without events for a whole year.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public final class EventQueueCheck {
+    /**
+     * The event queue types checked.
+     */
+    public static final String[] EVENT_QUEUE_TYPES = {"binary", "quaternary", "calendar"};
+    /**
+     * The maximum number of pending events.
+     */
+    public static final int MAX_PENDING_EVENTS = 4096;
+
+    private EventQueueCheck () {}
+
+    /**
+     * Prints on standard error the specified message and exits.
+     */
+    public static void printError (String s) {
+	System.err.println("ERROR: " + s);
+	System.exit(1);
+    }
+
+    /**
+     * Returns a random event time not earlier than the specified instant.
+     */
+    private static long nextTime (Random rng, long now) {
+	double u = rng.nextDouble();
+	if (u < 0.2) {
+	    return now;
+	} else if (u < 0.25) {
+	    return now + 1 + (long) (rng.nextDouble() * 1e12);
+	}
+	return now + 1 + (long) (-Math.log(1 - rng.nextDouble()) * 1e6);
+    }
+
+    /**
+     * Runs the specified number of random operations on a new event queue of the specified type.
+     *
+     * @param type       the event queue type: binary|quaternary|calendar
+     * @param seed       the seed of the random operations
+     * @param operations the number of operations
+     * @return null if every result matches that of the reference, or a description of the first mismatch
+     */
+    public static String check (String type, long seed, int operations) {
+	EventQueue queue = EventQueue.create(type);
+	TreeSet<Event> reference = new TreeSet<Event>(EventQueue.ORDER);
+	List<Event> added = new ArrayList<Event>();
+	Random rng = new Random(seed);
+	long now = 0, sequence_number = 0;
+	boolean growing = true;
+	for (int i = 0; i < operations; i++) {
+	    if (reference.size() >= MAX_PENDING_EVENTS) {
+		growing = false;
+	    } else if (reference.isEmpty()) {
+		growing = true;
+	    }
+	    double u = rng.nextDouble();
+	    if (u < (growing ? 0.6 : 0.3)) {
+		Event event = new FrameDropEvent(nextTime(rng, now), sequence_number);
+		event.sequence_number = sequence_number++;
+		queue.add(event);
+		reference.add(event);
+		added.add(event);
+	    } else if (u < 0.9) {
+		Event expected = reference.pollFirst();
+		Event event = queue.poll();
+		if (event != expected) {
+		    return "poll " + i + ": expected " + describe(expected) + ", got " + describe(event);
+		}
+		if (event != null) {
+		    now = event.time;
+		}
+	    } else if (u < 0.95) {
+		if (queue.peek() != (reference.isEmpty() ? null : reference.first())) {
+		    return "peek " + i + ": expected " + describe(reference.isEmpty() ? null : reference.first()) + ", got " + describe(queue.peek());
+		}
+	    } else if (!added.isEmpty()) {
+		int j = rng.nextInt(added.size());
+		Event event = added.get(j);
+		added.set(j, added.get(added.size() - 1));
+		added.remove(added.size() - 1);
+		boolean expected = reference.remove(event);
+		if (queue.remove(event) != expected) {
+		    return "remove " + i + ": expected " + expected + " for " + describe(event);
+		}
+	    }
+	    if (queue.size() != reference.size()) {
+		return "size " + i + ": expected " + reference.size() + ", got " + queue.size();
+	    }
+	}
+	Event[] events = queue.toSortedArray();
+	Event[] expected = reference.toArray(new Event[reference.size()]);
+	for (int i = 0; i < expected.length; i++) {
+	    if (events[i] != expected[i]) {
+		return "toSortedArray: expected " + describe(expected[i]) + " at " + i + ", got " + describe(events[i]);
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * Returns the event time and sequence number of the specified event.
+     */
+    private static String describe (Event event) {
+	return event == null ? "null" : event.time + "/" + event.sequence_number;
+    }
+
+    /**
+     * Main method.
+     * Usage: java EventQueueCheck [-s seed] [-n operations]
+     * <p>
+     * The exit status is 1 if any event queue does not match the reference.
+     */
+    public static void main (String[] args) {
+	long seed = 123456789;
+	int operations = 1000000;
+
+	// Arguments parsing
+	for (int i = 0; i < args.length; i++) {
+	    if (args[i].equals("-s")) {
+		try {
+		    seed = Long.parseLong(args[i+1]);
+		} catch (NumberFormatException e) {
+		    printError("Invalid seed!");
+		}
+		i++;
+	    } else if (args[i].equals("-n")) {
+		try {
+		    operations = Integer.parseInt(args[i+1]);
+		} catch (NumberFormatException e) {
+		    printError("Invalid number of operations!");
+		}
+		if (operations < 1) {
+		    printError("Invalid number of operations!");
+		}
+		i++;
+	    } else {
+		printError("Unknown argument: " + args[i] + "\nUsage: java EventQueueCheck [-s seed] [-n operations]");
+	    }
+	}
+
+	int mismatches = 0;
+	for (String type : EVENT_QUEUE_TYPES) {
+	    String mismatch = check(type, seed, operations);
+	    System.out.format("%-12s %s%n", type, mismatch == null ? "OK" : "MISMATCH " + mismatch);
+	    if (mismatch != null) {
+		mismatches++;
+	    }
+	}
+	if (mismatches > 0) {
+	    printError(mismatches + " event queues do not match the reference!");
+	}
+    }
+}
@@ -0,0 +1,111 @@
+package es.uvigo.det.labredes.dualeee.benchmarks;
+
+import es.uvigo.det.labredes.dualeee.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * This class measures the cost of drawing the next interarrival time and the next frame size
+ * from each traffic and frame size generator, one at a time and in batches of EeeLink.MAX_BATCH_SIZE.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeneratorBenchmark {
+    /**
+     * The distribution of the traffic generator.
+     */
+    @Param({"deterministic", "poisson", "pareto"})
+    public String traffic_distribution;
+    /**
+     * The distribution of the frame size generator.
+     */
+    @Param({"deterministic", "uniform", "bimodal"})
+    public String frame_size_distribution;
+    /**
+     * The random number generator of both generators.
+     */
+    @Param({"java", "xoshiro"})
+    public String random_generator;
+
+    /**
+     * The traffic generator under test.
+     */
+    private TrafficGenerator traffic_generator;
+    /**
+     * The frame size generator under test.
+     */
+    private FrameSizeGenerator frame_size_generator;
+    /**
+     * The batch of arrival instants.
+     */
+    private long[] arrival_batch = new long[EeeLink.MAX_BATCH_SIZE];
+    /**
+     * The batch of frame sizes.
+     */
+    private int[] frame_size_batch = new int[EeeLink.MAX_BATCH_SIZE];
+
+    /**
+     * Creates the generators with the default configuration.
+     */
+    @Setup(Level.Trial)
+    public void setup () {
+	SimulationContext context = new SimulationContext();
+	context.traffic_distribution = traffic_distribution;
+	context.frame_size_distribution = frame_size_distribution;
+	context.frame_size_range = 1000;
+	context.random_generator = random_generator;
+	traffic_generator = context.createTrafficGenerator();
+	frame_size_generator = context.createFrameSizeGenerator();
+    }
+
+    /**
+     * Draws the next interarrival time.
+     *
+     * @return the next interarrival time (in seconds)
+     */
+    @Benchmark
+    public double getNextArrival () {
+	return traffic_generator.getNextArrival();
+    }
+
+    /**
+     * Draws the next frame size.
+     *
+     * @return the next frame size (in bytes)
+     */
+    @Benchmark
+    public int getNextFrameSize () {
+	return frame_size_generator.getNextFrameSize();
+    }
+
+    /**
+     * Draws a batch of arrival instants.
+     *
+     * @return the batch of arrival instants (in picoseconds)
+     */
+    @Benchmark
+    @OperationsPerInvocation(EeeLink.MAX_BATCH_SIZE)
+    public long[] getNextArrivals () {
+	traffic_generator.getNextArrivals(arrival_batch, arrival_batch.length);
+	return arrival_batch;
+    }
+
+    /**
+     * Draws a batch of frame sizes.
+     *
+     * @return the batch of frame sizes (in bytes)
+     */
+    @Benchmark
+    @OperationsPerInvocation(EeeLink.MAX_BATCH_SIZE)
+    public int[] getNextFrameSizes () {
+	frame_size_generator.getNextFrameSizes(frame_size_batch, frame_size_batch.length);
+	return frame_size_batch;
+    }
+}
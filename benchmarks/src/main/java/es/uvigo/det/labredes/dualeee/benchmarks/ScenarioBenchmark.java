@@ -0,0 +1,365 @@
+package es.uvigo.det.labredes.dualeee.benchmarks;
+
+import es.uvigo.det.labredes.dualeee.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ScenarioBenchmark: runs a canonical set of full simulations and reports their performance.
+ * <p>
+ * Scenarios combine every operation mode of example.config with deterministic, Poisson and Pareto
+ * traffic on 10G, 40G and 100G links loaded at 25% of their capacity (the load of example.config).
+ * For each scenario the benchmark reports the events handled per wall-clock second, the allocation
+ * rate and the peak heap usage, and checks the statistics printed by the simulator against a golden
+ * output, so that a performance change that silently alters the simulation results is caught.
+ * <p>
+ * Results can be written to a CSV file and compared against the results of a previous run to track
+ * regressions of the events per second.
+ * <p>
+ * The scenarios run on the default event queue. Before them, every event queue type is checked against
+ * a sorted reference with EventQueueCheck, so that the other queues are checked as well.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public final class ScenarioBenchmark {
+    /**
+     * The operation modes of the scenarios.
+     */
+    public static final String[] OPERATION_MODES = {"dual", "fast", "deep", "dual_dyn", "fast_dyn", "deep_dyn", "fast_mul", "deep_mul", "fast_time_dyn", "deep_time_dyn", "mostowfi"};
+    /**
+     * The traffic distributions of the scenarios.
+     */
+    public static final String[] TRAFFIC_DISTRIBUTIONS = {"deterministic", "poisson", "pareto"};
+    /**
+     * The link capacities of the scenarios (in b/s).
+     */
+    public static final double[] LINK_CAPACITIES = {10e9, 40e9, 100e9};
+    /**
+     * The load of the links (fraction of their capacity).
+     */
+    public static final double LOAD = 0.25;
+    /**
+     * The length of every scenario (in seconds). Golden outputs are recorded with this length.
+     */
+    public static final double SCENARIO_LENGTH = 0.1;
+    /**
+     * The relative drop of events per second reported as a regression.
+     */
+    public static final double REGRESSION_TOLERANCE = 0.1;
+    /**
+     * The number of random operations of the event queue checks.
+     */
+    public static final int QUEUE_CHECK_OPERATIONS = 200000;
+
+    private ScenarioBenchmark () {}
+
+    /**
+     * Prints on standard error the specified message and exits.
+     */
+    public static void printError (String s) {
+	System.err.println("ERROR: " + s);
+	System.exit(1);
+    }
+
+    /**
+     * Returns the name of the specified scenario.
+     */
+    private static String getName (String mode, String traffic, double capacity) {
+	return mode + "-" + traffic + "-" + (long) (capacity / 1e9) + "G";
+    }
+
+    /**
+     * Returns the configuration of the specified scenario, in the config file format.
+     * Queue thresholds and physical parameters are those of example.config. The *_dyn modes
+     * get a 32 us target delay and a 128 us max delay, and the *_mul and mostowfi modes, which
+     * need a max delay to work, a 32 us max delay.
+     */
+    private static String getConfiguration (String mode, String traffic, double capacity) {
+	StringBuilder config = new StringBuilder();
+	config.append("LINK ").append(capacity).append('\n');
+	config.append("TRAFFIC ").append(traffic).append(' ').append(LOAD * capacity);
+	if (traffic.equals("pareto")) {
+	    config.append(" 2.5");
+	}
+	config.append(" deterministic 1500\n");
+	config.append("FAST 0.7 0.18e-6 0.34e-6\n");
+	config.append("DEEP 0.1 0.72e-6 5.5e-6\n");
+	String delays = " 0 0";
+	if (mode.contains("dyn")) {
+	    delays = " 32e-6 128e-6";
+	} else if (mode.contains("mul") || mode.equals("mostowfi")) {
+	    delays = " 0 32e-6";
+	}
+	config.append("EEE ").append(mode).append(delays).append(" 4 8 3.5e-6\n");
+	return config.toString();
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or -1 if the JVM does not report them.
+     */
+    private static long getAllocatedBytes () {
+	java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+	if (bean instanceof com.sun.management.ThreadMXBean) {
+	    return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	return -1;
+    }
+
+    /**
+     * Resets the peak usage of every heap memory pool.
+     */
+    private static void resetPeakHeap () {
+	for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+	    if (pool.getType() == MemoryType.HEAP) {
+		pool.resetPeakUsage();
+	    }
+	}
+    }
+
+    /**
+     * Returns the sum of the peak usages of every heap memory pool (in bytes).
+     */
+    private static long getPeakHeap () {
+	long peak = 0;
+	for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+	    if (pool.getType() == MemoryType.HEAP) {
+		peak += pool.getPeakUsage().getUsed();
+	    }
+	}
+	return peak;
+    }
+
+    /**
+     * Reads the events per second of each scenario from a results file written by a previous run.
+     */
+    private static Map<String, Double> readResults (String filename) throws IOException {
+	Map<String, Double> results = new HashMap<String, Double>();
+	BufferedReader reader = new BufferedReader(new FileReader(filename));
+	try {
+	    reader.readLine(); // Header
+	    for (String line; (line = reader.readLine()) != null;) {
+		String[] fields = line.split(",");
+		results.put(fields[0], Double.parseDouble(fields[2]));
+	    }
+	} finally {
+	    reader.close();
+	}
+	return results;
+    }
+
+    /**
+     * Main method.
+     * Usage: java ScenarioBenchmark [-g golden_dir] [-u] [-n warmup_runs] [-r measured_runs] [-o results_file] [-c baseline_results_file] [scenario_regexp]
+     * <p>
+     * Each scenario is run warmup_runs times (2 by default) and then measured_runs times (5 by default).
+     * The events per second of the fastest measured run are reported, together with the allocation rate
+     * over all the measured runs and their highest peak heap usage. Option -u records the golden outputs
+     * instead of checking them. The exit status is 1 if any output does not match its golden output
+     * or any event queue does not match the reference.
+     */
+    public static void main (String[] args) {
+	String golden_dir = "benchmarks/golden";
+	boolean update = false;
+	int warmup_runs = 2;
+	int measured_runs = 5;
+	String results_file = null;
+	String baseline_file = null;
+	String pattern = ".*";
+
+	// Arguments parsing
+	for (int i = 0; i < args.length; i++) {
+	    if (args[i].equals("-g")) {
+		if (i+1 < args.length) {
+		    golden_dir = args[i+1];
+		} else {
+		    printError("Invalid golden output directory!");
+		}
+		i++;
+	    } else if (args[i].equals("-u")) {
+		update = true;
+	    } else if (args[i].equals("-n")) {
+		try {
+		    warmup_runs = Integer.parseInt(args[i+1]);
+		} catch (NumberFormatException e) {
+		    printError("Invalid number of warmup runs!");
+		}
+		if (warmup_runs < 0) {
+		    printError("Invalid number of warmup runs!");
+		}
+		i++;
+	    } else if (args[i].equals("-r")) {
+		try {
+		    measured_runs = Integer.parseInt(args[i+1]);
+		} catch (NumberFormatException e) {
+		    printError("Invalid number of measured runs!");
+		}
+		if (measured_runs < 1) {
+		    printError("Invalid number of measured runs!");
+		}
+		i++;
+	    } else if (args[i].equals("-o")) {
+		if (i+1 < args.length) {
+		    results_file = args[i+1];
+		} else {
+		    printError("Invalid results file!");
+		}
+		i++;
+	    } else if (args[i].equals("-c")) {
+		if (i+1 < args.length) {
+		    baseline_file = args[i+1];
+		} else {
+		    printError("Invalid baseline results file!");
+		}
+		i++;
+	    } else if (!args[i].startsWith("-")) {
+		pattern = args[i];
+	    } else {
+		printError("Unknown argument: " + args[i] + "\nUsage: java ScenarioBenchmark [-g golden_dir] [-u] [-n warmup_runs] [-r measured_runs] [-o results_file] [-c baseline_results_file] [scenario_regexp]");
+	    }
+	}
+
+	Map<String, Double> baseline = null;
+	if (baseline_file != null) {
+	    try {
+		baseline = readResults(baseline_file);
+	    } catch (Exception e) {
+		printError("Error while reading baseline results file!");
+	    }
+	}
+	if (update) {
+	    new File(golden_dir).mkdirs();
+	}
+
+	// Event queue checks
+	int mismatches = 0, regressions = 0;
+	for (String type : EventQueueCheck.EVENT_QUEUE_TYPES) {
+	    String mismatch = EventQueueCheck.check(type, new SimulationContext().simulation_seed, QUEUE_CHECK_OPERATIONS);
+	    System.out.format("%-28s %s%n", "Event queue " + type, mismatch == null ? "OK" : "MISMATCH " + mismatch);
+	    if (mismatch != null) {
+		mismatches++;
+	    }
+	}
+
+	List<String> rows = new ArrayList<String>();
+	rows.add("scenario,events,events_per_second,allocation_rate,peak_heap,golden");
+	System.out.format("%-28s %12s %14s %12s %10s %8s%n", "Scenario", "Events", "Events/s", "Alloc MB/s", "Heap MB", "Golden");
+	for (String mode : OPERATION_MODES) {
+	    for (String traffic : TRAFFIC_DISTRIBUTIONS) {
+		for (double capacity : LINK_CAPACITIES) {
+		    String name = getName(mode, traffic, capacity);
+		    if (!name.matches(pattern)) {
+			continue;
+		    }
+		    String configuration = getConfiguration(mode, traffic, capacity);
+
+		    SimulationContext context = null;
+		    long allocated = 0, peak_heap = 0;
+		    double elapsed = Double.MAX_VALUE, total_elapsed = 0;
+		    try {
+			// Warmup runs
+			for (int i = 0; i < warmup_runs; i++) {
+			    runScenario(configuration);
+			}
+
+			// Measured runs: the fastest one is reported
+			for (int i = 0; i < measured_runs; i++) {
+			    System.gc();
+			    resetPeakHeap();
+			    long start_allocated = getAllocatedBytes();
+			    long start = System.nanoTime();
+			    context = runScenario(configuration);
+			    double run_elapsed = (System.nanoTime() - start) / 1e9;
+			    allocated = start_allocated >= 0 && allocated >= 0 ? allocated + getAllocatedBytes() - start_allocated : -1;
+			    peak_heap = Math.max(peak_heap, getPeakHeap());
+			    elapsed = Math.min(elapsed, run_elapsed);
+			    total_elapsed += run_elapsed;
+			}
+		    } catch (SimulationException e) {
+			printError(name + ": " + e.getMessage());
+		    }
+		    long events = context.event_handler.getHandledEvents();
+		    double events_per_second = events / elapsed;
+		    double allocation_rate = allocated >= 0 ? allocated / total_elapsed : Double.NaN;
+
+		    // Golden output
+		    ByteArrayOutputStream output = new ByteArrayOutputStream();
+		    context.output = new PrintStream(output);
+		    context.printStatistics();
+		    context.output.flush();
+		    File golden_file = new File(golden_dir, name + ".txt");
+		    String golden;
+		    try {
+			if (update) {
+			    Files.write(golden_file.toPath(), output.toByteArray());
+			    golden = "UPDATED";
+			} else if (!golden_file.exists()) {
+			    golden = "MISSING";
+			    mismatches++;
+			} else if (new String(Files.readAllBytes(golden_file.toPath()), StandardCharsets.UTF_8).equals(output.toString("UTF-8"))) {
+			    golden = "OK";
+			} else {
+			    golden = "MISMATCH";
+			    mismatches++;
+			}
+		    } catch (IOException e) {
+			golden = "ERROR";
+			mismatches++;
+		    }
+
+		    System.out.format("%-28s %12d %14.0f %12.1f %10.1f %8s", name, events, events_per_second, allocation_rate / 1e6, peak_heap / 1e6, golden);
+		    if (baseline != null && baseline.containsKey(name)) {
+			double ratio = events_per_second / baseline.get(name);
+			System.out.format(" %+.1f%%", 100 * (ratio - 1));
+			if (ratio < 1 - REGRESSION_TOLERANCE) {
+			    System.out.print(" REGRESSION");
+			    regressions++;
+			}
+		    }
+		    System.out.println();
+		    rows.add(String.format("%s,%d,%.0f,%.0f,%d,%s", name, events, events_per_second, allocation_rate, peak_heap, golden));
+		}
+	    }
+	}
+
+	if (results_file != null) {
+	    try {
+		PrintStream out = new PrintStream(new FileOutputStream(results_file));
+		for (String row : rows) {
+		    out.println(row);
+		}
+		out.close();
+	    } catch (IOException e) {
+		printError("Error while writing results file!");
+	    }
+	}
+	if (regressions > 0) {
+	    System.out.format("%d scenarios are more than %.0f%% slower than the baseline%n", regressions, 100 * REGRESSION_TOLERANCE);
+	}
+	if (mismatches > 0) {
+	    printError(mismatches + " scenarios or event queues do not match their golden output or reference!");
+	}
+    }
+
+    /**
+     * Runs a scenario with the specified configuration.
+     *
+     * @param configuration the configuration, in the config file format
+     * @return the simulation run, already finished
+     */
+    private static SimulationContext runScenario (String configuration) {
+	SimulationContext context = new SimulationContext();
+	context.simulation_length = (long) (1e12 * SCENARIO_LENGTH);
+	context.readConfiguration(new BufferedReader(new StringReader(configuration)));
+	context.run();
+	return context;
+    }
+}
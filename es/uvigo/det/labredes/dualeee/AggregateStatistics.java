@@ -0,0 +1,89 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class aggregates the statistics of several links measured over the same period, one link at a time.
+ * <p>
+ * Frame counts and bit rates are added up, frame delays and sizes are averaged over all the frames,
+ * the maximum frame delays are the largest ones and the average coalescing cycle is averaged over all the
+ * coalescing cycles. The power consumption is averaged over the links and also added up into the total
+ * power consumption. The rest of metrics are averaged over the links that report them, except frame
+ * delay percentiles, which cannot be aggregated from the statistics alone.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class AggregateStatistics {
+    /**
+     * The weighted sum, the sum of weights, the maximum and the number of links of each metric.
+     */
+    private Map<String, double[]> metrics;
+
+    /**
+     * Creates new empty aggregate statistics.
+     */
+    public AggregateStatistics () {
+	metrics = new LinkedHashMap<String, double[]>();
+    }
+
+    /**
+     * Adds the statistics of a link.
+     *
+     * @param link the statistics of the link
+     */
+    public void add (LinkStatistics link) {
+	for (String name : link.getNames()) {
+	    if (name.startsWith("frame_delay_p")) {
+		continue;
+	    }
+	    double[] metric = metrics.get(name);
+	    if (metric == null) {
+		metric = new double[] {0, 0, Double.NEGATIVE_INFINITY, 0};
+		metrics.put(name, metric);
+	    }
+	    double value = link.get(name);
+	    double weight = 1;
+	    if (name.equals("average_frame_delay")) {
+		weight = link.get("frames_sent");
+	    } else if (name.equals("average_end_to_end_delay")) {
+		weight = link.get("frames_delivered");
+	    } else if (name.equals("average_frame_size")) {
+		weight = link.get("frames_received");
+	    } else if (name.equals("average_coalescing_cycle")) {
+		value = 1 / value; // Cycles per microsecond
+	    }
+	    metric[0] += value * weight;
+	    metric[1] += weight;
+	    metric[2] = Math.max(metric[2], value);
+	    metric[3]++;
+	}
+    }
+
+    /**
+     * Returns the aggregate statistics of all the links added so far.
+     *
+     * @return the aggregate statistics
+     */
+    public LinkStatistics getStatistics () {
+	LinkStatistics stats = new LinkStatistics();
+	for (Map.Entry<String, double[]> entry : metrics.entrySet()) {
+	    String name = entry.getKey();
+	    double[] metric = entry.getValue();
+	    if (name.matches("frames_received|frames_sent|frames_dropped|frames_delivered|average_bit_rate")) {
+		stats.put(name, metric[0]);
+	    } else if (name.matches("maximum_frame_delay|maximum_end_to_end_delay")) {
+		stats.put(name, metric[2]);
+	    } else if (name.equals("average_coalescing_cycle")) {
+		stats.put(name, metric[3] / metric[0]);
+	    } else {
+		stats.put(name, metric[0] / metric[1]);
+	    }
+	    if (name.equals("power_consumption")) {
+		stats.put("total_power_consumption", metric[0]);
+	    }
+	}
+	return stats;
+    }
+}
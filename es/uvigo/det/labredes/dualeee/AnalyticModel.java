@@ -0,0 +1,244 @@
+package es.uvigo.det.labredes.dualeee;
+
+/**
+ * This class computes in closed form the expected power consumption and frame delay of an EEE link with Poisson
+ * arrivals and deterministic frame sizes, without simulating any event. It is meant to screen configurations
+ * before simulating them.
+ * <p>
+ * The link is modelled as an M/D/1 queue that, whenever it empties, goes to sleep and wakes up either when the
+ * queue reaches the wake threshold once asleep or a max delay after the first arrival, whichever happens first.
+ * The fast and deep modes sleep in fast wake and in deep sleep, respectively; the dual mode is modelled as the
+ * simulator runs it after the first cycle, going to deep sleep through the fast to deep transition. The frame
+ * delay follows from the decomposition property of queues with vacations: the M/D/1 waiting time plus the mean
+ * number of frames queued at a random instant of the period without service, divided by the arrival rate.
+ * The integrals of the Poisson probabilities over that period are solved piecewise in closed form.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class AnalyticModel {
+    /**
+     * The frame arrival rate (in frames per second).
+     */
+    private double lambda;
+    /**
+     * The frame transmission time (in seconds).
+     */
+    private double service_time;
+    /**
+     * The time to go to sleep (in seconds).
+     */
+    private double sleep_time;
+    /**
+     * The time to wake up (in seconds).
+     */
+    private double wake_time;
+    /**
+     * The power consumption while asleep (relative to the active state).
+     */
+    private double sleep_consumption;
+    /**
+     * The queue size that wakes up the sleeping link, or 0 if there is no wake threshold.
+     */
+    private int wake_threshold;
+    /**
+     * The max delay since the first arrival after which the link wakes up (in seconds), or 0 if there is no max delay.
+     */
+    private double max_delay;
+    /**
+     * The expected power consumption (relative to the active state).
+     */
+    private double power_consumption;
+    /**
+     * The expected frame delay, excluding the transmission time (in useconds).
+     */
+    private double average_frame_delay;
+
+    /**
+     * Checks whether the specified configuration can be evaluated analytically: Poisson arrivals, deterministic
+     * frame sizes, fast, deep or dual mode, and a wake threshold or a max delay.
+     *
+     * @param ctx the configuration of the link
+     * @return true if the configuration can be evaluated
+     */
+    public static boolean supports (SimulationContext ctx) {
+	if (!ctx.traffic_distribution.equals("poisson") || !ctx.frame_size_distribution.equals("deterministic") || ctx.arrival_rate <= 0 || ctx.ports != null ||
+	    ctx.coalescing_policies.containsKey(ctx.operation_mode)) {
+	    return false;
+	}
+	if (ctx.operation_mode.equals("fast")) {
+	    return ctx.fast_to_active_qth > 0 || ctx.max_delay > 0;
+	}
+	if (ctx.operation_mode.matches("deep|dual")) {
+	    return ctx.deep_to_active_qth > 0 || ctx.max_delay > 0;
+	}
+	return false;
+    }
+
+    /**
+     * Evaluates the specified configuration.
+     *
+     * @param ctx the configuration of the link
+     * @throws SimulationException if the configuration cannot be evaluated analytically
+     */
+    public AnalyticModel (SimulationContext ctx) {
+	if (!supports(ctx)) {
+	    throw new SimulationException("Analytic model: only Poisson traffic with deterministic frame sizes in fast, deep or dual mode is supported!");
+	}
+	lambda = ctx.arrival_rate / (8.0 * ctx.frame_size);
+	service_time = 8.0 * ctx.frame_size / ctx.link_capacity;
+	max_delay = ctx.max_delay / 1e12;
+	if (ctx.operation_mode.equals("fast")) {
+	    sleep_time = ctx.active_to_fast_t / 1e12;
+	    wake_time = ctx.fast_to_active_t / 1e12;
+	    sleep_consumption = ctx.fast_wake_consumption;
+	    wake_threshold = ctx.fast_to_active_qth;
+	} else {
+	    sleep_time = (ctx.operation_mode.equals("dual") ? ctx.fast_to_deep_t : ctx.active_to_fast_t + ctx.fast_to_deep_t) / 1e12;
+	    wake_time = ctx.deep_to_active_t / 1e12;
+	    sleep_consumption = ctx.deep_sleep_consumption;
+	    wake_threshold = ctx.deep_to_active_qth;
+	}
+	evaluate();
+    }
+
+    /**
+     * Returns the expected power consumption.
+     *
+     * @return the power consumption (relative to the active state)
+     */
+    public double getPowerConsumption () {
+	return power_consumption;
+    }
+
+    /**
+     * Returns the expected frame delay, excluding the transmission time, as the simulator measures it.
+     *
+     * @return the average frame delay (in useconds), or infinity if the link is saturated
+     */
+    public double getAverageFrameDelay () {
+	return average_frame_delay;
+    }
+
+    /**
+     * Checks whether this configuration is clearly better than the specified one: both its power consumption
+     * and its frame delay are lower by more than the specified relative margin.
+     *
+     * @param model  the analytic model of the other configuration
+     * @param margin the relative margin (e.g. 0.1 for 10%)
+     * @return true if this configuration dominates the specified one
+     */
+    public boolean dominates (AnalyticModel model, double margin) {
+	return power_consumption * (1 + margin) < model.power_consumption && average_frame_delay * (1 + margin) < model.average_frame_delay;
+    }
+
+    /**
+     * Computes the expected power consumption and frame delay.
+     * W is the instant, since the queue empties, at which the link starts to wake up and N(t) the number of
+     * arrivals up to t. The expected values of W, of min(W, sleep_time) and of the integral of N(t) up to W
+     * are obtained by integrating P(W > t) and E[N(t); W > t] over the intervals delimited by the sleep time
+     * and the max delay.
+     */
+    private void evaluate () {
+	double rho = lambda * service_time;
+	if (rho >= 1) {
+	    power_consumption = 1;
+	    average_frame_delay = Double.POSITIVE_INFINITY;
+	    return;
+	}
+	double[] bounds = max_delay > 0 ? new double[] {0, Math.min(sleep_time, max_delay), Math.max(sleep_time, max_delay), Double.POSITIVE_INFINITY} :
+	    new double[] {0, sleep_time, Double.POSITIVE_INFINITY};
+	double time_to_sleep = 0, time_asleep = 0, queue_integral = 0;
+	for (int i = 0; i + 1 < bounds.length; i++) {
+	    double a = bounds[i], b = bounds[i+1];
+	    if (b <= a) {
+		continue;
+	    }
+	    double[] integrals = integrate(a, b, wake_threshold > 0 && a >= sleep_time, max_delay > 0 && a >= max_delay);
+	    if (a < sleep_time) {
+		time_to_sleep += integrals[0];
+	    } else {
+		time_asleep += integrals[0];
+	    }
+	    queue_integral += integrals[1];
+	}
+	double wake_instant = time_to_sleep + time_asleep;
+	double idle_period = wake_instant + wake_time;
+	double cycle = idle_period / (1 - rho);
+	double busy_period = cycle - idle_period;
+	power_consumption = (time_to_sleep + sleep_consumption * time_asleep + wake_time + busy_period) / cycle;
+
+	// Frames queued during the wake up: those arrived before W plus those arriving while waking up
+	queue_integral += lambda * wake_instant * wake_time + lambda * wake_time * wake_time / 2;
+	double md1_delay = rho * service_time / (2 * (1 - rho));
+	average_frame_delay = 1e6 * (md1_delay + queue_integral / idle_period / lambda);
+    }
+
+    /**
+     * Returns the integrals of P(W > t) and of E[N(t); W > t] between the specified instants, within which the wake
+     * threshold and the max delay are either active or not.
+     */
+    private double[] integrate (double a, double b, boolean threshold, boolean timer) {
+	if (timer) {
+	    // No arrival before t - max_delay and less than wake_threshold arrivals in the last max_delay
+	    double mass = (Math.exp(-lambda * (a - max_delay)) - (b == Double.POSITIVE_INFINITY ? 0 : Math.exp(-lambda * (b - max_delay)))) / lambda;
+	    double x = lambda * max_delay;
+	    double probability = threshold ? poissonCdf(wake_threshold, x) : 1;
+	    double arrivals = threshold ? x * poissonCdf(wake_threshold - 1, x) : x;
+	    return new double[] {probability * mass, arrivals * mass};
+	}
+	if (threshold) {
+	    double[] sa = poissonSums(lambda * a), sb = poissonSums(lambda * b);
+	    return new double[] {(sa[0] - sb[0]) / lambda, (sa[1] - sb[1]) / lambda};
+	}
+	if (b == Double.POSITIVE_INFINITY) {
+	    throw new SimulationException("Analytic model: the link never wakes up!");
+	}
+	return new double[] {b - a, lambda * (b * b - a * a) / 2};
+    }
+
+    /**
+     * Returns P(K &lt; m) for a Poisson random variable K with mean x.
+     */
+    private static double poissonCdf (int m, double x) {
+	double cdf = 0;
+	for (int j = 0; j < m; j++) {
+	    cdf += Math.exp(logPoissonPmf(j, x));
+	}
+	return cdf;
+    }
+
+    /**
+     * Returns the sums, weighted for the integrals over the wake threshold region, of the Poisson probabilities
+     * P(K = j) with mean x for j lower than the wake threshold Q: the sum of (Q - j) P(K = j) and the sum of
+     * (Q(Q - 1) - j(j - 1)) / 2 P(K = j). Both sums are zero for an infinite mean.
+     */
+    private double[] poissonSums (double x) {
+	double[] sums = {0, 0};
+	if (x == Double.POSITIVE_INFINITY) {
+	    return sums;
+	}
+	int q = wake_threshold;
+	for (int j = 0; j < q; j++) {
+	    double p = Math.exp(logPoissonPmf(j, x));
+	    sums[0] += (q - j) * p;
+	    sums[1] += ((double) q * (q - 1) - (double) j * (j - 1)) / 2 * p;
+	}
+	return sums;
+    }
+
+    /**
+     * Returns the logarithm of P(K = j) for a Poisson random variable K with mean x, so that no term underflows
+     * before the end.
+     */
+    private static double logPoissonPmf (int j, double x) {
+	if (x == 0) {
+	    return j == 0 ? 0 : Double.NEGATIVE_INFINITY;
+	}
+	double log_p = -x + j * Math.log(x);
+	for (int i = 2; i <= j; i++) {
+	    log_p -= Math.log(i);
+	}
+	return log_p;
+    }
+}
@@ -43,4 +43,29 @@ public class BimodalFrameSizeGenerator extends FrameSizeGenerator {
 	}
 	return short_frame_size;
     }
+
+    /**
+     * Returns the minimum frame size.
+     *
+     * @return the minimum frame size (in bytes)
+     */
+    public int getMinimumFrameSize () {
+	return short_frame_size;
+    }
+
+    /**
+     * Fills the specified array with the next frame sizes.
+     * The random numbers are drawn first, so that the sizes are chosen in a loop without branches.
+     *
+     * @param sizes the array to be filled with the frame sizes (in bytes)
+     * @param n     the amount of frame sizes to be generated
+     * @return n
+     */
+    public int getNextFrameSizes (int[] sizes, int n) {
+	double[] uniforms = nextDoubles(n);
+	for (int i = 0; i < n; i++) {
+	    sizes[i] = uniforms[i] < long_frame_ratio ? long_frame_size : short_frame_size;
+	}
+	return n;
+    }
 }
@@ -0,0 +1,201 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * This class gives access to a binary trace file through memory mapping.
+ * <p>
+ * A binary trace starts with a 24-byte header: the magic string "EEETRACE", the format version (int),
+ * the flags (int) and the number of records (long). Each record holds a time in seconds (double)
+ * followed by a frame size in bytes (int). Times are interarrival times unless the ABSOLUTE flag is set,
+ * in which case they are arrival times. All values are stored in big-endian byte order.
+ * <p>
+ * The file is mapped in segments, so traces larger than 2 GB are supported, and records are read
+ * with absolute gets that do not allocate.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class BinaryTrace extends TraceData {
+    /**
+     * The magic string at the beginning of every binary trace.
+     */
+    public static final byte[] MAGIC = {'E', 'E', 'E', 'T', 'R', 'A', 'C', 'E'};
+    /**
+     * The format version.
+     */
+    public static final int VERSION = 1;
+    /**
+     * Flag set when records hold arrival times instead of interarrival times.
+     */
+    public static final int ABSOLUTE = 1;
+    /**
+     * The size of the header (in bytes).
+     */
+    public static final int HEADER_SIZE = 24;
+    /**
+     * The size of a record (in bytes).
+     */
+    public static final int RECORD_SIZE = 12;
+    /**
+     * The number of records mapped by each segment.
+     */
+    private static final int SEGMENT_RECORDS = 1 << 26;
+
+    /**
+     * The flags of the trace.
+     */
+    public int flags;
+    /**
+     * The mapped segments of the trace.
+     */
+    private MappedByteBuffer[] segments;
+
+    /**
+     * Opens the specified binary trace for reading.
+     *
+     * @param filename name of the binary trace file
+     * @throws SimulationException if the file cannot be opened or is not a binary trace
+     */
+    public BinaryTrace (String filename) {
+	try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+	    byte[] magic = new byte[MAGIC.length];
+	    file.readFully(magic);
+	    if (!Arrays.equals(magic, MAGIC) || file.readInt() != VERSION) {
+		throw new SimulationException("Invalid binary trace file!");
+	    }
+	    flags = file.readInt();
+	    num_records = file.readLong();
+	    if (HEADER_SIZE + num_records * RECORD_SIZE > file.length()) {
+		throw new SimulationException("Truncated binary trace file!");
+	    }
+	    map(file.getChannel(), FileChannel.MapMode.READ_ONLY);
+	} catch (FileNotFoundException e) {
+	    throw new SimulationException("Trace file not found!");
+	} catch (IOException e) {
+	    throw new SimulationException("Error while reading trace file!");
+	}
+    }
+
+    /**
+     * Creates a new binary trace with the specified number of records, all of them set to zero.
+     *
+     * @param filename name of the binary trace file
+     * @param records  the number of records
+     * @param fl       the flags of the trace
+     * @throws SimulationException if the file cannot be created
+     */
+    public BinaryTrace (String filename, long records, int fl) {
+	flags = fl;
+	num_records = records;
+	try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+	    file.setLength(0);
+	    file.write(MAGIC);
+	    file.writeInt(VERSION);
+	    file.writeInt(flags);
+	    file.writeLong(num_records);
+	    file.setLength(HEADER_SIZE + num_records * RECORD_SIZE);
+	    map(file.getChannel(), FileChannel.MapMode.READ_WRITE);
+	} catch (IOException e) {
+	    throw new SimulationException("Error while writing trace file!");
+	}
+    }
+
+    /**
+     * Maps all the records of the trace.
+     */
+    private void map (FileChannel channel, FileChannel.MapMode mode) throws IOException {
+	segments = new MappedByteBuffer[(int) ((num_records + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS)];
+	for (int i = 0; i < segments.length; i++) {
+	    long records = Math.min(SEGMENT_RECORDS, num_records - (long) i * SEGMENT_RECORDS);
+	    segments[i] = channel.map(mode, HEADER_SIZE + (long) i * SEGMENT_RECORDS * RECORD_SIZE, records * RECORD_SIZE);
+	    segments[i].order(ByteOrder.BIG_ENDIAN);
+	}
+    }
+
+    /**
+     * Checks whether the specified file is a binary trace.
+     *
+     * @param filename name of the file
+     * @return true if the file starts with the binary trace magic string
+     */
+    public static boolean isBinaryTrace (String filename) {
+	try (FileInputStream file = new FileInputStream(filename)) {
+	    byte[] magic = new byte[MAGIC.length];
+	    return file.read(magic) == MAGIC.length && Arrays.equals(magic, MAGIC);
+	} catch (IOException e) {
+	    return false;
+	}
+    }
+
+    /**
+     * Returns true if records hold arrival times instead of interarrival times.
+     *
+     * @return true if the trace holds arrival times
+     */
+    public boolean isAbsolute () {
+	return (flags & ABSOLUTE) != 0;
+    }
+
+    /**
+     * Returns the time of the specified record.
+     *
+     * @param i the record index
+     * @return the (inter)arrival time (in seconds)
+     */
+    public double getTime (long i) {
+	return segments[(int) (i / SEGMENT_RECORDS)].getDouble((int) (i % SEGMENT_RECORDS) * RECORD_SIZE);
+    }
+
+    /**
+     * Returns the frame size of the specified record.
+     *
+     * @param i the record index
+     * @return the frame size (in bytes)
+     */
+    public int getFrameSize (long i) {
+	return segments[(int) (i / SEGMENT_RECORDS)].getInt((int) (i % SEGMENT_RECORDS) * RECORD_SIZE + 8);
+    }
+
+    /**
+     * Returns the amount of memory mapped by the records.
+     *
+     * @return the amount of memory (in bytes)
+     */
+    public long getMemorySize () {
+	return num_records * RECORD_SIZE;
+    }
+
+    /**
+     * Sets the time of the specified record.
+     *
+     * @param i the record index
+     * @param t the (inter)arrival time (in seconds)
+     */
+    public void putTime (long i, double t) {
+	segments[(int) (i / SEGMENT_RECORDS)].putDouble((int) (i % SEGMENT_RECORDS) * RECORD_SIZE, t);
+    }
+
+    /**
+     * Sets the frame size of the specified record.
+     *
+     * @param i     the record index
+     * @param fsize the frame size (in bytes)
+     */
+    public void putFrameSize (long i, int fsize) {
+	segments[(int) (i / SEGMENT_RECORDS)].putInt((int) (i % SEGMENT_RECORDS) * RECORD_SIZE + 8, fsize);
+    }
+
+    /**
+     * Flushes to disk the changes made to the records.
+     */
+    public void force () {
+	for (MappedByteBuffer segment : segments) {
+	    segment.force();
+	}
+    }
+}
@@ -0,0 +1,272 @@
+package es.uvigo.det.labredes.dualeee;
+
+/**
+ * This class extends EventQueue class to implement a calendar queue of events (R. Brown, 1988).
+ * Events are hashed by event time into an array of buckets (days) of fixed width that is
+ * resized as the number of pending events changes.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class CalendarEventQueue extends EventQueue {
+    /**
+     * The minimum number of buckets.
+     */
+    private static final int MIN_BUCKETS = 2;
+    /**
+     * The maximum number of events sampled to estimate the bucket width.
+     */
+    private static final int WIDTH_SAMPLES = 25;
+
+    /**
+     * The buckets. Each bucket keeps its events sorted by event time and sequence number.
+     */
+    private Event[][] buckets;
+    /**
+     * The number of events in each bucket.
+     */
+    private int[] bucket_sizes;
+    /**
+     * The bucket width (in picoseconds).
+     */
+    private long width;
+    /**
+     * The number of events in the queue.
+     */
+    private int size;
+    /**
+     * The number of the current virtual bucket (event time divided by bucket width).
+     */
+    private long current_day;
+    /**
+     * The bucket containing the next event or -1 if unknown.
+     */
+    private int next_bucket;
+
+    /**
+     * Creates a new empty calendar queue.
+     */
+    public CalendarEventQueue () {
+	init(MIN_BUCKETS, 1, 0);
+    }
+
+    /**
+     * Allocates the specified number of empty buckets.
+     */
+    private void init (int nbuckets, long bwidth, long start_time) {
+	buckets = new Event[nbuckets][];
+	bucket_sizes = new int[nbuckets];
+	width = bwidth;
+	size = 0;
+	current_day = start_time / width;
+	next_bucket = -1;
+    }
+
+    /**
+     * Adds the specified event to the calendar.
+     *
+     * @param event the Event to be added
+     */
+    public void add (Event event) {
+	insert(event);
+	size++;
+	if (size > 2 * buckets.length) {
+	    resize(2 * buckets.length);
+	}
+    }
+
+    /**
+     * Returns the next event in the calendar without removing it.
+     *
+     * @return the next event in the calendar or null if the calendar is empty
+     */
+    public Event peek () {
+	if (size == 0) {
+	    return null;
+	}
+	return buckets[findNextBucket()][0];
+    }
+
+    /**
+     * Removes and returns the next event in the calendar.
+     *
+     * @return the next event in the calendar or null if the calendar is empty
+     */
+    public Event poll () {
+	if (size == 0) {
+	    return null;
+	}
+	int b = findNextBucket();
+	Event event = buckets[b][0];
+	removeAt(b, 0);
+	current_day = event.time / width;
+	if (size < buckets.length / 2 - 2 && buckets.length > MIN_BUCKETS) {
+	    resize(buckets.length / 2);
+	}
+	return event;
+    }
+
+    /**
+     * Removes the specified event from the calendar.
+     *
+     * @param event the Event to be removed
+     * @return true if the event was contained in the calendar
+     */
+    public boolean remove (Event event) {
+	int b = (int) ((event.time / width) & (buckets.length - 1));
+	for (int i = 0; i < bucket_sizes[b]; i++) {
+	    if (buckets[b][i] == event) {
+		removeAt(b, i);
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Returns the number of events contained in the calendar.
+     *
+     * @return the number of events contained in the calendar
+     */
+    public int size () {
+	return size;
+    }
+
+    /**
+     * Returns all the events contained in the calendar in no particular order.
+     *
+     * @return an array with all the events contained in the calendar
+     */
+    public Event[] toArray () {
+	Event[] events = new Event[size];
+	int n = 0;
+	for (int b = 0; b < buckets.length; b++) {
+	    for (int i = 0; i < bucket_sizes[b]; i++) {
+		events[n++] = buckets[b][i];
+	    }
+	}
+	return events;
+    }
+
+    /**
+     * Inserts the specified event in its bucket keeping the bucket sorted.
+     */
+    private void insert (Event event) {
+	long day = event.time / width;
+	int b = (int) (day & (buckets.length - 1));
+	int n = bucket_sizes[b];
+	if (buckets[b] == null) {
+	    buckets[b] = new Event[4];
+	} else if (n == buckets[b].length) {
+	    Event[] bucket = new Event[2 * n];
+	    System.arraycopy(buckets[b], 0, bucket, 0, n);
+	    buckets[b] = bucket;
+	}
+	Event[] bucket = buckets[b];
+	int i = n;
+	while (i > 0 && event.precedes(bucket[i-1])) {
+	    bucket[i] = bucket[i-1];
+	    i--;
+	}
+	bucket[i] = event;
+	bucket_sizes[b] = n + 1;
+	if (day < current_day) {
+	    current_day = day;
+	}
+	if (next_bucket >= 0 && event.precedes(buckets[next_bucket][0])) {
+	    next_bucket = b;
+	}
+    }
+
+    /**
+     * Removes the event placed at the specified position of the specified bucket.
+     */
+    private void removeAt (int b, int i) {
+	int n = bucket_sizes[b] - 1;
+	System.arraycopy(buckets[b], i + 1, buckets[b], i, n - i);
+	buckets[b][n] = null;
+	bucket_sizes[b] = n;
+	size--;
+	if (b == next_bucket) {
+	    next_bucket = -1;
+	}
+    }
+
+    /**
+     * Returns the bucket containing the next event. The calendar must not be empty.
+     */
+    private int findNextBucket () {
+	if (next_bucket >= 0) {
+	    return next_bucket;
+	}
+	int nbuckets = buckets.length;
+	long day = current_day;
+	for (int k = 0; k < nbuckets; k++, day++) {
+	    int b = (int) (day & (nbuckets - 1));
+	    if (bucket_sizes[b] > 0 && buckets[b][0].time / width <= day) {
+		current_day = day;
+		next_bucket = b;
+		return b;
+	    }
+	}
+	// No event within a whole year: direct search for the earliest event
+	int min_b = -1;
+	for (int b = 0; b < nbuckets; b++) {
+	    if (bucket_sizes[b] > 0 && (min_b < 0 || buckets[b][0].precedes(buckets[min_b][0]))) {
+		min_b = b;
+	    }
+	}
+	current_day = buckets[min_b][0].time / width;
+	next_bucket = min_b;
+	return min_b;
+    }
+
+    /**
+     * Copies all the events to a new calendar with the specified number of buckets and
+     * a bucket width estimated from the separation between the earliest events.
+     */
+    private void resize (int nbuckets) {
+	Event[] events = toArray();
+	long new_width = estimateWidth();
+	init(nbuckets, new_width, current_day * width);
+	for (int i = 0; i < events.length; i++) {
+	    insert(events[i]);
+	}
+	size = events.length;
+    }
+
+    /**
+     * Estimates the bucket width as three times the average separation between the earliest
+     * events, discarding separations larger than twice the average.
+     */
+    private long estimateWidth () {
+	int nsamples = Math.min(size, WIDTH_SAMPLES);
+	if (nsamples < 2) {
+	    return width;
+	}
+	Event[] sample = new Event[nsamples];
+	for (int i = 0; i < nsamples; i++) {
+	    int b = findNextBucket();
+	    sample[i] = buckets[b][0];
+	    removeAt(b, 0);
+	}
+	for (int i = 0; i < nsamples; i++) {
+	    insert(sample[i]);
+	    size++;
+	}
+	next_bucket = -1;
+	current_day = sample[0].time / width;
+	double avg_separation = (sample[nsamples-1].time - sample[0].time) / (double) (nsamples - 1);
+	double sum_separation = 0;
+	int nseparations = 0;
+	for (int i = 1; i < nsamples; i++) {
+	    long separation = sample[i].time - sample[i-1].time;
+	    if (separation <= 2 * avg_separation) {
+		sum_separation += separation;
+		nseparations++;
+	    }
+	}
+	long new_width = nseparations > 0 ? (long) (3 * sum_separation / nseparations) : 0;
+	return new_width > 0 ? new_width : 1;
+    }
+}
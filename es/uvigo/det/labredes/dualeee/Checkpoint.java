@@ -0,0 +1,149 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class saves the full state of a running simulation to a checkpoint file and restores it later on.
+ * <p>
+ * A checkpoint holds the pending events, with their sequence numbers, and the state of every link: its queue and
+ * statistics, the arrivals already drawn, the state of its traffic and frame size generators (including their
+ * random sources) and the state of its coalescing policy (including the adapted thresholds and max delay).
+ * A simulation restored from a checkpoint produces exactly the same results as if it had not been interrupted.
+ * <p>
+ * The configuration is not saved: a checkpoint is restored into a simulation that has been started with
+ * SimulationContext.start, so many runs can be forked from the same checkpoint with different EEE parameters.
+ * The traffic, the random generator, the number of ports and the frame delay percentiles must be the same and
+ * the simulation length must not be longer than that of the checkpointed run, since events beyond its end were
+ * never scheduled. The coalescing policy of a link is only restored if its operation mode is unchanged; otherwise,
+ * the new policy starts afresh. The pending state transitions and wake ups keep the instants at which they were
+ * scheduled, so the new parameters take effect from the next sleep cycle on.
+ * <p>
+ * A checkpoint file is gzip-compressed and starts with the magic string "EEECHKPT" followed by the format version
+ * (int), the checkpoint instant (long, in picoseconds), the random generator (UTF string) and the number of ports
+ * (int, 0 for a single link), followed by the state of the event handler and that of each link.
+ * Files are written to a temporary file first and then renamed, so a run killed while saving a checkpoint
+ * never leaves a truncated file behind.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public final class Checkpoint {
+    /**
+     * The magic string at the beginning of every checkpoint file.
+     */
+    public static final byte[] MAGIC = {'E', 'E', 'E', 'C', 'H', 'K', 'P', 'T'};
+    /**
+     * The format version.
+     */
+    public static final int VERSION = 1;
+
+    private Checkpoint () {}
+
+    /**
+     * Saves the state of the specified simulation, which must have processed all the events up to the current
+     * instant (see SimulationContext.runUntil), to the specified checkpoint file.
+     *
+     * @param context  the simulation
+     * @param filename name of the checkpoint file, replaced if it exists
+     * @throws SimulationException if the simulation cannot be checkpointed or the file cannot be written
+     */
+    public static void save (SimulationContext context, String filename) {
+	checkContext(context);
+	File file = new File(filename);
+	File temporary_file = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+	try {
+	    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temporary_file))));
+	    try {
+		out.write(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(context.event_handler.getSimulationTime());
+		out.writeUTF(context.random_generator);
+		out.writeInt(context.ports != null ? context.ports.length : 0);
+		context.event_handler.writeState(out);
+		for (EeeLink link : getLinks(context)) {
+		    link.writeState(out);
+		}
+	    } finally {
+		out.close();
+	    }
+	    Files.move(temporary_file.toPath(), Paths.get(filename), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	} catch (IOException e) {
+	    temporary_file.delete();
+	    throw new SimulationException("Error while writing checkpoint file!");
+	}
+    }
+
+    /**
+     * Restores the state saved in the specified checkpoint file into the specified simulation, which must have been
+     * started with SimulationContext.start without processing any event. The simulation goes on from the
+     * checkpoint instant with runUntil.
+     *
+     * @param context  the simulation
+     * @param filename name of the checkpoint file
+     * @return the checkpoint instant (in picoseconds)
+     * @throws SimulationException if the file cannot be read or does not match the simulation
+     */
+    public static long restore (SimulationContext context, String filename) {
+	checkContext(context);
+	try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(filename))))) {
+	    byte[] magic = new byte[MAGIC.length];
+	    in.readFully(magic);
+	    if (!Arrays.equals(magic, MAGIC) || in.readInt() != VERSION) {
+		throw new SimulationException("Invalid checkpoint file!");
+	    }
+	    long t = in.readLong();
+	    if (!in.readUTF().equals(context.random_generator)) {
+		throw new SimulationException("Checkpoint: different random generator!");
+	    }
+	    if (in.readInt() != (context.ports != null ? context.ports.length : 0)) {
+		throw new SimulationException("Checkpoint: different number of ports!");
+	    }
+	    context.event_handler.readState(in);
+	    for (EeeLink link : getLinks(context)) {
+		link.readState(in);
+	    }
+	    return t;
+	} catch (FileNotFoundException e) {
+	    throw new SimulationException("Checkpoint file not found!");
+	} catch (EOFException e) {
+	    throw new SimulationException("Truncated checkpoint file!");
+	} catch (IOException e) {
+	    throw new SimulationException("Error while reading checkpoint file!");
+	}
+    }
+
+    /**
+     * Checks that the specified simulation has been started and can be checkpointed.
+     */
+    private static void checkContext (SimulationContext context) {
+	if (context.engine != null) {
+	    throw new SimulationException("Checkpoints cannot be used with several threads!");
+	}
+	if (context.event_handler == null) {
+	    throw new SimulationException("Checkpoints need a started simulation!");
+	}
+	if (context.event_log != null || context.sampler != null) {
+	    throw new SimulationException("Event logging and sampling cannot be used with checkpoints!");
+	}
+    }
+
+    /**
+     * Returns the link of the simulation or the links of all its ports.
+     */
+    private static EeeLink[] getLinks (SimulationContext context) {
+	if (context.ports == null) {
+	    return new EeeLink[] {context.link};
+	}
+	EeeLink[] links = new EeeLink[context.ports.length];
+	for (int i = 0; i < links.length; i++) {
+	    links[i] = context.ports[i].link;
+	}
+	return links;
+    }
+}
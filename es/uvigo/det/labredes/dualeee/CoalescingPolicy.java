@@ -0,0 +1,169 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+
+/**
+ * This class decides when an EEE link goes to sleep and when it wakes up, that is, its EEE operation mode.
+ * <p>
+ * Each operation mode is implemented by a subclass that is chosen once, when the link is created, so the event
+ * handlers of the link do not check the operation mode on every event. The link calls its policy when a frame is
+ * queued, when its queue empties, when it enters fast wake or deep sleep and when it starts to wake up; the rest of
+ * the state machine (transition times, transmissions and statistics) is handled by the link itself.
+ * By default, a sleeping link wakes up as soon as its queue reaches the wake threshold of its current state or,
+ * if there is a max delay, that long after the first frame arrival.
+ * <p>
+ * Custom policies are registered in the config file with a POLICY operation_mode class_name line and then selected
+ * with the EEE line as any built-in operation mode. They must have a public constructor without arguments.
+ * Policies that keep any state between calls must also save it with writeState and readState to be checkpointed.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+abstract public class CoalescingPolicy {
+    /**
+     * The link whose sleep cycles are decided by this policy.
+     */
+    protected EeeLink link;
+    /**
+     * The simulation run of the link.
+     */
+    protected SimulationContext context;
+
+    /**
+     * Attaches this policy to the specified link. It is called once by the constructor of the link,
+     * before the link enters its initial state.
+     *
+     * @param l the link
+     */
+    public void init (EeeLink l) {
+	link = l;
+	context = l.context;
+    }
+
+    /**
+     * Returns the transition through which the link goes to sleep at the beginning of the simulation.
+     *
+     * @return TRANSITION_TO_FAST or TRANSITION_TO_DEEP
+     */
+    abstract public EeeState getInitialState ();
+
+    /**
+     * Returns the transition through which the link goes to sleep when its queue empties at the specified instant.
+     *
+     * @param t the instant at which the last queued frame has been transmitted
+     * @return TRANSITION_TO_FAST or TRANSITION_TO_DEEP
+     */
+    abstract public EeeState getSleepTransition (long t);
+
+    /**
+     * Handles the arrival of a frame that has been queued by the link.
+     *
+     * @param event the FrameArrivalEvent of the queued frame
+     */
+    public void handleFrameArrival (FrameArrivalEvent event) {
+	EeeState state = link.getState();
+	if ((state == EeeState.FAST_WAKE || state == EeeState.DEEP_SLEEP) && wakeUpOnThreshold(event.time, state)) {
+	    return;
+	}
+	if (context.max_delay > 0 && link.queue_size == 1 && state != EeeState.ACTIVE) {
+	    EeeState transition_state = getMaxDelayTransition(state);
+	    if (transition_state != null) {
+		link.scheduleWakeUp(event.time + context.max_delay, transition_state);
+	    }
+	}
+    }
+
+    /**
+     * Handles the entry of the link in the fast wake state.
+     *
+     * @param t the instant at which the link enters the state
+     */
+    public void handleFastWake (long t) {
+	wakeUpOnThreshold(t, EeeState.FAST_WAKE);
+    }
+
+    /**
+     * Handles the entry of the link in the deep sleep state.
+     *
+     * @param t the instant at which the link enters the state
+     */
+    public void handleDeepSleep (long t) {
+	wakeUpOnThreshold(t, EeeState.DEEP_SLEEP);
+    }
+
+    /**
+     * Handles the beginning of a transition to the active state, once the pending wake ups have been cancelled.
+     *
+     * @param t                the instant at which the transition begins
+     * @param transition_state the transition to the active state
+     * @return true if the link must go on waking up; false if this policy has sent it back to sleep
+     */
+    public boolean handleWakeUp (long t, EeeState transition_state) {
+	return true;
+    }
+
+    /**
+     * Returns the time required to go to deep sleep through the TRANSITION_TO_DEEP state.
+     *
+     * @return the transition time (in picoseconds)
+     */
+    public long getTimeToDeep () {
+	return context.active_to_fast_t + context.fast_to_deep_t;
+    }
+
+    /**
+     * Adds to the specified statistics those specific to this policy, measured up to the specified instant.
+     *
+     * @param stats the statistics of the link
+     * @param t     the measurement instant (in picoseconds)
+     */
+    public void putStatistics (LinkStatistics stats, long t) {}
+
+    /**
+     * Writes the state of this policy, including the parameters of the link that it adapts, to a checkpoint.
+     * By default, policies have no state of their own.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {}
+
+    /**
+     * Reads a state written by writeState. It is only called if the checkpointed link had the same operation mode.
+     * The timers of the policy are restored with the readTimer method of the event handler.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     */
+    public void readState (DataInput in) throws IOException {}
+
+    /**
+     * Returns the transition through which the link wakes up the max delay after the first frame arrival,
+     * if the first frame arrives in the specified state.
+     *
+     * @param state the current state of the link
+     * @return the transition to the active state or null if the link must not wake up after the max delay
+     */
+    protected EeeState getMaxDelayTransition (EeeState state) {
+	return EeeState.TRANSITION_TO_ACTIVE_FROM_DEEP;
+    }
+
+    /**
+     * Wakes up the link right away if its queue has reached the wake threshold of the specified sleep state.
+     *
+     * @param t     the current instant
+     * @param state FAST_WAKE or DEEP_SLEEP
+     * @return true if the link starts to wake up
+     */
+    protected boolean wakeUpOnThreshold (long t, EeeState state) {
+	if (state == EeeState.FAST_WAKE && context.fast_to_active_qth > 0 && link.queue_size >= context.fast_to_active_qth) {
+	    link.scheduleWakeUp(t, EeeState.TRANSITION_TO_ACTIVE_FROM_FAST);
+	    return true;
+	}
+	if (state == EeeState.DEEP_SLEEP && context.deep_to_active_qth > 0 && link.queue_size >= context.deep_to_active_qth) {
+	    link.scheduleWakeUp(t, EeeState.TRANSITION_TO_ACTIVE_FROM_DEEP);
+	    return true;
+	}
+	return false;
+    }
+}
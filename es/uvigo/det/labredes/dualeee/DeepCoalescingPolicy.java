@@ -0,0 +1,29 @@
+package es.uvigo.det.labredes.dualeee;
+
+/**
+ * This class extends CoalescingPolicy class to implement the deep operation mode: the link always sleeps in the
+ * deep sleep state, going through the fast wake state.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class DeepCoalescingPolicy extends CoalescingPolicy {
+    /**
+     * Returns the transition to the deep sleep state.
+     *
+     * @return TRANSITION_TO_DEEP
+     */
+    public EeeState getInitialState () {
+	return EeeState.TRANSITION_TO_DEEP;
+    }
+
+    /**
+     * Returns the transition to the deep sleep state.
+     *
+     * @param t the instant at which the last queued frame has been transmitted
+     * @return TRANSITION_TO_DEEP
+     */
+    public EeeState getSleepTransition (long t) {
+	return EeeState.TRANSITION_TO_DEEP;
+    }
+}
@@ -0,0 +1,284 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+
+/**
+ * This class implements a log-bucketed histogram of frame delays, in the style of HdrHistogram.
+ * <p>
+ * Values are grouped into buckets whose width doubles from one bucket to the next, and each bucket is
+ * split into the same number of sub-buckets, so every recorded value is kept with a fixed number of
+ * significant decimal digits. The histogram takes a fixed amount of memory, recording a value does not
+ * allocate, and histograms with the same layout can be merged.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class DelayHistogram {
+    /**
+     * The default highest trackable value (in picoseconds). Default = 1 second.
+     */
+    public static final long DEFAULT_HIGHEST_VALUE = (long) 1e12;
+    /**
+     * The default number of significant decimal digits.
+     */
+    public static final int DEFAULT_SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * The highest trackable value. Larger values are recorded as this value.
+     */
+    private long highest_value;
+    /**
+     * The number of significant decimal digits.
+     */
+    private int significant_digits;
+    /**
+     * The number of sub-buckets of each bucket, as a power of two.
+     */
+    private int sub_bucket_count_magnitude;
+    /**
+     * Half the number of sub-buckets of each bucket.
+     */
+    private int sub_bucket_half_count;
+    /**
+     * The mask of the values that fall into the first bucket.
+     */
+    private long sub_bucket_mask;
+    /**
+     * The count of values recorded in each sub-bucket.
+     */
+    private long[] counts;
+    /**
+     * The number of recorded values.
+     */
+    private long total_count;
+    /**
+     * The maximum recorded value.
+     */
+    private long max_value;
+
+    /**
+     * Creates a new empty histogram with the default layout.
+     */
+    public DelayHistogram () {
+	this(DEFAULT_HIGHEST_VALUE, DEFAULT_SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * Creates a new empty histogram.
+     *
+     * @param highest the highest trackable value (in picoseconds)
+     * @param digits  the number of significant decimal digits (between 1 and 5)
+     */
+    public DelayHistogram (long highest, int digits) {
+	highest_value = highest;
+	significant_digits = digits;
+	long largest_single_unit_value = 2 * (long) Math.pow(10, digits);
+	sub_bucket_count_magnitude = 64 - Long.numberOfLeadingZeros(largest_single_unit_value - 1);
+	sub_bucket_half_count = 1 << (sub_bucket_count_magnitude - 1);
+	sub_bucket_mask = (1L << sub_bucket_count_magnitude) - 1;
+	int buckets = 1;
+	for (long smallest_untrackable_value = 1L << sub_bucket_count_magnitude; smallest_untrackable_value <= highest; smallest_untrackable_value <<= 1) {
+	    buckets++;
+	    if (smallest_untrackable_value > Long.MAX_VALUE / 2) {
+		break;
+	    }
+	}
+	counts = new long[(buckets + 1) * sub_bucket_half_count];
+	total_count = max_value = 0;
+    }
+
+    /**
+     * Returns the index of the sub-bucket where the specified value is counted.
+     */
+    private int getIndex (long value) {
+	int bucket_index = 64 - sub_bucket_count_magnitude - Long.numberOfLeadingZeros(value | sub_bucket_mask);
+	int sub_bucket_index = (int) (value >>> bucket_index);
+	return ((bucket_index + 1) << (sub_bucket_count_magnitude - 1)) + sub_bucket_index - sub_bucket_half_count;
+    }
+
+    /**
+     * Returns the highest value counted in the specified sub-bucket.
+     */
+    private long getHighestValue (int index) {
+	int bucket_index = (index >> (sub_bucket_count_magnitude - 1)) - 1;
+	long sub_bucket_index = (index & (sub_bucket_half_count - 1)) + sub_bucket_half_count;
+	if (bucket_index < 0) {
+	    sub_bucket_index -= sub_bucket_half_count;
+	    bucket_index = 0;
+	}
+	return ((sub_bucket_index + 1) << bucket_index) - 1;
+    }
+
+    /**
+     * Records the specified value.
+     *
+     * @param value the value (in picoseconds)
+     */
+    public void recordValue (long value) {
+	if (value < 0) {
+	    value = 0;
+	} else if (value > highest_value) {
+	    value = highest_value;
+	}
+	counts[getIndex(value)]++;
+	total_count++;
+	if (value > max_value) {
+	    max_value = value;
+	}
+    }
+
+    /**
+     * Adds all the values recorded by the specified histogram to this histogram.
+     *
+     * @param histogram a histogram with the same highest trackable value and significant digits
+     * @throws SimulationException if the histograms have different layouts
+     */
+    public void add (DelayHistogram histogram) {
+	if (histogram.counts.length != counts.length || histogram.significant_digits != significant_digits) {
+	    throw new SimulationException("Cannot merge delay histograms with different layouts!");
+	}
+	for (int i = 0; i < counts.length; i++) {
+	    counts[i] += histogram.counts[i];
+	}
+	total_count += histogram.total_count;
+	if (histogram.max_value > max_value) {
+	    max_value = histogram.max_value;
+	}
+    }
+
+    /**
+     * Removes all the recorded values.
+     */
+    public void reset () {
+	for (int i = 0; i < counts.length; i++) {
+	    counts[i] = 0;
+	}
+	total_count = max_value = 0;
+    }
+
+    /**
+     * Writes the recorded values, only the non-empty sub-buckets.
+     *
+     * @param out the output to which the values are written
+     * @throws IOException if the values cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {
+	int n = 0;
+	for (int i = 0; i < counts.length; i++) {
+	    if (counts[i] > 0) {
+		n++;
+	    }
+	}
+	out.writeInt(counts.length);
+	out.writeInt(n);
+	for (int i = 0; i < counts.length; i++) {
+	    if (counts[i] > 0) {
+		out.writeInt(i);
+		out.writeLong(counts[i]);
+	    }
+	}
+	out.writeLong(total_count);
+	out.writeLong(max_value);
+    }
+
+    /**
+     * Replaces the recorded values with those written by writeState.
+     *
+     * @param in the input from which the values are read
+     * @throws IOException if the values cannot be read
+     * @throws SimulationException if the values were recorded with a different layout
+     */
+    public void readState (DataInput in) throws IOException {
+	if (in.readInt() != counts.length) {
+	    throw new SimulationException("Cannot restore a delay histogram with a different layout!");
+	}
+	reset();
+	for (int n = in.readInt(); n > 0; n--) {
+	    int i = in.readInt();
+	    counts[i] = in.readLong();
+	}
+	total_count = in.readLong();
+	max_value = in.readLong();
+    }
+
+    /**
+     * Returns the counts of the non-empty sub-buckets, to be subtracted later on with subtract.
+     *
+     * @return the index and the count of each non-empty sub-bucket, one after the other
+     */
+    public long[] getCounts () {
+	int n = 0;
+	for (int i = 0; i < counts.length; i++) {
+	    if (counts[i] > 0) {
+		n++;
+	    }
+	}
+	long[] non_empty_counts = new long[2 * n];
+	n = 0;
+	for (int i = 0; i < counts.length; i++) {
+	    if (counts[i] > 0) {
+		non_empty_counts[n++] = i;
+		non_empty_counts[n++] = counts[i];
+	    }
+	}
+	return non_empty_counts;
+    }
+
+    /**
+     * Removes the values counted by a former call to getCounts, keeping those recorded afterwards.
+     *
+     * @param non_empty_counts the counts returned by getCounts
+     * @param max              the maximum value recorded afterwards
+     */
+    public void subtract (long[] non_empty_counts, long max) {
+	for (int i = 0; i < non_empty_counts.length; i += 2) {
+	    counts[(int) non_empty_counts[i]] -= non_empty_counts[i+1];
+	    total_count -= non_empty_counts[i+1];
+	}
+	max_value = max;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the number of recorded values
+     */
+    public long getTotalCount () {
+	return total_count;
+    }
+
+    /**
+     * Returns the value below which the specified percentage of the recorded values fall.
+     * The value is accurate to the number of significant digits of the histogram.
+     *
+     * @param percentile the percentage (between 0 and 100)
+     * @return the value (in picoseconds) or 0 if no value has been recorded
+     */
+    public long getValueAtPercentile (double percentile) {
+	if (total_count == 0) {
+	    return 0;
+	}
+	long count_at_percentile = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total_count));
+	long cumulative_count = 0;
+	for (int i = 0; i < counts.length; i++) {
+	    cumulative_count += counts[i];
+	    if (cumulative_count >= count_at_percentile) {
+		return Math.min(getHighestValue(i), max_value);
+	    }
+	}
+	return max_value;
+    }
+
+    /**
+     * Returns a short label for the specified percentile (e.g. p50 or p99.9).
+     *
+     * @param percentile the percentage (between 0 and 100)
+     * @return the label of the percentile
+     */
+    public static String getLabel (double percentile) {
+	if (percentile == Math.rint(percentile)) {
+	    return "p" + (long) percentile;
+	}
+	return "p" + percentile;
+    }
+}
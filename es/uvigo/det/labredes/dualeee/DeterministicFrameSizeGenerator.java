@@ -1,5 +1,7 @@
 package es.uvigo.det.labredes.dualeee;
 
+import java.util.Arrays;
+
 /**
  * This class extends FrameSizeGenerator class to simulate deterministic frame sizes.
  *
@@ -24,4 +26,25 @@ public class DeterministicFrameSizeGenerator extends FrameSizeGenerator {
     public int getNextFrameSize () {
 	return frame_size;
     }
+
+    /**
+     * Returns the minimum frame size.
+     *
+     * @return the minimum frame size (in bytes)
+     */
+    public int getMinimumFrameSize () {
+	return frame_size;
+    }
+
+    /**
+     * Fills the specified array with the frame size.
+     *
+     * @param sizes the array to be filled with the frame sizes (in bytes)
+     * @param n     the amount of frame sizes to be generated
+     * @return n
+     */
+    public int getNextFrameSizes (int[] sizes, int n) {
+	Arrays.fill(sizes, 0, n, frame_size);
+	return n;
+    }
 }
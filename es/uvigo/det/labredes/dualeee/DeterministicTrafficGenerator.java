@@ -26,4 +26,20 @@ public class DeterministicTrafficGenerator extends TrafficGenerator {
 	arrival_time += 1 / frame_rate;
 	return arrival_time;
     }
+
+    /**
+     * Fills the specified array with the instants at which the next frames arrive.
+     *
+     * @param times the array to be filled with the arrival instants (in picoseconds)
+     * @param n     the amount of arrivals to be generated
+     * @return n
+     */
+    public int getNextArrivals (long[] times, int n) {
+	double interarrival_time = 1 / frame_rate;
+	for (int i = 0; i < n; i++) {
+	    arrival_time += interarrival_time;
+	    times[i] = (long) (1e12 * arrival_time);
+	}
+	return n;
+    }
 }
@@ -0,0 +1,91 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+
+/**
+ * This class extends CoalescingPolicy class to implement the dual operation mode: the link sleeps in the fast wake
+ * state and moves on to the deep sleep state if it has not woken up after the max fast wake time.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class DualCoalescingPolicy extends CoalescingPolicy {
+    /**
+     * The pending transition from the fast wake state to the deep sleep state.
+     */
+    private TimerHandle fast_wake_timer = new TimerHandle();
+
+    /**
+     * Returns the transition to the fast wake state.
+     *
+     * @return TRANSITION_TO_FAST
+     */
+    public EeeState getInitialState () {
+	return EeeState.TRANSITION_TO_FAST;
+    }
+
+    /**
+     * Returns the transition to the deep sleep state, which the link enters from the fast wake state.
+     *
+     * @param t the instant at which the last queued frame has been transmitted
+     * @return TRANSITION_TO_DEEP
+     */
+    public EeeState getSleepTransition (long t) {
+	return EeeState.TRANSITION_TO_DEEP;
+    }
+
+    /**
+     * Handles the arrival of a frame that has been queued by the link.
+     * If the frame wakes up the link from the fast wake state, the transition to the deep sleep state is cancelled.
+     *
+     * @param event the FrameArrivalEvent of the queued frame
+     */
+    public void handleFrameArrival (FrameArrivalEvent event) {
+	if (link.getState() == EeeState.FAST_WAKE && wakeUpOnThreshold(event.time, EeeState.FAST_WAKE)) {
+	    link.cancelTransition(fast_wake_timer);
+	} else {
+	    super.handleFrameArrival(event);
+	}
+    }
+
+    /**
+     * Handles the entry of the link in the fast wake state, scheduling the transition to the deep sleep state
+     * after the max fast wake time unless the link wakes up right away.
+     *
+     * @param t the instant at which the link enters the state
+     */
+    public void handleFastWake (long t) {
+	if (!wakeUpOnThreshold(t, EeeState.FAST_WAKE)) {
+	    link.scheduleTransition(t + context.max_fast_wake_time, EeeState.TRANSITION_TO_DEEP, fast_wake_timer);
+	}
+    }
+
+    /**
+     * Returns the time required to go to deep sleep from the fast wake state.
+     *
+     * @return the transition time (in picoseconds)
+     */
+    public long getTimeToDeep () {
+	return context.fast_to_deep_t;
+    }
+
+    /**
+     * Writes the pending transition to the deep sleep state.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {
+	context.event_handler.writeTimer(out, fast_wake_timer);
+    }
+
+    /**
+     * Reads the pending transition to the deep sleep state.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     */
+    public void readState (DataInput in) throws IOException {
+	context.event_handler.readTimer(in, fast_wake_timer);
+    }
+}
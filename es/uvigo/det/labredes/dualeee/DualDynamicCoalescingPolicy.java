@@ -0,0 +1,70 @@
+package es.uvigo.det.labredes.dualeee;
+
+/**
+ * This class extends DynamicCoalescingPolicy class to implement the dual_dyn operation mode: the link goes to the
+ * deep sleep state, updating its wake threshold, unless the target delay is too low for it or the arrival rate
+ * measured during the last cycle is so high that sleeping in the fast wake state consumes less.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class DualDynamicCoalescingPolicy extends DynamicCoalescingPolicy {
+    /**
+     * The target delay below which the fast wake state may consume less than the deep sleep state (in picoseconds).
+     */
+    private double delay_th;
+    /**
+     * The arrival rate above which the fast wake state consumes less than the deep sleep state (in frames per picosecond).
+     */
+    private double arrival_rate_th;
+
+    /**
+     * Creates a new dual dynamic coalescing policy.
+     */
+    public DualDynamicCoalescingPolicy () {
+	super(EeeState.TRANSITION_TO_DEEP);
+    }
+
+    /**
+     * Attaches this policy to the specified link and computes the delay and arrival rate thresholds.
+     *
+     * @param l the link
+     */
+    public void init (EeeLink l) {
+	SimulationContext ctx = l.context;
+	double c = (1 - ctx.deep_sleep_consumption) / (1 - ctx.fast_wake_consumption);
+	double a = c * (ctx.active_to_fast_t + ctx.fast_to_deep_t) * ctx.fast_to_active_t;
+	a -= ctx.active_to_fast_t * ctx.deep_to_active_t;
+	double b = ctx.deep_to_active_t - ctx.active_to_fast_t;
+	b += c * (ctx.active_to_fast_t + ctx.fast_to_deep_t - ctx.fast_to_active_t);
+	delay_th = ctx.deep_to_active_t / 2.0 + a / (Math.sqrt(b*b-4*a*(1-c)) - b);
+	arrival_rate_th = 1 / (ctx.deep_to_active_t - 2 * ctx.target_delay + 2 * a / (Math.sqrt(b*b-4*a*(1-c)) - b));
+	super.init(l);
+    }
+
+    /**
+     * Returns the transition to the deep sleep state if the target delay is above the delay threshold,
+     * or the transition to the fast wake state otherwise.
+     *
+     * @return TRANSITION_TO_FAST or TRANSITION_TO_DEEP
+     */
+    public EeeState getInitialState () {
+	return context.target_delay > delay_th ? EeeState.TRANSITION_TO_DEEP : EeeState.TRANSITION_TO_FAST;
+    }
+
+    /**
+     * Returns the transition to the fast wake state if the target delay is too low for the deep sleep state or it is
+     * below the delay threshold with an arrival rate above the arrival rate threshold.
+     *
+     * @param transition_state the transition of the sleep state of this policy
+     * @param avg_arrival_rate the frame arrival rate measured during the last cycle (in frames per picosecond)
+     * @return TRANSITION_TO_FAST or TRANSITION_TO_DEEP
+     */
+    protected EeeState chooseTransition (EeeState transition_state, double avg_arrival_rate) {
+	if (context.target_delay < context.deep_to_active_t / 2.0 ||
+	    (context.target_delay < delay_th && avg_arrival_rate > arrival_rate_th)) {
+	    return EeeState.TRANSITION_TO_FAST;
+	}
+	return transition_state;
+    }
+}
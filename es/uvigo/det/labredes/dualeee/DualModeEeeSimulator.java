@@ -10,45 +10,6 @@ import java.io.*;
  */
 public final class DualModeEeeSimulator {
 
-    /* Simulation parameters */
-    /**
-     * Length of the simulation (in picoseconds). Default = 10 seconds.
-     */
-    public static long simulation_length = (long) 10e12;
-    /**
-     * Seed for the simulation. Default = 123456789.
-     */
-    public static long simulation_seed = 123456789;
-    /**
-     * If true a message for each simulated event is printed on standard output. Default = false.
-     */
-    public static boolean simulation_verbose = false;
-    /**
-     * Dual-mode EEE link
-     */
-    public static EeeLink link;
-    /**
-     * Event handler.
-     */
-    public static EventList event_handler;
-    
-    /* EEE physical parameters */
-    public static long link_capacity = (long) 40e9;
-    public static long active_to_fast_t = (long) (0.9e-6 * 1e12);
-    public static long fast_to_deep_t = (long) (1e-6 * 1e12);
-    public static long fast_to_active_t = (long) (0.34e-6 * 1e12);
-    public static long deep_to_active_t = (long) (5.5e-6 * 1e12);
-    public static double fast_wake_consumption = 0.7;
-    public static double deep_sleep_consumption = 0.1;
-    
-    /* EEE configuration parameters */
-    public static long target_delay = (long) (32e-6 * 1e12);
-    public static long max_delay = (long) (128e-6 * 1e12);
-    public static int fast_to_active_qth = 1;
-    public static int deep_to_active_qth = 1;
-    public static long max_fast_wake_time = (long) (3.5e-6 * 1e12);
-    public static String operation_mode = "dual";
- 
     private DualModeEeeSimulator () {}
 
     /**
@@ -61,33 +22,29 @@ public final class DualModeEeeSimulator {
 
     /**
      * Main method.
-     * Usage: java DualModeEeeSimulator [-l simulation_length] [-s simulation_seed] [-f config_file] [-v]
+     * Usage: java DualModeEeeSimulator [-l simulation_length] [-s simulation_seed] [-f config_file] [-e binary|quaternary|calendar] [-g java|xoshiro] [-r replications] [-p precision] [-c trace_cache_size] [-b event_log_file] [-q percentile,...] [-w window_length -o time_series_file] [-m window_length] [-t threads] [-k checkpoint_time checkpoint_file] [-i checkpoint_file] [-v]
      */
     public static void main (String[] args) {
+	SimulationContext context = new SimulationContext();
 	BufferedReader configuration_file = null;
-
-	// Traffic parameters
-	String traffic_distribution = "deterministic";
-        double arrival_rate = 1e9; // in bits per second
-	double alpha_pareto = 2.5; // if pareto traffic distribution
-	String traffic_file = ""; // if trace simulation
-	String frame_size_distribution = "deterministic";
-	int frame_size = 1500; // in bytes
-	int frame_size_range = 0; // if uniform frame size distribution
-	String frame_size_file = ""; // if trace simulation
+	int num_replications = 0;
+	double target_precision = 0;
+	long checkpoint_time = 0;
+	String checkpoint_file = null;
+	String restore_file = null;
 
 	// Arguments parsing
 	for (int i = 0; i < args.length; i++) {
 	    if (args[i].equals("-l")) {
 		try {
-		    simulation_length = (long) (1e12 * Double.parseDouble(args[i+1]));
+		    context.simulation_length = (long) (1e12 * Double.parseDouble(args[i+1]));
 		} catch (NumberFormatException e) {
 		    printError("Invalid simulation length!");
 		}
 		i++;
 	    } else if (args[i].equals("-s")) {
 		try {
-		    simulation_seed = Integer.parseInt(args[i+1]);
+		    context.setSeed(Integer.parseInt(args[i+1]));
 		} catch (NumberFormatException e) {
 		    printError("Invalid simulation seed!");
 		}
@@ -99,165 +56,196 @@ public final class DualModeEeeSimulator {
 		    printError("Config file not found!");
 		}
 		i++;
+	    } else if (args[i].equals("-e")) {
+		if (i+1 < args.length && args[i+1].matches("binary|quaternary|calendar")) {
+		    context.event_queue_type = args[i+1];
+		} else {
+		    printError("Invalid event queue type!");
+		}
+		i++;
+	    } else if (args[i].equals("-g")) {
+		if (i+1 < args.length && args[i+1].matches("java|xoshiro")) {
+		    context.random_generator = args[i+1];
+		} else {
+		    printError("Invalid random generator!");
+		}
+		i++;
+	    } else if (args[i].equals("-r")) {
+		try {
+		    num_replications = Integer.parseInt(args[i+1]);
+		} catch (NumberFormatException e) {
+		    printError("Invalid number of replications!");
+		}
+		if (num_replications < 2) {
+		    printError("Invalid number of replications!");
+		}
+		i++;
+	    } else if (args[i].equals("-p")) {
+		try {
+		    target_precision = Double.parseDouble(args[i+1]);
+		} catch (NumberFormatException e) {
+		    printError("Invalid target precision!");
+		}
+		if (target_precision <= 0) {
+		    printError("Invalid target precision!");
+		}
+		i++;
+	    } else if (args[i].equals("-c")) {
+		try {
+		    TraceCache.setMemoryBudget((long) (1e6 * Double.parseDouble(args[i+1])));
+		} catch (NumberFormatException e) {
+		    printError("Invalid trace cache size!");
+		}
+		i++;
+	    } else if (args[i].equals("-b")) {
+		if (i+1 < args.length) {
+		    context.event_log_file = args[i+1];
+		} else {
+		    printError("Invalid event log file!");
+		}
+		i++;
+	    } else if (args[i].equals("-q")) {
+		try {
+		    String[] fields = args[i+1].split(",");
+		    context.delay_percentiles = new double[fields.length];
+		    for (int j = 0; j < fields.length; j++) {
+			context.delay_percentiles[j] = Double.parseDouble(fields[j]);
+			if (context.delay_percentiles[j] < 0 || context.delay_percentiles[j] > 100) {
+			    printError("Invalid delay percentile!");
+			}
+		    }
+		} catch (NumberFormatException e) {
+		    printError("Invalid delay percentile!");
+		}
+		i++;
+	    } else if (args[i].equals("-w")) {
+		try {
+		    context.sampling_window = (long) (1e12 * Double.parseDouble(args[i+1]));
+		} catch (NumberFormatException e) {
+		    printError("Invalid window length!");
+		}
+		if (context.sampling_window <= 0) {
+		    printError("Invalid window length!");
+		}
+		i++;
+	    } else if (args[i].equals("-m")) {
+		try {
+		    context.warmup_window = (long) (1e12 * Double.parseDouble(args[i+1]));
+		} catch (NumberFormatException e) {
+		    printError("Invalid warm-up window length!");
+		}
+		if (context.warmup_window <= 0) {
+		    printError("Invalid warm-up window length!");
+		}
+		i++;
+	    } else if (args[i].equals("-o")) {
+		if (i+1 < args.length) {
+		    context.sampling_file = args[i+1];
+		} else {
+		    printError("Invalid time series file!");
+		}
+		i++;
+	    } else if (args[i].equals("-t")) {
+		try {
+		    context.num_threads = Integer.parseInt(args[i+1]);
+		} catch (NumberFormatException e) {
+		    printError("Invalid number of threads!");
+		}
+		if (context.num_threads < 1) {
+		    printError("Invalid number of threads!");
+		}
+		i++;
+	    } else if (args[i].equals("-k")) {
+		try {
+		    checkpoint_time = (long) (1e12 * Double.parseDouble(args[i+1]));
+		} catch (NumberFormatException e) {
+		    printError("Invalid checkpoint time!");
+		}
+		if (checkpoint_time <= 0 || i+2 >= args.length) {
+		    printError("Invalid checkpoint time!");
+		}
+		checkpoint_file = args[i+2];
+		i += 2;
+	    } else if (args[i].equals("-i")) {
+		restore_file = args[i+1];
+		i++;
 	    } else if (args[i].equals("-v")) {
-                simulation_verbose = true;
+                context.simulation_verbose = true;
 	    } else {
-		printError("Unknown argument: " + args[i] + "\nUsage: java DualModeEeeSimulator [-l simulation_length] [-s simulation_seed] [-f config_file] [-v]");
+		printError("Unknown argument: " + args[i] + "\nUsage: java DualModeEeeSimulator [-l simulation_length] [-s simulation_seed] [-f config_file] [-e binary|quaternary|calendar] [-g java|xoshiro] [-r replications] [-p precision] [-c trace_cache_size] [-b event_log_file] [-q percentile,...] [-w window_length -o time_series_file] [-m window_length] [-t threads] [-k checkpoint_time checkpoint_file] [-i checkpoint_file] [-v]");
 	    }
 	}
 
-	// Configuration file parsing
 	try {
-	    for (String line; (line = configuration_file.readLine()) != null;) {
-		if (line.startsWith(";")) { // Just a comment
-		    continue;
-		}
-		String[] line_fields = line.split("\\s+");
-		if (line_fields[0].equals("LINK")) {
-		    try {
-			link_capacity = (long) Double.parseDouble(line_fields[1]);
-		    } catch (NumberFormatException e) {
-			printError("Config file: invalid link capacity!");
-		    }			
-		} else if (line_fields[0].equals("TRAFFIC")) {
-		    if (line_fields[1].matches("deterministic|poisson|pareto|trace")) {
-			traffic_distribution = line_fields[1];
-		    } else {
-			printError("Config file: invalid traffic distribution!");
-		    }
-		    int field_offset = 0;
-		    if (traffic_distribution.equals("trace")) {
-			traffic_file = line_fields[2];
-		    } else {
-			try {
-			    arrival_rate = Double.parseDouble(line_fields[2]);
-			} catch (NumberFormatException e) {
-			    printError("Config file: invalid arrival rate!");
-			}
-			if (traffic_distribution.equals("pareto")) {
-			    try {
-				alpha_pareto = Double.parseDouble(line_fields[3]);
-			    } catch (NumberFormatException e) {
-				printError("Config file: invalid alpha pareto parameter!");
-			    }
-			    field_offset = 1;
-			}
-		    }
-		    if (line_fields[3 + field_offset].matches("deterministic|uniform|bimodal|trace")) {
-			frame_size_distribution = line_fields[3 + field_offset];
-		    } else {
-			printError("Config file: invalid frame size distribution!");
-		    }
-		    if (frame_size_distribution.equals("trace")) {
-			frame_size_file = line_fields[4 + field_offset];
-		    } else {
-			try {
-			    frame_size = Integer.parseInt(line_fields[4 + field_offset]);
-			} catch (NumberFormatException e) {
-			    printError("Config file: invalid frame size!");
-			}
-			if (frame_size <= 0) {
-			    printError("Config file: invalid frame size!");
-			}
-			if (frame_size_distribution.equals("uniform")) {
-			    try {
-				frame_size_range = Integer.parseInt(line_fields[5 + field_offset]);
-			    } catch (NumberFormatException e) {
-				printError("Config file: invalid frame size range!");
-			    }
-			    if (frame_size_range <= 0 || frame_size - frame_size_range/2.0 <= 0) {
-				printError("Config file: invalid frame size range!");
-			    }
-			}
-		    }
-		} else if (line_fields[0].equals("FAST")) {
-		    try {
-			fast_wake_consumption = Double.parseDouble(line_fields[1]);
-			active_to_fast_t = (long) (1e12 * Double.parseDouble(line_fields[2]));
-			fast_to_active_t = (long) (1e12 * Double.parseDouble(line_fields[3]));
-		    } catch (NumberFormatException e) {
-			printError("Config file: invalid fast wake configuration!");
-		    }
-		} else if (line_fields[0].equals("DEEP")) {
-		    try {
-			deep_sleep_consumption = Double.parseDouble(line_fields[1]);
-			fast_to_deep_t = (long) (1e12 * Double.parseDouble(line_fields[2]));
-			deep_to_active_t = (long) (1e12 * Double.parseDouble(line_fields[3]));
-		    } catch (NumberFormatException e) {
-			printError("Config file: invalid deep sleep configuration!");
-		    }
-		} else if (line_fields[0].equals("EEE")) {
-		    if (line_fields[1].matches("dual|fast|deep|dual_dyn|fast_dyn|deep_dyn|fast_mul|deep_mul|fast_time_dyn|deep_time_dyn|mostowfi")) {
-			operation_mode = line_fields[1];
-		    } else {
-			printError("Config file: invalid EEE operation mode!");
-		    }
-		    try {
-			target_delay = (long) (1e12 * Double.parseDouble(line_fields[2]));
-			max_delay = (long) (1e12 * Double.parseDouble(line_fields[3]));
-			fast_to_active_qth = Integer.parseInt(line_fields[4]);
-			deep_to_active_qth = Integer.parseInt(line_fields[5]);
-			max_fast_wake_time = (long) (1e12 * Double.parseDouble(line_fields[6]));
-		    } catch (NumberFormatException e) {
-			printError("Config file: invalid EEE configuration!");
-		    }
-		    if (deep_to_active_t < fast_to_active_t) {
-			printError("Config file: too low deep to active transition!");
-		    }
-		    if ((operation_mode.matches("deep_dyn|deep_time_dyn") && target_delay < deep_to_active_t / 2.0) ||
-			(operation_mode.matches("fast_dyn|fast_time_dyn|dual_dyn") && target_delay < fast_to_active_t / 2.0)) {
-			printError("Config file: too low target delay!");
-		    }
-		    if (max_delay != 0 && (max_delay < max_fast_wake_time || max_delay < target_delay)) {
-			printError("Config file: too low max delay!");
-		    }
-		    if (deep_to_active_qth < fast_to_active_qth) {
-			printError("Config file: too low deep to active queue threshold!");
-		    }
-		}
+	    // Configuration file parsing
+	    if (configuration_file != null) {
+		context.readConfiguration(configuration_file);
 	    }
-	    configuration_file.close();
-	} catch (IOException e) {
-	    printError("Error while reading config file!");
-	}
-	
-	// Event handler initialization
-	event_handler = new EventList(simulation_length);
 
-	// EEE link initialization
-	TrafficGenerator tgen = null;
-	if (traffic_distribution.equals("deterministic")) {
-	    tgen = new DeterministicTrafficGenerator(arrival_rate, frame_size);
-	} else if (traffic_distribution.equals("poisson")) {
-	    tgen = new PoissonTrafficGenerator(arrival_rate, frame_size);
-	} else if (traffic_distribution.equals("pareto")) {
-	    tgen = new ParetoTrafficGenerator(arrival_rate, frame_size, alpha_pareto);
-	} else if (traffic_distribution.equals("trace")) {
-	    tgen = new TraceTrafficGenerator(traffic_file);
-	}
-	tgen.setSeed(simulation_seed);
+	    if ((context.sampling_window > 0) != (context.sampling_file != null)) {
+		printError("Options -w and -o must be used together!");
+	    }
 
-	FrameSizeGenerator fsgen = null;
-        if (frame_size_distribution.equals("deterministic")) {
-            fsgen = new DeterministicFrameSizeGenerator(frame_size);
-        } else if (frame_size_distribution.equals("uniform")) {
-	    fsgen = new UniformFrameSizeGenerator(frame_size, frame_size_range);
-	} else if (frame_size_distribution.equals("bimodal")) {
-	    fsgen = new BimodalFrameSizeGenerator(frame_size);
-        } else if (frame_size_distribution.equals("trace")) {
-	    fsgen = new TraceFrameSizeGenerator(frame_size_file);
-        }      
-        fsgen.setSeed(simulation_seed + 1);
+	    if ((checkpoint_file != null || restore_file != null) && (num_replications > 0 || target_precision > 0)) {
+		printError("Checkpoints cannot be used with replications or target precision!");
+	    }
+	    if ((checkpoint_file != null || restore_file != null) && (context.simulation_verbose || context.event_log_file != null || context.sampling_file != null)) {
+		printError("Event logging and sampling cannot be used with checkpoints!");
+	    }
 
-	link = new EeeLink(link_capacity, tgen, fsgen);	
+	    if (context.warmup_window > 0 && (target_precision > 0 || context.sampling_file != null || checkpoint_file != null || restore_file != null)) {
+		printError("Warm-up detection cannot be used with target precision, sampling or checkpoints!");
+	    }
+
+	    // Independent replications
+	    if (num_replications > 0) {
+		if (context.simulation_verbose || context.event_log_file != null || context.sampling_file != null) {
+		    printError("Event logging and sampling cannot be used with replications!");
+		}
+		if (target_precision > 0) {
+		    printError("Target precision cannot be used with replications!");
+		}
+		ReplicationRunner runner = new ReplicationRunner(context, num_replications);
+		runner.run();
+		runner.printStatistics(context.output);
+		return;
+	    }
 
-	// Events processing
-	Event event;
-        while ((event = event_handler.getNextEvent(true)) != null) {
-	    event_handler.handleEvent(event);
+	    // Sequential stopping
+	    if (target_precision > 0) {
+		SequentialStoppingRule rule = new SequentialStoppingRule(context, target_precision, 0.95);
+		rule.run();
+		rule.printStatistics(context.output);
+	    } else if (checkpoint_file != null || restore_file != null) {
+		// Events processing from and up to a checkpoint
+		context.start();
+		try {
+		    if (restore_file != null && Checkpoint.restore(context, restore_file) >= checkpoint_time && checkpoint_file != null) {
+			printError("Checkpoint time before the restored checkpoint!");
+		    }
+		    if (checkpoint_file != null && context.runUntil(checkpoint_time)) {
+			Checkpoint.save(context, checkpoint_file);
+			context.output.format("Checkpoint saved at %.6f s %n", checkpoint_time / 1e12);
+			return;
+		    }
+		    context.runUntil(Long.MAX_VALUE);
+		} finally {
+		    context.finish();
+		}
+	    } else if (context.warmup_window > 0) {
+		// Events processing discarding the warm-up period
+		WarmupDetector detector = new WarmupDetector(context);
+		detector.run();
+		detector.printStatistics(context.output);
+	    } else {
+		// Events processing
+		context.run();
+	    }
+	} catch (SimulationException e) {
+	    printError(e.getMessage());
 	}
 
 	// Print statistics
-	link.printStatistics();
+	context.printStatistics();
     }
 }
@@ -0,0 +1,183 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+
+/**
+ * This class extends CoalescingPolicy class to implement the fast_dyn and deep_dyn operation modes: every time the
+ * link goes to sleep, the wake threshold of its sleep state is updated from the arrival rate and the utilization
+ * factor measured during the last cycle, so that the average frame delay approaches the target delay.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class DynamicCoalescingPolicy extends CoalescingPolicy {
+    /**
+     * The transition through which the link goes to sleep, unless a subclass chooses otherwise.
+     */
+    protected EeeState sleep_state;
+    /**
+     * The transition through which the link last went to sleep.
+     */
+    protected EeeState prev_transition_state;
+    /**
+     * The instant of the last parameter update (in picoseconds).
+     */
+    protected double prev_update_active;
+    /**
+     * The integral over time of the wake threshold in force, up to the last parameter update.
+     */
+    private double weighted_sum_active_qth;
+    /**
+     * The amount of frames and bytes received since the last parameter update.
+     */
+    private int frames_received_in_current_cycle, bytes_received_in_current_cycle;
+
+    /**
+     * Creates a new dynamic coalescing policy.
+     *
+     * @param ss the transition through which the link goes to sleep (TRANSITION_TO_FAST or TRANSITION_TO_DEEP)
+     */
+    public DynamicCoalescingPolicy (EeeState ss) {
+	sleep_state = ss;
+    }
+
+    /**
+     * Attaches this policy to the specified link.
+     *
+     * @param l the link
+     */
+    public void init (EeeLink l) {
+	super.init(l);
+	prev_transition_state = getInitialState();
+	prev_update_active = 0.0;
+	weighted_sum_active_qth = 0.0;
+	frames_received_in_current_cycle = bytes_received_in_current_cycle = 0;
+    }
+
+    /**
+     * Returns the transition through which the link goes to sleep.
+     *
+     * @return TRANSITION_TO_FAST or TRANSITION_TO_DEEP
+     */
+    public EeeState getInitialState () {
+	return sleep_state;
+    }
+
+    /**
+     * Returns the transition through which the link goes to sleep, once its parameters have been updated.
+     *
+     * @param t the instant at which the last queued frame has been transmitted
+     * @return TRANSITION_TO_FAST or TRANSITION_TO_DEEP
+     */
+    public EeeState getSleepTransition (long t) {
+	double avg_arrival_rate = frames_received_in_current_cycle / (t - prev_update_active);
+	double utilization_factor = bytes_received_in_current_cycle * 8e12 / (t - prev_update_active) / link.capacity;
+	long w0 = (long) ((1 + Math.pow(1 - utilization_factor, 2)) / (2 * avg_arrival_rate * (1 - utilization_factor)));
+	updateParameters(sleep_state, t, avg_arrival_rate, w0);
+	EeeState transition_state = chooseTransition(sleep_state, avg_arrival_rate);
+	prev_transition_state = transition_state;
+	prev_update_active = t;
+	frames_received_in_current_cycle = bytes_received_in_current_cycle = 0;
+	return transition_state;
+    }
+
+    /**
+     * Counts the queued frame in the current cycle before handling its arrival.
+     *
+     * @param event the FrameArrivalEvent of the queued frame
+     */
+    public void handleFrameArrival (FrameArrivalEvent event) {
+	frames_received_in_current_cycle++;
+	bytes_received_in_current_cycle += event.frame_size;
+	super.handleFrameArrival(event);
+    }
+
+    /**
+     * Adds the average wake threshold to the specified statistics.
+     *
+     * @param stats the statistics of the link
+     * @param t     the measurement instant (in picoseconds)
+     */
+    public void putStatistics (LinkStatistics stats, long t) {
+	int active_qth = prev_transition_state == EeeState.TRANSITION_TO_FAST ? context.fast_to_active_qth : context.deep_to_active_qth;
+	double weighted_sum = weighted_sum_active_qth + active_qth * (t - prev_update_active);
+	stats.put("average_coalescing_queue_threshold", weighted_sum / t);
+    }
+
+    /**
+     * Writes the measurements of the current cycle and the wake thresholds adapted so far.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {
+	out.writeByte(prev_transition_state.ordinal());
+	out.writeDouble(prev_update_active);
+	out.writeDouble(weighted_sum_active_qth);
+	out.writeInt(frames_received_in_current_cycle);
+	out.writeInt(bytes_received_in_current_cycle);
+	out.writeInt(context.fast_to_active_qth);
+	out.writeInt(context.deep_to_active_qth);
+    }
+
+    /**
+     * Reads the measurements of the current cycle and the wake thresholds adapted so far.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     */
+    public void readState (DataInput in) throws IOException {
+	prev_transition_state = EeeState.values()[in.readByte()];
+	prev_update_active = in.readDouble();
+	weighted_sum_active_qth = in.readDouble();
+	frames_received_in_current_cycle = in.readInt();
+	bytes_received_in_current_cycle = in.readInt();
+	context.fast_to_active_qth = in.readInt();
+	context.deep_to_active_qth = in.readInt();
+    }
+
+    /**
+     * Updates the wake threshold of the specified sleep state.
+     *
+     * @param transition_state the transition through which the link goes to sleep
+     * @param t                the instant of the update (in picoseconds)
+     * @param avg_arrival_rate the frame arrival rate measured since the last update (in frames per picosecond)
+     * @param w0               the expected waiting time of the frames queued while active (in picoseconds)
+     */
+    protected void updateParameters (EeeState transition_state, long t, double avg_arrival_rate, long w0) {
+	int active_qth = prev_transition_state == EeeState.TRANSITION_TO_FAST ? context.fast_to_active_qth : context.deep_to_active_qth;
+	weighted_sum_active_qth += active_qth * (t - prev_update_active);
+	if (transition_state == EeeState.TRANSITION_TO_FAST) {
+	    context.fast_to_active_qth = (int) Math.floor(2 * avg_arrival_rate * (context.target_delay - w0 - context.fast_to_active_t/2) + 3);
+	    if (context.fast_to_active_qth < 1) {
+		context.fast_to_active_qth = 1;
+	    }
+	} else {
+	    context.deep_to_active_qth = (int) Math.floor(2 * avg_arrival_rate * (context.target_delay - w0 - context.deep_to_active_t/2) + 3);
+	    if (context.deep_to_active_qth < 1) {
+		context.deep_to_active_qth = 1;
+	    }
+	}
+    }
+
+    /**
+     * Returns the transition through which the link goes to sleep, once its parameters have been updated.
+     *
+     * @param transition_state the transition of the sleep state of this policy
+     * @param avg_arrival_rate the frame arrival rate measured during the last cycle (in frames per picosecond)
+     * @return TRANSITION_TO_FAST or TRANSITION_TO_DEEP
+     */
+    protected EeeState chooseTransition (EeeState transition_state, double avg_arrival_rate) {
+	return transition_state;
+    }
+
+    /**
+     * Returns the transition to active from the state in which the link last went to sleep.
+     *
+     * @param state the current state of the link
+     * @return TRANSITION_TO_ACTIVE_FROM_FAST or TRANSITION_TO_ACTIVE_FROM_DEEP
+     */
+    protected EeeState getMaxDelayTransition (EeeState state) {
+	return prev_transition_state == EeeState.TRANSITION_TO_FAST ? EeeState.TRANSITION_TO_ACTIVE_FROM_FAST : EeeState.TRANSITION_TO_ACTIVE_FROM_DEEP;
+    }
+}
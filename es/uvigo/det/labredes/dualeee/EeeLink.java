@@ -1,7 +1,7 @@
 package es.uvigo.det.labredes.dualeee;
 
-import java.util.Map;
-import java.util.HashMap;
+import java.io.*;
+import java.util.Arrays;
 
 /**
  * This class simulates a dual-mode EEE link.
@@ -10,6 +10,15 @@ import java.util.HashMap;
  * @version 1.0
  */
 public class EeeLink {
+    /**
+     * The maximum amount of arrivals and frame sizes drawn at once from the generators.
+     */
+    public static final int MAX_BATCH_SIZE = 4096;
+
+    /**
+     * The simulation run this link belongs to.
+     */
+    public SimulationContext context;
     /**
      * The link capacity.
      */
@@ -25,7 +34,7 @@ public class EeeLink {
     /**
      * The transmission buffer.
      */
-    public EventList queue;
+    public FrameBuffer queue;
     /**
      * The current amount of frames queued in the transmission buffer.
      */
@@ -38,111 +47,169 @@ public class EeeLink {
      * The current link state.
      */
     private EeeState state;
+    /**
+     * The event handler of the simulation run.
+     */
+    private EventList event_handler;
+    /**
+     * The port of the link in the event handler.
+     */
+    public int port;
+    /**
+     * The number of frames generated so far by the traffic generator.
+     */
+    private long frames_generated;
+    /**
+     * The coalescing policy that implements the EEE operation mode.
+     */
+    public CoalescingPolicy coalescing_policy;
 
     // Statistics variables
     private long frames_received, frames_sent, frames_dropped, bytes_received;
     private long sum_frames_delay, maximum_frame_delay;
+    private DelayHistogram delay_histogram;
+    private long frames_delivered, sum_end_to_end_delay, maximum_end_to_end_delay;
+    private long window_maximum_frame_delay, window_maximum_end_to_end_delay;
+    private double queue_area;
+    private long last_queue_update_time;
     private long last_state_transition_time;
-    private Map<EeeState, Long> time_in_states;
+    private long[] time_in_states;
     private long num_coalescing_cycles;
+    private long warmup_length;
+    private LinkStatistics warmup_statistics;
 
-    // Mostowfi coalescing variables
-    private int mostowfi_queue_size;
+    // Batches of arrival instants and frame sizes drawn from the generators, which grow up to MAX_BATCH_SIZE
+    private long[] arrival_batch;
+    private int[] frame_size_batch;
+    private int next_arrival, num_arrivals, next_frame_size, num_frame_sizes;
 
-    // Dynamic coalescing variables
-    private EeeState prev_transition_state;
-    private double delay_th, arrival_rate_th;
-    private double weighted_sum_active_qth, weighted_sum_active_max_delay, prev_update_active;
-    private int frames_received_in_current_cycle, bytes_received_in_current_cycle;
+    // Cancellable timers: every pending transition to active
+    private TimerHandle[] wake_timers;
 
     /**
-     * Creates a new EEE link.
+     * Creates a new EEE link and registers it in the event handler as the link of the port of its context.
      * Data traffic is simulated with the specified traffic and frame size generators.
+     * The coalescing policy of the operation mode of the context decides the initial state.
      *
+     * @param ctx the simulation context, whose event handler must have been already created
      * @param lc  the link capacity (in b/s)
      * @param tg  the traffic generator
      * @param fsg the frame size generator
      */
-    public EeeLink (long lc, TrafficGenerator tg, FrameSizeGenerator fsg) {
+    public EeeLink (SimulationContext ctx, long lc, TrafficGenerator tg, FrameSizeGenerator fsg) {
+	context = ctx;
+	event_handler = ctx.event_handler;
+	port = ctx.port;
+	event_handler.addLink(port, this);
 	capacity = lc;
 	traffic_generator = tg;
 	frame_size_generator = fsg;
-        queue = new EventList(DualModeEeeSimulator.simulation_length);
+        queue = new FrameBuffer(16);
         queue_size = max_queue_size = 0;
 
 	last_state_transition_time = 0;
-        time_in_states = new HashMap<EeeState, Long>();
-        for (EeeState st : EeeState.values()) {
-            time_in_states.put(st, (long) 0);
-        }
+        time_in_states = new long[EeeState.values().length];
 
-	if (DualModeEeeSimulator.operation_mode.equals("dual_dyn")) {
-	    double c = (1 - DualModeEeeSimulator.deep_sleep_consumption) / (1 - DualModeEeeSimulator.fast_wake_consumption);
-	    double a = c * (DualModeEeeSimulator.active_to_fast_t + DualModeEeeSimulator.fast_to_deep_t) * DualModeEeeSimulator.fast_to_active_t;
-	    a -= DualModeEeeSimulator.active_to_fast_t * DualModeEeeSimulator.deep_to_active_t;
-	    double b = DualModeEeeSimulator.deep_to_active_t - DualModeEeeSimulator.active_to_fast_t;
-	    b += c * (DualModeEeeSimulator.active_to_fast_t + DualModeEeeSimulator.fast_to_deep_t - DualModeEeeSimulator.fast_to_active_t);
-	    delay_th = DualModeEeeSimulator.deep_to_active_t / 2.0 + a / (Math.sqrt(b*b-4*a*(1-c)) - b);
-	    arrival_rate_th = 1 / (DualModeEeeSimulator.deep_to_active_t - 2 * DualModeEeeSimulator.target_delay + 2 * a / (Math.sqrt(b*b-4*a*(1-c)) - b));
-	}
-	
-	state = DualModeEeeSimulator.operation_mode.contains("deep") || (DualModeEeeSimulator.operation_mode.equals("dual_dyn") && DualModeEeeSimulator.target_delay > delay_th) ? 
-	    EeeState.TRANSITION_TO_DEEP : EeeState.TRANSITION_TO_FAST;
-	prev_transition_state = state;
-        DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (0, "handleStateTransitionEvent", state));
+	coalescing_policy = context.createCoalescingPolicy();
+	coalescing_policy.init(this);
+	state = coalescing_policy.getInitialState();
+	wake_timers = new TimerHandle[] {new TimerHandle(), new TimerHandle()};
+        event_handler.addEvent(event_handler.newStateTransitionEvent(port, 0, state));
 
 	frames_received = frames_sent = frames_dropped = bytes_received = 0;
 	sum_frames_delay = maximum_frame_delay = 0;
+	frames_delivered = sum_end_to_end_delay = maximum_end_to_end_delay = 0;
+	frames_generated = 0;
+	arrival_batch = new long[1];
+	frame_size_batch = new int[1];
+	next_arrival = num_arrivals = next_frame_size = num_frame_sizes = 0;
+	delay_histogram = context.delay_percentiles.length > 0 ? new DelayHistogram() : null;
+	window_maximum_frame_delay = window_maximum_end_to_end_delay = 0;
+	queue_area = 0.0;
+	last_queue_update_time = 0;
 	num_coalescing_cycles = 0;
-	weighted_sum_active_qth = weighted_sum_active_max_delay = 0.0;
-	prev_update_active = 0.0;  
-	frames_received_in_current_cycle = bytes_received_in_current_cycle = 0;
-	
-	DualModeEeeSimulator.event_handler.addEvent(new FrameArrivalEvent ((long) (1e12 * traffic_generator.getNextArrival()), frame_size_generator.getNextFrameSize(), "handleFrameArrivalEvent"));
+	warmup_length = -1;
+	warmup_statistics = null;
+
+	event_handler.receiveEvent(createNextArrival());
+    }
+
+    /**
+     * Creates the arrival of the next frame generated by the traffic and frame size generators, numbered but not
+     * added to the event list yet. Generated frames are identified by the port of the link followed by a per-link counter.
+     * Arrival instants and frame sizes are taken from batches that are refilled when they run out, each one twice
+     * as large as the former up to MAX_BATCH_SIZE, so that idle links keep small batches.
+     *
+     * @return the FrameArrivalEvent of the next frame
+     */
+    private FrameArrivalEvent createNextArrival () {
+	if (next_arrival == num_arrivals) {
+	    if (num_arrivals == arrival_batch.length && arrival_batch.length < MAX_BATCH_SIZE) {
+		arrival_batch = new long[2 * arrival_batch.length];
+	    }
+	    num_arrivals = traffic_generator.getNextArrivals(arrival_batch, arrival_batch.length);
+	    next_arrival = 0;
+	}
+	if (next_frame_size == num_frame_sizes) {
+	    if (num_frame_sizes == frame_size_batch.length && frame_size_batch.length < MAX_BATCH_SIZE) {
+		frame_size_batch = new int[2 * frame_size_batch.length];
+	    }
+	    num_frame_sizes = frame_size_generator.getNextFrameSizes(frame_size_batch, frame_size_batch.length);
+	    next_frame_size = 0;
+	}
+	long fid = ((long) port << 40) | frames_generated++;
+	FrameArrivalEvent event = event_handler.newFrameArrivalEvent(port, arrival_batch[next_arrival++], fid, frame_size_batch[next_frame_size++]);
+	event_handler.numberEvent(event);
+	return event;
     }
 
     /**
      * Handles the specified frame arrival event.
+     * Only the arrival of a frame generated by this link schedules the arrival of the next one. If the next arrival
+     * occurs before any other event, as it happens while the link sleeps waiting for its queue threshold, it is
+     * handled right away in the same call instead of being added to the event list, and so on.
      *
      * @param event the FrameArrivalEvent to be handled
      */
     public void handleFrameArrivalEvent (FrameArrivalEvent event) {
+	FrameArrivalEvent next_arrival_event = handleFrameArrival(event);
+	while (next_arrival_event != null) {
+	    if (!context.fast_forward_arrivals || !event_handler.bypassEvent(next_arrival_event, false)) {
+		event_handler.receiveEvent(next_arrival_event);
+		return;
+	    }
+	    FrameArrivalEvent arrival = next_arrival_event;
+	    next_arrival_event = handleFrameArrival(arrival);
+	    event_handler.releaseEvent(arrival);
+	}
+    }
+
+    /**
+     * Handles the arrival of the specified frame.
+     *
+     * @return the arrival of the next frame generated by this link, numbered but not added to the event list yet,
+     *         or null if the specified frame comes from another link
+     */
+    private FrameArrivalEvent handleFrameArrival (FrameArrivalEvent event) {
 	frames_received++;
 	bytes_received += event.frame_size;
-	DualModeEeeSimulator.event_handler.addEvent(new FrameArrivalEvent ((long) (1e12 * traffic_generator.getNextArrival()), frame_size_generator.getNextFrameSize(), "handleFrameArrivalEvent"));
+	FrameArrivalEvent next_arrival_event = event.forwarded ? null : createNextArrival();
 	
         if (max_queue_size == 0 || queue_size < max_queue_size) {
+            queue_area += (double) queue_size * (event.time - last_queue_update_time);
+            last_queue_update_time = event.time;
             queue_size++;
-            queue.addEvent(event);
-            if (DualModeEeeSimulator.simulation_verbose) {
-                event.print();
+            queue.add(event.time, event.frame_id, event.frame_size, event.origin_time);
+            if (context.event_log != null) {
+                event.log(context.event_log, this);
             }
         } else {
-            DualModeEeeSimulator.event_handler.addEvent(new FrameDropEvent (event.time, "handleFrameDropEvent", event.frame_id));
-	    return;
+            event_handler.addEvent(event_handler.newFrameDropEvent(port, event.time, event.frame_id));
+	    return next_arrival_event;
         }
 	
-	if (!DualModeEeeSimulator.operation_mode.contains("mul")) {
-	    if (DualModeEeeSimulator.operation_mode.contains("dyn")) {
-		frames_received_in_current_cycle++;
-		bytes_received_in_current_cycle += event.frame_size;
-	    }
-	    if (state == EeeState.FAST_WAKE && DualModeEeeSimulator.fast_to_active_qth > 0 && queue_size >= DualModeEeeSimulator.fast_to_active_qth) {
-		DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time, "handleStateTransitionEvent", EeeState.TRANSITION_TO_ACTIVE_FROM_FAST));
-		if (DualModeEeeSimulator.operation_mode.equals("dual")) {
-		    DualModeEeeSimulator.event_handler.removeStateTransitionEvent(EeeState.TRANSITION_TO_DEEP);
-		}
-	    } else if (state == EeeState.DEEP_SLEEP && DualModeEeeSimulator.deep_to_active_qth > 0 && queue_size >= DualModeEeeSimulator.deep_to_active_qth) {
-		DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time, "handleStateTransitionEvent", EeeState.TRANSITION_TO_ACTIVE_FROM_DEEP));
-	    } else if (DualModeEeeSimulator.max_delay > 0 && queue_size == 1 && state != EeeState.ACTIVE) {
-		if (!DualModeEeeSimulator.operation_mode.equals("mostowfi") || state == EeeState.TRANSITION_TO_DEEP || state == EeeState.DEEP_SLEEP) {
-		    EeeState transition_state = DualModeEeeSimulator.operation_mode.contains("fast") ||
-			(DualModeEeeSimulator.operation_mode.equals("dual_dyn") && prev_transition_state == EeeState.TRANSITION_TO_FAST) ?
-			EeeState.TRANSITION_TO_ACTIVE_FROM_FAST : EeeState.TRANSITION_TO_ACTIVE_FROM_DEEP;
-		    DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time + DualModeEeeSimulator.max_delay, "handleStateTransitionEvent", transition_state));
-		}
-	    }
-	}
+	coalescing_policy.handleFrameArrival(event);
+	return next_arrival_event;
     }
 
     /**
@@ -152,77 +219,70 @@ public class EeeLink {
      */
     public void handleFrameDropEvent (FrameDropEvent event) {
         frames_dropped++;
-        if (DualModeEeeSimulator.simulation_verbose) {
-            event.print();
+        if (context.event_log != null) {
+            event.log(context.event_log, this);
         }
     }
 
     /**
      * Handles the specified frame transmission event.
+     * While the link stays active, the following transmissions that end before any other event are handled
+     * right away in the same call, reusing the event (see continueTransmission).
      *
      * @param event the FrameTransmissionEvent to be handled
+     * @throws SimulationException if the link is not in a valid state to handle the event
      */
     public void handleFrameTransmissionEvent (FrameTransmissionEvent event) {
-        if (queue_size == 0 || ((FrameArrivalEvent) (queue.getNextEvent(false))).frame_id != event.frame_id) {
-	    event.print();
-            DualModeEeeSimulator.printError("Trying to handle an invalid packet transmission!");
+	do {
+	    handleFrameTransmission(event);
+	} while (queue_size > 0 && continueTransmission(event));
+    }
+
+    /**
+     * Handles the end of the transmission of the specified frame, starting the next transmission through the event
+     * list only if the link goes to sleep.
+     */
+    private void handleFrameTransmission (FrameTransmissionEvent event) {
+        if (queue_size == 0 || queue.getFirstFrameId() != event.frame_id) {
+	    if (context.event_log != null) {
+		context.event_log.flush();
+	    }
+	    event.print(this);
+            throw new SimulationException("Trying to handle an invalid packet transmission!");
         }
+	queue_area += (double) queue_size * (event.time - last_queue_update_time);
+	last_queue_update_time = event.time;
 	queue_size--;
         frames_sent++;
-        event.frame_delay = event.time - queue.getNextEvent(true).time - event.frame_time;
+        event.frame_delay = event.time - queue.getFirstArrivalTime() - event.frame_time;
+	if (context.last_hop) {
+	    long end_to_end_delay = event.time - queue.getFirstOriginTime();
+	    frames_delivered++;
+	    sum_end_to_end_delay += end_to_end_delay;
+	    if (end_to_end_delay > maximum_end_to_end_delay) {
+		maximum_end_to_end_delay = end_to_end_delay;
+	    }
+	    if (end_to_end_delay > window_maximum_end_to_end_delay) {
+		window_maximum_end_to_end_delay = end_to_end_delay;
+	    }
+	}
+	queue.remove();
         if (event.frame_delay > maximum_frame_delay) {
             maximum_frame_delay = event.frame_delay;
         }
+        if (event.frame_delay > window_maximum_frame_delay) {
+            window_maximum_frame_delay = event.frame_delay;
+        }
         sum_frames_delay += event.frame_delay;
-	if (DualModeEeeSimulator.simulation_verbose) {
-            event.print();
+	if (delay_histogram != null) {
+	    delay_histogram.recordValue(event.frame_delay);
+	}
+	if (context.event_log != null) {
+            event.log(context.event_log, this);
         }
-	if (queue_size > 0) {
-	    FrameArrivalEvent next_frame = (FrameArrivalEvent) (queue.getNextEvent(false));
-	    long next_frame_time = (long) (8e12 * next_frame.frame_size / capacity);
-            DualModeEeeSimulator.event_handler.addEvent(new FrameTransmissionEvent (event.time + next_frame_time, "handleFrameTransmissionEvent", next_frame.frame_id, next_frame_time));
-	} else {
-	    EeeState transition_state = EeeState.TRANSITION_TO_DEEP;
-	    if (DualModeEeeSimulator.operation_mode.contains("fast") ||
-		(DualModeEeeSimulator.operation_mode.equals("mostowfi") && mostowfi_queue_size >= DualModeEeeSimulator.deep_to_active_qth / 2.0)) {
-		transition_state = EeeState.TRANSITION_TO_FAST;
-	    }
-	    if (DualModeEeeSimulator.operation_mode.contains("dyn")) {
-		double avg_arrival_rate = frames_received_in_current_cycle / (event.time - prev_update_active);
-		double utilization_factor = bytes_received_in_current_cycle * 8e12 / (event.time - prev_update_active) / capacity;
-		long w0 = (long) ((1 + Math.pow(1 - utilization_factor, 2)) / (2 * avg_arrival_rate * (1 - utilization_factor)));
-		if (DualModeEeeSimulator.operation_mode.contains("time")) {
-		     weighted_sum_active_max_delay += DualModeEeeSimulator.max_delay * (event.time - prev_update_active);
-		     DualModeEeeSimulator.max_delay = DualModeEeeSimulator.target_delay - w0;
-		     DualModeEeeSimulator.max_delay += (long) (Math.sqrt(1 + Math.pow(1 + avg_arrival_rate * (DualModeEeeSimulator.target_delay - w0), 2)) / avg_arrival_rate);
-		     DualModeEeeSimulator.max_delay -= transition_state == EeeState.TRANSITION_TO_FAST ? DualModeEeeSimulator.fast_to_active_t : DualModeEeeSimulator.deep_to_active_t;
-		     if (DualModeEeeSimulator.max_delay <= 1e3) { // 1ns
-			 DualModeEeeSimulator.max_delay = (long) 1e3;
-		     }
-		} else {
-		    int active_qth = prev_transition_state == EeeState.TRANSITION_TO_FAST ? DualModeEeeSimulator.fast_to_active_qth : DualModeEeeSimulator.deep_to_active_qth;
-		    weighted_sum_active_qth += active_qth * (event.time - prev_update_active);
-		    if (transition_state == EeeState.TRANSITION_TO_FAST) {
-			DualModeEeeSimulator.fast_to_active_qth = (int) Math.floor(2 * avg_arrival_rate * (DualModeEeeSimulator.target_delay - w0 - DualModeEeeSimulator.fast_to_active_t/2) + 3);
-			if (DualModeEeeSimulator.fast_to_active_qth < 1) {
-			    DualModeEeeSimulator.fast_to_active_qth = 1;
-			}
-		    } else {
-			DualModeEeeSimulator.deep_to_active_qth = (int) Math.floor(2 * avg_arrival_rate * (DualModeEeeSimulator.target_delay - w0 - DualModeEeeSimulator.deep_to_active_t/2) + 3);
-			if (DualModeEeeSimulator.deep_to_active_qth < 1) {
-			    DualModeEeeSimulator.deep_to_active_qth = 1;
-			}
-		    }
-		}
-		if ((DualModeEeeSimulator.operation_mode.equals("dual_dyn") && DualModeEeeSimulator.target_delay < DualModeEeeSimulator.deep_to_active_t / 2.0) ||
-		    (DualModeEeeSimulator.operation_mode.equals("dual_dyn") && DualModeEeeSimulator.target_delay < delay_th && avg_arrival_rate > arrival_rate_th)) {
-		    transition_state = EeeState.TRANSITION_TO_FAST;
-		}
-		prev_transition_state = transition_state;
-		prev_update_active = event.time;
-		frames_received_in_current_cycle = bytes_received_in_current_cycle = 0;
-	    }
-	    DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time, "handleStateTransitionEvent", transition_state));
+	if (queue_size == 0) {
+	    EeeState transition_state = coalescing_policy.getSleepTransition(event.time);
+	    event_handler.addEvent(event_handler.newStateTransitionEvent(port, event.time, transition_state));
 	}
     }
 
@@ -230,89 +290,477 @@ public class EeeLink {
      * Handles the specified state transition event.
      *
      * @param event the StateTransitionEvent to be handled
+     * @throws SimulationException if the link is not in a valid state to handle the event
      */
     public void handleStateTransitionEvent (StateTransitionEvent event) {
 	if (event.next_state == EeeState.ACTIVE) {
 	    if (queue_size > 0) {
 		num_coalescing_cycles++;
-		FrameArrivalEvent next_frame = (FrameArrivalEvent) (queue.getNextEvent(false));
-		long next_frame_time = (long) (8e12 * next_frame.frame_size / capacity);
-		DualModeEeeSimulator.event_handler.addEvent(new FrameTransmissionEvent (event.time + next_frame_time, "handleFrameTransmissionEvent", next_frame.frame_id, next_frame_time));
+		startTransmission(event.time);
 	    } else {
-		DualModeEeeSimulator.printError("Trying to activate the link with no packet to transmit!");
+		throw new SimulationException("Trying to activate the link with no packet to transmit!");
 	    }
 	} else if (event.next_state == EeeState.FAST_WAKE) {
-	    if (DualModeEeeSimulator.fast_to_active_qth > 0 && queue_size >= DualModeEeeSimulator.fast_to_active_qth) {
-		DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time, "handleStateTransitionEvent", EeeState.TRANSITION_TO_ACTIVE_FROM_FAST));
-	    } else if (DualModeEeeSimulator.operation_mode.equals("dual")) {
-		DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time + DualModeEeeSimulator.max_fast_wake_time, "handleStateTransitionEvent", EeeState.TRANSITION_TO_DEEP));
-	    } else if (DualModeEeeSimulator.operation_mode.equals("mostowfi")) {
-		DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time + DualModeEeeSimulator.max_fast_wake_time, "handleStateTransitionEvent", EeeState.TRANSITION_TO_ACTIVE_FROM_FAST));
-	    } else if (DualModeEeeSimulator.operation_mode.contains("mul")) {
-		DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time + DualModeEeeSimulator.max_delay, "handleStateTransitionEvent", EeeState.FAST_WAKE));
-	    }
+	    coalescing_policy.handleFastWake(event.time);
 	} else if (event.next_state == EeeState.DEEP_SLEEP) {
-	    if (DualModeEeeSimulator.deep_to_active_qth > 0 && queue_size >= DualModeEeeSimulator.deep_to_active_qth) {
-		DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time, "handleStateTransitionEvent", EeeState.TRANSITION_TO_ACTIVE_FROM_DEEP));
-	    } else if (DualModeEeeSimulator.operation_mode.contains("mul")) {
-		DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time + DualModeEeeSimulator.max_delay, "handleStateTransitionEvent", EeeState.DEEP_SLEEP));
-	    }
+	    coalescing_policy.handleDeepSleep(event.time);
 	} else if (event.next_state == EeeState.TRANSITION_TO_FAST) {
-	    DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time + DualModeEeeSimulator.active_to_fast_t, "handleStateTransitionEvent", EeeState.FAST_WAKE));
+	    event_handler.addEvent(event_handler.newStateTransitionEvent(port, event.time + context.active_to_fast_t, EeeState.FAST_WAKE));
 	} else if (event.next_state == EeeState.TRANSITION_TO_DEEP) {
-	    long to_deep_t = DualModeEeeSimulator.operation_mode.equals("dual") ? DualModeEeeSimulator.fast_to_deep_t : DualModeEeeSimulator.active_to_fast_t + DualModeEeeSimulator.fast_to_deep_t;
-	    DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time + to_deep_t, "handleStateTransitionEvent", EeeState.DEEP_SLEEP));
+	    event_handler.addEvent(event_handler.newStateTransitionEvent(port, event.time + coalescing_policy.getTimeToDeep(), EeeState.DEEP_SLEEP));
 	} else if (event.next_state == EeeState.TRANSITION_TO_ACTIVE_FROM_FAST || event.next_state == EeeState.TRANSITION_TO_ACTIVE_FROM_DEEP) {
-	    if (DualModeEeeSimulator.max_delay > 0) {
-		DualModeEeeSimulator.event_handler.removeStateTransitionEvent(event.next_state);
+	    if (context.max_delay > 0) {
+		cancelNextWakeTimer(event.next_state);
 	    }
-	    if (DualModeEeeSimulator.operation_mode.equals("mostowfi") && queue_size == 0) {
-		DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time, "handleStateTransitionEvent", EeeState.TRANSITION_TO_DEEP));
-	    } else {
-		mostowfi_queue_size = queue_size;
-		long to_active_t = event.next_state == EeeState.TRANSITION_TO_ACTIVE_FROM_FAST ? DualModeEeeSimulator.fast_to_active_t : DualModeEeeSimulator.deep_to_active_t;
-		DualModeEeeSimulator.event_handler.addEvent(new StateTransitionEvent (event.time + to_active_t, "handleStateTransitionEvent", EeeState.ACTIVE));
+	    if (coalescing_policy.handleWakeUp(event.time, event.next_state)) {
+		long to_active_t = event.next_state == EeeState.TRANSITION_TO_ACTIVE_FROM_FAST ? context.fast_to_active_t : context.deep_to_active_t;
+		event_handler.addEvent(event_handler.newStateTransitionEvent(port, event.time + to_active_t, EeeState.ACTIVE));
 	    }
 	}
 
-	time_in_states.put(state, time_in_states.get(state) + event.time - last_state_transition_time);
+	time_in_states[state.ordinal()] += event.time - last_state_transition_time;
         state = event.next_state;
         last_state_transition_time = event.time;
-        if (DualModeEeeSimulator.simulation_verbose) {
-            event.print();
+        if (context.event_log != null) {
+            event.log(context.event_log, this);
         }
     }
 
     /**
-     * Prints on standard output some statistics.
+     * Starts the transmission of the first frame of the buffer at the specified instant.
+     * If the link is followed by another link, the arrival of the frame at the next link is scheduled right away,
+     * at the end of the transmission plus the propagation delay.
+     *
+     * @param t the instant at which the transmission starts
      */
-    public void printStatistics () {
-        System.out.format("Frames: received %d sent %d dropped %d %n", frames_received, frames_sent, frames_dropped);
+    private void startTransmission (long t) {
+	long frame_time = (long) (8e12 * queue.getFirstFrameSize() / capacity);
+	event_handler.addEvent(event_handler.newFrameTransmissionEvent(port, t + frame_time, queue.getFirstFrameId(), frame_time));
+	forwardFrame(t + frame_time);
+    }
+
+    /**
+     * Starts the transmission of the first frame of the buffer right after the transmission of the specified event.
+     * Since the departure time only depends on the frame size and the link capacity, the transmission need not go
+     * through the event list if it ends before any pending event: the event is then reused for it, numbered as if
+     * it had been added, and must be handled right away. Otherwise, a new transmission event is added.
+     *
+     * @param event the FrameTransmissionEvent just handled
+     * @return true if the event has been reused for the new transmission
+     */
+    private boolean continueTransmission (FrameTransmissionEvent event) {
+	long t = event.time;
+	long frame_time = (long) (8e12 * queue.getFirstFrameSize() / capacity);
+	boolean bypassed = false;
+	if (context.collapse_busy_periods && event.handler_method_name == null) {
+	    event.reset(t + frame_time, queue.getFirstFrameId(), frame_time);
+	    bypassed = event_handler.bypassEvent(event, true);
+	}
+	if (!bypassed) {
+	    event_handler.addEvent(event_handler.newFrameTransmissionEvent(port, t + frame_time, queue.getFirstFrameId(), frame_time));
+	}
+	forwardFrame(t + frame_time);
+	return bypassed;
+    }
+
+    /**
+     * Schedules the arrival of the first frame of the buffer at the next link, if any, at the specified end of its
+     * transmission plus the propagation delay.
+     */
+    private void forwardFrame (long t) {
+	if (context.next_port >= 0) {
+	    FrameArrivalEvent arrival = event_handler.newFrameArrivalEvent(context.next_port, t + context.propagation_delay, queue.getFirstFrameId(), queue.getFirstFrameSize());
+	    arrival.origin_time = queue.getFirstOriginTime();
+	    arrival.forwarded = true;
+	    event_handler.forwardEvent(arrival, port);
+	}
+    }
+
+    /**
+     * Returns the current link state.
+     *
+     * @return the current state
+     */
+    public EeeState getState () {
+	return state;
+    }
+
+    /**
+     * Schedules a transition to the specified state at the specified instant.
+     *
+     * @param t          the instant of the transition
+     * @param next_state the next state of the link
+     */
+    public void scheduleTransition (long t, EeeState next_state) {
+	event_handler.addEvent(event_handler.newStateTransitionEvent(port, t, next_state));
+    }
+
+    /**
+     * Schedules a transition to the specified state at the specified instant, keeping a handle to cancel it later on.
+     *
+     * @param t          the instant of the transition
+     * @param next_state the next state of the link
+     * @param timer      the handle of the transition
+     */
+    public void scheduleTransition (long t, EeeState next_state, TimerHandle timer) {
+	event_handler.addEvent(event_handler.newStateTransitionEvent(port, t, next_state), timer);
+    }
+
+    /**
+     * Cancels the transition of the specified handle, if it is still pending.
+     *
+     * @param timer the handle of the transition
+     */
+    public void cancelTransition (TimerHandle timer) {
+	event_handler.cancelEvent(timer);
+    }
+
+    /**
+     * Schedules a transition to active at the specified instant. The earliest pending transition through the same
+     * state is cancelled when the link starts to wake up, if there is a max delay.
+     *
+     * @param t                the instant of the transition
+     * @param transition_state the state of the transition to active
+     */
+    public void scheduleWakeUp (long t, EeeState transition_state) {
+	StateTransitionEvent event = event_handler.newStateTransitionEvent(port, t, transition_state);
+	int i = 0;
+	while (i < wake_timers.length && wake_timers[i].isPending()) {
+	    i++;
+	}
+	if (i == wake_timers.length) {
+	    wake_timers = Arrays.copyOf(wake_timers, 2 * i);
+	    for (int j = i; j < wake_timers.length; j++) {
+		wake_timers[j] = new TimerHandle();
+	    }
+	}
+	event_handler.addEvent(event, wake_timers[i]);
+    }
+
+    /**
+     * Cancels the earliest pending transition to active through the specified state.
+     *
+     * @param transition_state the state of the transition to active
+     */
+    private void cancelNextWakeTimer (EeeState transition_state) {
+	TimerHandle next_timer = null;
+	for (TimerHandle timer : wake_timers) {
+	    if (timer.isPending() && ((StateTransitionEvent) timer.getEvent()).next_state == transition_state &&
+		(next_timer == null || timer.getEvent().precedes(next_timer.getEvent()))) {
+		next_timer = timer;
+	    }
+	}
+	if (next_timer != null) {
+	    event_handler.cancelEvent(next_timer);
+	}
+    }
+
+    /**
+     * Returns the histogram of the delays of the frames sent so far.
+     * The histogram is only kept if frame delay percentiles are requested.
+     *
+     * @return the frame delay histogram or null if no percentile is requested
+     */
+    public DelayHistogram getDelayHistogram () {
+	return delay_histogram;
+    }
+
+    /**
+     * Returns the maximum frame delay since the last call to this method.
+     *
+     * @return the maximum frame delay (in picoseconds) or 0 if no frame has been sent
+     */
+    public long pollWindowMaximumDelay () {
+	long delay = window_maximum_frame_delay;
+	window_maximum_frame_delay = 0;
+	return delay;
+    }
+
+    /**
+     * Returns the maximum end-to-end delay of the frames delivered since the last call to this method.
+     *
+     * @return the maximum end-to-end delay (in picoseconds) or 0 if no frame has been delivered
+     */
+    public long pollWindowMaximumEndToEndDelay () {
+	long delay = window_maximum_end_to_end_delay;
+	window_maximum_end_to_end_delay = 0;
+	return delay;
+    }
+
+    /**
+     * Discards the statistics measured during the warm-up period, as if they had been reset at its end.
+     * The statistics of the link are reported from then on, along with the length of the warm-up period.
+     *
+     * @param t0                   the end of the warm-up period (in picoseconds)
+     * @param warmup               the statistics of the link measured up to the end of the warm-up period
+     * @param max_delay            the maximum frame delay after the warm-up period (in picoseconds)
+     * @param max_end_to_end_delay the maximum end-to-end delay after the warm-up period (in picoseconds)
+     * @param histogram            the counts of the delay histogram at the end of the warm-up period or null if
+     *                             no frame delay percentile is requested (see DelayHistogram.getCounts)
+     */
+    public void truncateStatistics (long t0, LinkStatistics warmup, long max_delay, long max_end_to_end_delay, long[] histogram) {
+	warmup_length = t0;
+	if (t0 == 0) {
+	    return;
+	}
+	warmup_statistics = warmup;
+	maximum_frame_delay = max_delay;
+	maximum_end_to_end_delay = max_end_to_end_delay;
+	if (delay_histogram != null) {
+	    delay_histogram.subtract(histogram, max_delay);
+	}
+    }
+
+    /**
+     * Returns the integral of the queue size over time up to the specified instant.
+     *
+     * @param t the instant (in picoseconds), not earlier than the last queue update
+     * @return the integral of the queue size (in frames x picoseconds)
+     */
+    public double getQueueArea (long t) {
+	return queue_area + (double) queue_size * (t - last_queue_update_time);
+    }
+
+    /**
+     * Writes the state of the link to a checkpoint: its state, queue and statistics, the arrivals and frame sizes
+     * already drawn, the pending wake ups and the state of its generators and coalescing policy.
+     * The pending events must have been written before by the event handler.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {
+	out.writeByte(state.ordinal());
+	queue.writeState(out);
+	out.writeInt(queue_size);
+	out.writeLong(frames_generated);
+	out.writeLong(frames_received);
+	out.writeLong(frames_sent);
+	out.writeLong(frames_dropped);
+	out.writeLong(bytes_received);
+	out.writeLong(sum_frames_delay);
+	out.writeLong(maximum_frame_delay);
+	out.writeLong(frames_delivered);
+	out.writeLong(sum_end_to_end_delay);
+	out.writeLong(maximum_end_to_end_delay);
+	out.writeLong(window_maximum_frame_delay);
+	out.writeLong(window_maximum_end_to_end_delay);
+	out.writeDouble(queue_area);
+	out.writeLong(last_queue_update_time);
+	out.writeLong(last_state_transition_time);
+	out.writeInt(time_in_states.length);
+	for (int i = 0; i < time_in_states.length; i++) {
+	    out.writeLong(time_in_states[i]);
+	}
+	out.writeLong(num_coalescing_cycles);
+	out.writeBoolean(delay_histogram != null);
+	if (delay_histogram != null) {
+	    delay_histogram.writeState(out);
+	}
+
+	out.writeInt(arrival_batch.length);
+	out.writeInt(next_arrival);
+	out.writeInt(num_arrivals);
+	for (int i = next_arrival; i < num_arrivals; i++) {
+	    out.writeLong(arrival_batch[i]);
+	}
+	out.writeInt(frame_size_batch.length);
+	out.writeInt(next_frame_size);
+	out.writeInt(num_frame_sizes);
+	for (int i = next_frame_size; i < num_frame_sizes; i++) {
+	    out.writeInt(frame_size_batch[i]);
+	}
+	out.writeInt(wake_timers.length);
+	for (TimerHandle timer : wake_timers) {
+	    event_handler.writeTimer(out, timer);
+	}
+
+	out.writeUTF(traffic_generator.getClass().getName());
+	traffic_generator.writeState(out);
+	out.writeUTF(frame_size_generator.getClass().getName());
+	frame_size_generator.writeState(out);
+
+	ByteArrayOutputStream policy_state = new ByteArrayOutputStream();
+	coalescing_policy.writeState(new DataOutputStream(policy_state));
+	out.writeUTF(context.operation_mode);
+	out.writeUTF(coalescing_policy.getClass().getName());
+	out.writeInt(policy_state.size());
+	out.write(policy_state.toByteArray());
+    }
+
+    /**
+     * Replaces the state of the link with that written by writeState, once the pending events have been restored
+     * by the event handler. The generators must be of the same type as those of the checkpointed link.
+     * The state of the coalescing policy is only restored if the operation mode is the same, so a link restored
+     * with other EEE parameters goes on with the same traffic under its new configuration.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     * @throws SimulationException if the checkpoint does not match the generators or the statistics of the link
+     */
+    public void readState (DataInput in) throws IOException {
+	state = EeeState.values()[in.readByte()];
+	queue.readState(in);
+	queue_size = in.readInt();
+	frames_generated = in.readLong();
+	frames_received = in.readLong();
+	frames_sent = in.readLong();
+	frames_dropped = in.readLong();
+	bytes_received = in.readLong();
+	sum_frames_delay = in.readLong();
+	maximum_frame_delay = in.readLong();
+	frames_delivered = in.readLong();
+	sum_end_to_end_delay = in.readLong();
+	maximum_end_to_end_delay = in.readLong();
+	window_maximum_frame_delay = in.readLong();
+	window_maximum_end_to_end_delay = in.readLong();
+	queue_area = in.readDouble();
+	last_queue_update_time = in.readLong();
+	last_state_transition_time = in.readLong();
+	if (in.readInt() != time_in_states.length) {
+	    throw new SimulationException("Checkpoint: invalid link states!");
+	}
+	for (int i = 0; i < time_in_states.length; i++) {
+	    time_in_states[i] = in.readLong();
+	}
+	num_coalescing_cycles = in.readLong();
+	if (in.readBoolean()) {
+	    (delay_histogram != null ? delay_histogram : new DelayHistogram()).readState(in);
+	} else if (delay_histogram != null) {
+	    throw new SimulationException("Checkpoint: frame delay percentiles were not recorded!");
+	}
+
+	arrival_batch = new long[in.readInt()];
+	next_arrival = in.readInt();
+	num_arrivals = in.readInt();
+	for (int i = next_arrival; i < num_arrivals; i++) {
+	    arrival_batch[i] = in.readLong();
+	}
+	frame_size_batch = new int[in.readInt()];
+	next_frame_size = in.readInt();
+	num_frame_sizes = in.readInt();
+	for (int i = next_frame_size; i < num_frame_sizes; i++) {
+	    frame_size_batch[i] = in.readInt();
+	}
+	wake_timers = new TimerHandle[in.readInt()];
+	for (int i = 0; i < wake_timers.length; i++) {
+	    wake_timers[i] = new TimerHandle();
+	    event_handler.readTimer(in, wake_timers[i]);
+	}
+
+	if (!in.readUTF().equals(traffic_generator.getClass().getName())) {
+	    throw new SimulationException("Checkpoint: different traffic generator!");
+	}
+	traffic_generator.readState(in);
+	if (!in.readUTF().equals(frame_size_generator.getClass().getName())) {
+	    throw new SimulationException("Checkpoint: different frame size generator!");
+	}
+	frame_size_generator.readState(in);
+
+	String operation_mode = in.readUTF();
+	String policy_class = in.readUTF();
+	byte[] policy_state = new byte[in.readInt()];
+	in.readFully(policy_state);
+	if (operation_mode.equals(context.operation_mode) && policy_class.equals(coalescing_policy.getClass().getName())) {
+	    coalescing_policy.readState(new DataInputStream(new ByteArrayInputStream(policy_state)));
+	}
+    }
+
+    /**
+     * Returns the statistics of the link measured up to the specified instant.
+     * If a warm-up period has been discarded, the statistics refer to the time since its end.
+     * The state of the link is not modified.
+     *
+     * @param t the measurement instant (in picoseconds), not earlier than the last state transition
+     * @return the statistics of the link
+     */
+    public LinkStatistics getStatistics (long t) {
+	LinkStatistics stats = new LinkStatistics();
+	stats.put("frames_received", frames_received);
+	stats.put("frames_sent", frames_sent);
+	stats.put("frames_dropped", frames_dropped);
+	if (frames_delivered > 0) {
+	    stats.put("frames_delivered", frames_delivered);
+	    stats.put("average_end_to_end_delay", sum_end_to_end_delay / 1e6 / frames_delivered);
+	    stats.put("maximum_end_to_end_delay", maximum_end_to_end_delay / 1e6);
+	}
         if (frames_sent > 0) {
-            System.out.format("Frame delay: average %.3f max %.3f %n", sum_frames_delay / 1e6 / frames_sent, maximum_frame_delay / 1e6);
-	    System.out.format("Average frame size: %.3f %n", 1.0 * bytes_received / frames_received);
-	    System.out.format("Average bit rate: %.3f %n", 8e12 * bytes_received / DualModeEeeSimulator.simulation_length);
+	    stats.put("average_frame_delay", sum_frames_delay / 1e6 / frames_sent);
+	    stats.put("maximum_frame_delay", maximum_frame_delay / 1e6);
+	    stats.put("average_frame_size", 1.0 * bytes_received / frames_received);
+	    stats.put("average_bit_rate", 8e12 * bytes_received / t);
+	    for (double p : context.delay_percentiles) {
+		stats.put("frame_delay_" + DelayHistogram.getLabel(p), delay_histogram.getValueAtPercentile(p) / 1e6);
+	    }
         }
-	time_in_states.put(state, time_in_states.get(state) + DualModeEeeSimulator.simulation_length - last_state_transition_time);
+	long[] times = time_in_states.clone();
+	times[state.ordinal()] += t - last_state_transition_time;
         for (EeeState st : EeeState.values()) {
-            System.out.format("Time in state %s: %.3f %.2f %% %n", st, time_in_states.get(st) / 1e6, 100.0 * time_in_states.get(st) / DualModeEeeSimulator.simulation_length);
+	    stats.put("time_in_" + st, times[st.ordinal()] / 1e6);
+	    stats.put("ratio_in_" + st, 100.0 * times[st.ordinal()] / t);
         }
-	double power_consumption = (time_in_states.get(EeeState.ACTIVE) + 
-				    time_in_states.get(EeeState.TRANSITION_TO_FAST) + time_in_states.get(EeeState.TRANSITION_TO_DEEP) +
-				    time_in_states.get(EeeState.TRANSITION_TO_ACTIVE_FROM_FAST) + time_in_states.get(EeeState.TRANSITION_TO_ACTIVE_FROM_DEEP) + 
-				    DualModeEeeSimulator.fast_wake_consumption * time_in_states.get(EeeState.FAST_WAKE) +
-				    DualModeEeeSimulator.deep_sleep_consumption * time_in_states.get(EeeState.DEEP_SLEEP)) / DualModeEeeSimulator.simulation_length;
-	System.out.format("Power consumption: %.3f %n", power_consumption);
-	System.out.format("Average coalescing cycle: %.3f %n", DualModeEeeSimulator.simulation_length / 1e6 / num_coalescing_cycles);
-	if (DualModeEeeSimulator.operation_mode.contains("dyn")) {
-	    if (DualModeEeeSimulator.operation_mode.contains("time")) {
-		weighted_sum_active_max_delay += DualModeEeeSimulator.max_delay * (DualModeEeeSimulator.simulation_length - prev_update_active);
-		System.out.format("Average coalescing max delay: %.3f %n", weighted_sum_active_max_delay / 1e6 / DualModeEeeSimulator.simulation_length);
-	    } else {
-		int active_qth = prev_transition_state == EeeState.TRANSITION_TO_FAST ? DualModeEeeSimulator.fast_to_active_qth : DualModeEeeSimulator.deep_to_active_qth;
-		weighted_sum_active_qth += active_qth * (DualModeEeeSimulator.simulation_length - prev_update_active);
-		System.out.format("Average coalescing queue threshold: %.3f %n", weighted_sum_active_qth / DualModeEeeSimulator.simulation_length);
+	double power_consumption = (times[EeeState.ACTIVE.ordinal()] + 
+				    times[EeeState.TRANSITION_TO_FAST.ordinal()] + times[EeeState.TRANSITION_TO_DEEP.ordinal()] +
+				    times[EeeState.TRANSITION_TO_ACTIVE_FROM_FAST.ordinal()] + times[EeeState.TRANSITION_TO_ACTIVE_FROM_DEEP.ordinal()] + 
+				    context.fast_wake_consumption * times[EeeState.FAST_WAKE.ordinal()] +
+				    context.deep_sleep_consumption * times[EeeState.DEEP_SLEEP.ordinal()]) / t;
+	stats.put("power_consumption", power_consumption);
+	stats.put("average_coalescing_cycle", t / 1e6 / num_coalescing_cycles);
+	coalescing_policy.putStatistics(stats, t);
+	if (warmup_statistics != null) {
+	    stats = stats.since(warmup_statistics, warmup_length, t);
+	}
+	if (warmup_length >= 0) {
+	    stats.put("warm_up_length", warmup_length / 1e6);
+	}
+	return stats;
+    }
+
+    /**
+     * Prints on the output stream some statistics.
+     */
+    public void printStatistics () {
+	printStatistics(getStatistics(context.simulation_length), context.output);
+    }
+
+    /**
+     * Prints the specified link statistics on the specified output stream.
+     *
+     * @param stats the link statistics
+     * @param out   the output stream
+     */
+    public static void printStatistics (LinkStatistics stats, PrintStream out) {
+        out.format("Frames: received %d sent %d dropped %d %n", (long) stats.get("frames_received"), (long) stats.get("frames_sent"), (long) stats.get("frames_dropped"));
+        if (stats.contains("average_frame_delay")) {
+            out.format("Frame delay: average %.3f max %.3f %n", stats.get("average_frame_delay"), stats.get("maximum_frame_delay"));
+	    out.format("Average frame size: %.3f %n", stats.get("average_frame_size"));
+	    out.format("Average bit rate: %.3f %n", stats.get("average_bit_rate"));
+	    String percentiles = "";
+	    for (String name : stats.getNames()) {
+		if (name.startsWith("frame_delay_p")) {
+		    percentiles += String.format(" %s %.3f", name.substring("frame_delay_".length()), stats.get(name));
+		}
 	    }
+	    if (!percentiles.isEmpty()) {
+		out.format("Frame delay percentiles:%s %n", percentiles);
+	    }
+        }
+	if (stats.contains("frames_delivered")) {
+	    out.format("End-to-end delay: delivered %d average %.3f max %.3f %n", (long) stats.get("frames_delivered"),
+		       stats.get("average_end_to_end_delay"), stats.get("maximum_end_to_end_delay"));
+	}
+        for (EeeState st : EeeState.values()) {
+            out.format("Time in state %s: %.3f %.2f %% %n", st, stats.get("time_in_" + st), stats.get("ratio_in_" + st));
+        }
+	out.format("Power consumption: %.3f %n", stats.get("power_consumption"));
+	if (stats.contains("total_power_consumption")) {
+	    out.format("Total power consumption: %.3f %n", stats.get("total_power_consumption"));
+	}
+	out.format("Average coalescing cycle: %.3f %n", stats.get("average_coalescing_cycle"));
+	if (stats.contains("average_coalescing_max_delay")) {
+	    out.format("Average coalescing max delay: %.3f %n", stats.get("average_coalescing_max_delay"));
+	} else if (stats.contains("average_coalescing_queue_threshold")) {
+	    out.format("Average coalescing queue threshold: %.3f %n", stats.get("average_coalescing_queue_threshold"));
 	}
     }
 }
@@ -6,15 +6,36 @@ package es.uvigo.det.labredes.dualeee;
  * @author Sergio Herreria-Alonso 
  * @version 1.0
  */
-abstract public class Event<EeeLink> implements Comparable {
+abstract public class Event implements Comparable {
     /**
      * The instant at which the event occurs.
      */
     public long time;
     /**
-     * The name of the method that handles the event.
+     * The name of the method that handles the event or null if the event is dispatched directly to its handler.
      */
     public String handler_method_name;
+    /**
+     * The order in which the event was added by the link that created it, followed by the port of that link.
+     */
+    public long sequence_number;
+    /**
+     * True while the event is waiting in its event list to be handled and has not been cancelled.
+     */
+    public boolean scheduled;
+    /**
+     * The port of the link that handles the event in its event list. Default = 0 (the first link).
+     */
+    public int port;
+
+    /**
+     * Creates a new event ocurring at the specified time that is dispatched directly to its handler.
+     *
+     * @param t instant at which the event occurs
+     */
+    public Event (long t) {
+	this(t, null);
+    }
 
     /**
      * Creates a new event ocurring at the specified time.
@@ -43,7 +64,54 @@ abstract public class Event<EeeLink> implements Comparable {
     }
 
     /**
-     * Prints on standard output a message describing this event.
+     * Reinitializes this recycled event so that it can be scheduled again at the specified time.
+     *
+     * @param t instant at which the event occurs
+     */
+    void reset (long t) {
+	time = t;
+	handler_method_name = null;
+	scheduled = false;
+    }
+
+    /**
+     * Handles this event by calling directly the corresponding handler of the specified link.
+     * Events that do not override this method are handled through the method named handler_method_name.
+     *
+     * @param link the link that handles the event
+     * @return true if the event has been handled; false if it must be handled through its handler method name
      */
-    abstract public void print ();
+    public boolean dispatch (EeeLink link) {
+	return false;
+    }
+
+    /**
+     * Checks whether this event must be handled before the specified event.
+     * Events occurring at the same instant are handled in the order of their sequence numbers.
+     *
+     * @param event the Event to be compared
+     * @return true if this event occurs earlier than the specified event or at the same instant but has a lower sequence number
+     */
+    public boolean precedes (Event event) {
+	return time < event.time || (time == event.time && sequence_number < event.sequence_number);
+    }
+
+    /**
+     * Prints on the output stream of the specified link a message describing this event.
+     *
+     * @param link the link that handles the event
+     */
+    abstract public void print (EeeLink link);
+
+    /**
+     * Logs this event on the specified event log.
+     * Built-in events encode themselves into the log; by default, the log is flushed and the event is printed.
+     *
+     * @param log  the event log
+     * @param link the link that handles the event
+     */
+    public void log (EventLog log, EeeLink link) {
+	log.flush();
+	print(link);
+    }
 }
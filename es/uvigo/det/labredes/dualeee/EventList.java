@@ -1,20 +1,69 @@
 package es.uvigo.det.labredes.dualeee;
 
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 import java.lang.reflect.*;
+import java.io.*;
 
 /**
  * This class implements a discrete sequence of events sorted by event time.
+ * <p>
+ * Simultaneous events are sorted by their sequence numbers, which are drawn from a separate counter for each port:
+ * the number of events added so far by the link of the port, followed by the port itself. The order of the events of
+ * a link therefore does not depend on how the rest of links are distributed among event lists, so a path of links can
+ * be split among several event lists (see ParallelEngine) and still produce the same results.
  *
  * @author Sergio Herreria-Alonso 
  * @version 1.0
  */
 public class EventList {
     /**
-     * The events list.
+     * The maximum number of ports.
      */
-    private List<Event> list;
+    public static final int MAX_PORTS = 1 << 20;
+    /**
+     * The number of low-order bits of the sequence numbers that hold the port.
+     */
+    private static final int PORT_BITS = 20;
+    /**
+     * The maximum number of handled events of each type kept for reuse.
+     */
+    private static final int EVENT_POOL_CAPACITY = 1024;
+    /**
+     * The pending events sorted by event time. Cancelled events are kept until they reach the head of the queue.
+     */
+    private EventQueue queue;
+    /**
+     * The pending events, used to discard duplicated events.
+     */
+    private EventSet pending;
+    /**
+     * The handled events of each built-in type ready to be reused.
+     */
+    private EventPool arrival_pool, drop_pool, transmission_pool, transition_pool;
+    /**
+     * The number of events added so far by the link of each port, used to break ties between simultaneous events.
+     */
+    private long[] sequence_counters;
+    /**
+     * The handler methods of the events not dispatched directly, looked up by event class and method name.
+     */
+    private Map<Class<?>, Map<String, Method>> handler_methods;
+    /**
+     * The simulation run this event list belongs to.
+     */
+    private SimulationContext context;
+    /**
+     * The links that handle the events, indexed by port.
+     */
+    private EeeLink[] links;
+    /**
+     * The events added for ports whose links belong to other event lists, waiting to be delivered.
+     */
+    private List<Event> outgoing_events;
     /**
      * The current instant of time.
      */
@@ -23,44 +72,340 @@ public class EventList {
      * The end of time.
      */
     private long end_time;
+    /**
+     * The latest instant up to which the events being handled may handle further events without adding them.
+     */
+    private long horizon;
+    /**
+     * The number of events handled so far.
+     */
+    private long handled_events;
+    /**
+     * The pending events read from the last checkpoint, by sequence number, to restore the timers that refer to them.
+     */
+    private Map<Long, Event> restored_events;
+
+    /**
+     * Creates a new list of events for the specified simulation run, backed by the event queue type
+     * of its configuration and ending at the end of the simulation.
+     *
+     * @param ctx the simulation context
+     */
+    public EventList(SimulationContext ctx) {
+	this(ctx, ctx.simulation_length, EventQueue.create(ctx.event_queue_type));
+    }
 
     /**
-     * Creates a new list of events.
+     * Creates a new list of events backed by the specified event queue.
      *
-     * @param t the end of time
+     * @param ctx the simulation context
+     * @param t   the end of time
+     * @param q   the empty event queue that keeps the pending events
      */
-    public EventList(long t) {
-	list = new ArrayList<Event>();
+    public EventList(SimulationContext ctx, long t, EventQueue q) {
+	context = ctx;
+	queue = q;
+	pending = new EventSet();
+	arrival_pool = new EventPool(EVENT_POOL_CAPACITY);
+	drop_pool = new EventPool(EVENT_POOL_CAPACITY);
+	transmission_pool = new EventPool(EVENT_POOL_CAPACITY);
+	transition_pool = new EventPool(EVENT_POOL_CAPACITY);
+	handler_methods = new HashMap<Class<?>, Map<String, Method>>();
+	links = new EeeLink[1];
+	sequence_counters = new long[1];
+	outgoing_events = new ArrayList<Event>();
 	simulation_time = 0;
 	end_time = t;
+	horizon = t;
+	handled_events = 0;
+    }
+
+    /**
+     * Registers the specified link as the handler of the events of the specified port.
+     *
+     * @param port the port of the link (lower than MAX_PORTS)
+     * @param link the link
+     * @throws SimulationException if the port is not valid
+     */
+    public void addLink (int port, EeeLink link) {
+	if (port < 0 || port >= MAX_PORTS) {
+	    throw new SimulationException("Trying to add a link with an invalid port!");
+	}
+	if (port >= links.length) {
+	    int n = links.length;
+	    while (n <= port) {
+		n *= 2;
+	    }
+	    links = Arrays.copyOf(links, n);
+	    sequence_counters = Arrays.copyOf(sequence_counters, n);
+	}
+	links[port] = link;
+    }
+
+    /**
+     * Returns a new frame arrival event, reusing a handled one if possible.
+     *
+     * @param port  port of the link where the new frame arrives
+     * @param t     instant at which the new frame arrives
+     * @param fid   identifier of the new frame, unique across ports
+     * @param fsize size of the new frame
+     * @return a frame arrival event dispatched directly to the link
+     */
+    public FrameArrivalEvent newFrameArrivalEvent (int port, long t, long fid, int fsize) {
+	FrameArrivalEvent event = (FrameArrivalEvent) arrival_pool.poll();
+	event = event != null ? event.reset(t, fid, fsize) : new FrameArrivalEvent(t, fid, fsize);
+	event.port = port;
+	return event;
+    }
+
+    /**
+     * Returns a new frame drop event, reusing a handled one if possible.
+     *
+     * @param port port of the link that discards the frame
+     * @param t    instant at which the new arriving frame is discarded
+     * @param fid  identifier of the discarded frame
+     * @return a frame drop event dispatched directly to the link
+     */
+    public FrameDropEvent newFrameDropEvent (int port, long t, long fid) {
+	FrameDropEvent event = (FrameDropEvent) drop_pool.poll();
+	event = event != null ? event.reset(t, fid) : new FrameDropEvent(t, fid);
+	event.port = port;
+	return event;
+    }
+
+    /**
+     * Returns a new frame transmission event, reusing a handled one if possible.
+     *
+     * @param port  port of the link that transmits the frame
+     * @param t     instant at which the link ends the transmission
+     * @param fid   identifier of the frame transmitted
+     * @param ftime time required to transmit the frame
+     * @return a frame transmission event dispatched directly to the link
+     */
+    public FrameTransmissionEvent newFrameTransmissionEvent (int port, long t, long fid, long ftime) {
+	FrameTransmissionEvent event = (FrameTransmissionEvent) transmission_pool.poll();
+	event = event != null ? event.reset(t, fid, ftime) : new FrameTransmissionEvent(t, fid, ftime);
+	event.port = port;
+	return event;
+    }
+
+    /**
+     * Returns a new state transition event, reusing a handled one if possible.
+     *
+     * @param port  port of the link that changes its state
+     * @param t     instant at which the link changes its state
+     * @param state next state of the link
+     * @return a state transition event dispatched directly to the link
+     */
+    public StateTransitionEvent newStateTransitionEvent (int port, long t, EeeState state) {
+	StateTransitionEvent event = (StateTransitionEvent) transition_pool.poll();
+	event = event != null ? event.reset(t, state) : new StateTransitionEvent(t, state);
+	event.port = port;
+	return event;
+    }
+
+    /**
+     * Keeps the specified event for later reuse if it is a built-in event dispatched directly to the link.
+     * The event must not be referenced anymore except through timer handles.
+     *
+     * @param event the Event to be recycled
+     */
+    private void recycleEvent (Event event) {
+	if (event.handler_method_name != null) {
+	    return;
+	}
+	Class<?> event_class = event.getClass();
+	if (event_class == FrameArrivalEvent.class) {
+	    arrival_pool.push(event);
+	} else if (event_class == FrameTransmissionEvent.class) {
+	    transmission_pool.push(event);
+	} else if (event_class == StateTransitionEvent.class) {
+	    transition_pool.push(event);
+	} else if (event_class == FrameDropEvent.class) {
+	    drop_pool.push(event);
+	}
     }
 
     /**
      * Adds the specified event to the event list at the right position.
+     * Events that are not added are recycled.
      *
      * @param event the Event to be added
      * @return true if the specified event is correctly added to the event list
+     * @throws SimulationException if the event occurs before the current instant of time
      */
     public boolean addEvent (Event event) {
+	return insertEvent(event, true);
+    }
+
+    /**
+     * Adds an event created by the link of the specified port for the link of another port, which may belong to
+     * another event list. The event takes its sequence number from the creating port. If the link of its port
+     * does not belong to this event list, the event is kept until it is delivered with pollOutgoingEvents.
+     *
+     * @param event     the Event to be forwarded
+     * @param from_port the port of the link that creates the event
+     */
+    public void forwardEvent (Event event, int from_port) {
+	event.sequence_number = nextSequenceNumber(from_port);
+	if (event.port < links.length && links[event.port] != null) {
+	    insertEvent(event, false);
+	} else {
+	    outgoing_events.add(event);
+	}
+    }
+
+    /**
+     * Adds an event forwarded from another event list, keeping its sequence number.
+     *
+     * @param event the Event to be added
+     * @return true if the specified event is correctly added to the event list
+     * @throws SimulationException if the event occurs before the current instant of time
+     */
+    public boolean receiveEvent (Event event) {
+	return insertEvent(event, false);
+    }
+
+    /**
+     * Returns the forwarded events whose links do not belong to this event list and forgets them.
+     *
+     * @return the outgoing events, in the order in which they were forwarded
+     */
+    public List<Event> pollOutgoingEvents () {
+	List<Event> events = outgoing_events;
+	outgoing_events = new ArrayList<Event>();
+	return events;
+    }
+
+    /**
+     * Adds the specified event to the event list at the right position, numbering it if requested.
+     * Events that are not added are recycled.
+     */
+    private boolean insertEvent (Event event, boolean numbered) {
 	if (event.time < simulation_time) {
-	    DualModeEeeSimulator.printError("Trying to add an event with an invalid event time!");
+	    throw new SimulationException("Trying to add an event with an invalid event time!");
+	}
+	if (event.scheduled) {
+	    return false;
 	}
-	if (event.time > end_time || list.contains(event)) {
+	if (event.time > end_time || !pending.add(event)) {
+	    recycleEvent(event);
 	    return false;
-	}	
+	}
+	if (numbered) {
+	    event.sequence_number = nextSequenceNumber(event.port);
+	}
+	event.scheduled = true;
+	queue.add(event);
+	return true;
+    }
 
-	int i = 0;
-	int list_size = list.size();
-	while (i < list_size && event.compareTo(list.get(i)) <= 0) {
-	    i++;
+    /**
+     * Sets the latest instant up to which events may be handled without adding them to the event list
+     * (see bypassEvent). By default, it is the end of time.
+     *
+     * @param t the instant (in picoseconds)
+     */
+    public void setHorizon (long t) {
+	horizon = t;
+    }
+
+    /**
+     * Numbers the specified event as if it were added now, so that it can be added later with receiveEvent,
+     * or handled with bypassEvent, without changing the order of simultaneous events.
+     *
+     * @param event the Event to be numbered
+     */
+    public void numberEvent (Event event) {
+	event.sequence_number = nextSequenceNumber(event.port);
+    }
+
+    /**
+     * Checks whether the specified event can be handled right away by its link, without adding it to the event list.
+     * This is the case if it occurs strictly before every pending event, so no other event could be handled before it,
+     * and neither after the horizon nor after the end of time. If so, the event is numbered as if it had been added
+     * (unless it is already numbered) and counted as handled, and the caller must handle it at once and then release
+     * it; otherwise, nothing is changed.
+     *
+     * @param event    the Event to be handled, which must not be scheduled
+     * @param numbered true if the event must be numbered
+     * @return true if the event must be handled right away by the caller
+     */
+    public boolean bypassEvent (Event event, boolean numbered) {
+	if (event.time > horizon || event.time > end_time || event.time < simulation_time) {
+	    return false;
 	}
-	if (i == list_size) {
-	    return list.add(event);
+	Event next_event = getNextEvent(false);
+	if (next_event != null && next_event.time <= event.time) {
+	    return false;
+	}
+	if (numbered) {
+	    event.sequence_number = nextSequenceNumber(event.port);
+	}
+	simulation_time = event.time;
+	handled_events++;
+	return true;
+    }
+
+    /**
+     * Keeps for later reuse an event handled right away by its link (see bypassEvent).
+     *
+     * @param event the Event handled
+     */
+    public void releaseEvent (Event event) {
+	recycleEvent(event);
+    }
+
+    /**
+     * Returns the next sequence number of the specified port.
+     */
+    private long nextSequenceNumber (int port) {
+	return (sequence_counters[port]++ << PORT_BITS) | port;
+    }
+
+    /**
+     * Adds the specified event to the event list and makes the specified handle refer to it.
+     * If the event is not added, the handle is left unchanged.
+     *
+     * @param event the Event to be added
+     * @param timer the TimerHandle that refers to the event
+     * @return true if the specified event is correctly added to the event list
+     */
+    public boolean addEvent (Event event, TimerHandle timer) {
+	if (!addEvent(event)) {
+	    return false;
+	}
+	timer.event = event;
+	timer.sequence_number = event.sequence_number;
+	return true;
+    }
+
+    /**
+     * Cancels the event referred by the specified handle in constant time.
+     * The event is only marked as cancelled and is discarded when it reaches the head of the list.
+     *
+     * @param timer the TimerHandle that refers to the event to be cancelled
+     * @return true if the event was still pending and has been cancelled
+     */
+    public boolean cancelEvent (TimerHandle timer) {
+	if (!timer.isPending()) {
+	    return false;
 	}
-	list.add(i, event);
+	timer.event.scheduled = false;
+	pending.remove(timer.event);
+	timer.event = null;
 	return true;
     }
 
+    /**
+     * Returns the number of events handled so far.
+     *
+     * @return the number of events handled
+     */
+    public long getHandledEvents () {
+	return handled_events;
+    }
+
     /**
      * Returns the time of the last event handled.
      *
@@ -77,58 +422,288 @@ public class EventList {
      * @return the next event in this event list or null if the list is empty
      */
     public Event getNextEvent (boolean remove) {
-	Event event;
-	try {
-	    event = remove ? list.remove(0) : list.get(0);
-	} catch (Exception e) {
-	    event = null;
+	Event event = queue.peek();
+	while (event != null && !event.scheduled) {
+	    queue.poll();
+	    recycleEvent(event);
+	    event = queue.peek();
+	}
+	if (event != null && remove) {
+	    queue.poll();
+	    pending.remove(event);
+	    event.scheduled = false;
 	}
 	return event;
     }
 
     /**
-     * Invokes the method that handles the specified event.
+     * Handles the specified event with the link of its port. Events are dispatched directly to the link
+     * handlers unless they name their own handler method, which is then looked up once and invoked
+     * through reflection. Once handled, built-in events are recycled.
      *
      * @param event the Event to be handled
+     * @throws SimulationException if the event cannot be handled
      */
     public void handleEvent (Event event) {
 	simulation_time = event.time;
+	handled_events++;
+	EeeLink link = links[event.port];
+	if (event.dispatch(link)) {
+	    recycleEvent(event);
+	    return;
+	}
+	Method handler_method = getHandlerMethod(link, event);
 	try {
-	    Method handler_method = DualModeEeeSimulator.link.getClass().getMethod(event.handler_method_name, event.getClass());
+	    handler_method.invoke(link, event);
+	} catch (InvocationTargetException e) {
+	    if (e.getCause() instanceof SimulationException) {
+		throw (SimulationException) e.getCause();
+	    }
+	    throw new SimulationException("Handler method invoke exception: " + event.handler_method_name + ": " + e.getCause());
+	} catch (Exception e) {
+	    throw new SimulationException("Handler method invoke exception: " + event.handler_method_name + ": " + e.getMessage());
+	}
+    }
+
+    /**
+     * Returns the link method that handles the specified event according to its handler method name.
+     *
+     * @param link  the link that handles the event
+     * @param event the Event to be handled
+     * @return the method that handles the event
+     */
+    private Method getHandlerMethod (EeeLink link, Event event) {
+	Map<String, Method> class_methods = handler_methods.get(event.getClass());
+	if (class_methods == null) {
+	    class_methods = new HashMap<String, Method>();
+	    handler_methods.put(event.getClass(), class_methods);
+	}
+	Method handler_method = class_methods.get(event.handler_method_name);
+	if (handler_method == null) {
 	    try {
-		handler_method.invoke(DualModeEeeSimulator.link, event);
+		handler_method = link.getClass().getMethod(event.handler_method_name, event.getClass());
 	    } catch (Exception e) {
-		DualModeEeeSimulator.printError("Handler method invoke exception: " + event.handler_method_name + ": " + e.getMessage());
+		throw new SimulationException("Handler method exception: " + e.getMessage());
 	    }
-	} catch (Exception e) {
-	    DualModeEeeSimulator.printError("Handler method exception: " + e.getMessage());
+	    class_methods.put(event.handler_method_name, handler_method);
 	}
+	return handler_method;
     }
 
     /**
-     * Prints on standard output a message for each event contained in the event list.
+     * Writes the state of this event list: the current instant, the sequence counters and the pending events, in order.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     * @throws SimulationException if any pending event is not a built-in event dispatched directly
+     */
+    public void writeState (DataOutput out) throws IOException {
+	Event[] events = queue.toSortedArray();
+	int n = 0;
+	for (int i = 0; i < events.length; i++) {
+	    if (events[i].scheduled) {
+		n++;
+	    }
+	}
+	out.writeLong(end_time);
+	out.writeLong(simulation_time);
+	out.writeLong(handled_events);
+	out.writeInt(sequence_counters.length);
+	for (int i = 0; i < sequence_counters.length; i++) {
+	    out.writeLong(sequence_counters[i]);
+	}
+	out.writeInt(n);
+	for (int i = 0; i < events.length; i++) {
+	    if (events[i].scheduled) {
+		writeEvent(out, events[i]);
+	    }
+	}
+    }
+
+    /**
+     * Writes the specified built-in event: its type code (those of the binary event log), port, instant,
+     * sequence number and fields.
+     */
+    private void writeEvent (DataOutput out, Event event) throws IOException {
+	Class<?> event_class = event.getClass();
+	if (event.handler_method_name != null) {
+	    throw new SimulationException("Only the built-in events can be checkpointed!");
+	}
+	if (event_class == FrameArrivalEvent.class) {
+	    out.writeByte(EventLog.FRAME_ARRIVAL);
+	} else if (event_class == FrameDropEvent.class) {
+	    out.writeByte(EventLog.FRAME_DROP);
+	} else if (event_class == FrameTransmissionEvent.class) {
+	    out.writeByte(EventLog.FRAME_TRANSMISSION);
+	} else if (event_class == StateTransitionEvent.class) {
+	    out.writeByte(EventLog.STATE_TRANSITION);
+	} else {
+	    throw new SimulationException("Only the built-in events can be checkpointed!");
+	}
+	out.writeInt(event.port);
+	out.writeLong(event.time);
+	out.writeLong(event.sequence_number);
+	if (event_class == FrameArrivalEvent.class) {
+	    FrameArrivalEvent arrival = (FrameArrivalEvent) event;
+	    out.writeLong(arrival.frame_id);
+	    out.writeInt(arrival.frame_size);
+	    out.writeLong(arrival.origin_time);
+	    out.writeBoolean(arrival.forwarded);
+	} else if (event_class == FrameDropEvent.class) {
+	    out.writeLong(((FrameDropEvent) event).frame_id);
+	} else if (event_class == FrameTransmissionEvent.class) {
+	    FrameTransmissionEvent transmission = (FrameTransmissionEvent) event;
+	    out.writeLong(transmission.frame_id);
+	    out.writeLong(transmission.frame_time);
+	    out.writeLong(transmission.frame_delay);
+	} else {
+	    out.writeByte(((StateTransitionEvent) event).next_state.ordinal());
+	}
+    }
+
+    /**
+     * Replaces the pending events and the current instant with those written by writeState.
+     * The sequence numbers of the events are kept, so simultaneous events are handled in the same order as if
+     * the simulation had not been interrupted. The timers that refer to the pending events are restored with readTimer.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     * @throws SimulationException if the checkpointed simulation ends before this one or the state is invalid
+     */
+    public void readState (DataInput in) throws IOException {
+	if (in.readLong() < end_time) {
+	    throw new SimulationException("Checkpoint: simulation longer than the checkpointed one!");
+	}
+	Event event;
+	while ((event = getNextEvent(true)) != null) {
+	    recycleEvent(event);
+	}
+	simulation_time = in.readLong();
+	handled_events = in.readLong();
+	int n = in.readInt();
+	if (n > sequence_counters.length) {
+	    sequence_counters = Arrays.copyOf(sequence_counters, n);
+	}
+	for (int i = 0; i < n; i++) {
+	    sequence_counters[i] = in.readLong();
+	}
+	restored_events = new HashMap<Long, Event>();
+	for (n = in.readInt(); n > 0; n--) {
+	    event = readEvent(in);
+	    if (event.port >= links.length || links[event.port] == null) {
+		throw new SimulationException("Checkpoint: event for a missing port!");
+	    }
+	    insertEvent(event, false);
+	    restored_events.put(event.sequence_number, event);
+	}
+    }
+
+    /**
+     * Reads an event written by writeEvent.
+     */
+    private Event readEvent (DataInput in) throws IOException {
+	byte type = in.readByte();
+	int port = in.readInt();
+	long t = in.readLong();
+	long sequence_number = in.readLong();
+	Event event;
+	if (type == EventLog.FRAME_ARRIVAL) {
+	    FrameArrivalEvent arrival = newFrameArrivalEvent(port, t, in.readLong(), in.readInt());
+	    arrival.origin_time = in.readLong();
+	    arrival.forwarded = in.readBoolean();
+	    event = arrival;
+	} else if (type == EventLog.FRAME_DROP) {
+	    event = newFrameDropEvent(port, t, in.readLong());
+	} else if (type == EventLog.FRAME_TRANSMISSION) {
+	    FrameTransmissionEvent transmission = newFrameTransmissionEvent(port, t, in.readLong(), in.readLong());
+	    transmission.frame_delay = in.readLong();
+	    event = transmission;
+	} else if (type == EventLog.STATE_TRANSITION) {
+	    event = newStateTransitionEvent(port, t, EeeState.values()[in.readByte()]);
+	} else {
+	    throw new SimulationException("Invalid event in checkpoint file!");
+	}
+	event.sequence_number = sequence_number;
+	return event;
+    }
+
+    /**
+     * Writes the specified timer as the sequence number of its event, or -1 if it is not pending.
+     *
+     * @param out   the output to which the timer is written
+     * @param timer the timer
+     * @throws IOException if the timer cannot be written
+     */
+    public void writeTimer (DataOutput out, TimerHandle timer) throws IOException {
+	out.writeLong(timer.isPending() ? timer.sequence_number : -1);
+    }
+
+    /**
+     * Reads a timer written by writeTimer, which refers to one of the events restored by the last call to readState.
+     *
+     * @param in    the input from which the timer is read
+     * @param timer the timer to be restored
+     * @throws IOException if the timer cannot be read
+     * @throws SimulationException if the event of the timer has not been restored
+     */
+    public void readTimer (DataInput in, TimerHandle timer) throws IOException {
+	long sequence_number = in.readLong();
+	timer.event = null;
+	timer.sequence_number = -1;
+	if (sequence_number >= 0) {
+	    Event event = restored_events.get(sequence_number);
+	    if (event == null) {
+		throw new SimulationException("Invalid timer in checkpoint file!");
+	    }
+	    timer.event = event;
+	    timer.sequence_number = sequence_number;
+	}
+    }
+
+    /**
+     * Prints on the output stream a message for each event contained in the event list.
      */
     public void print () {
-	for (int i = 0; i < list.size(); i++) {
-	    list.get(i).print();
+	Event[] events = queue.toSortedArray();
+	for (int i = 0; i < events.length; i++) {
+	    if (events[i].scheduled) {
+		events[i].print(links[events[i].port]);
+	    }
 	}
     }
 
     /**
-     * Removes the next state transition event from the event list. If the list does not contain the event, it is unchanged.
+     * Removes the next state transition event of the first link from the event list.
      *
      * @param state the state of the state transition event to be removed
      * @return true if a state transition event with the specified state is removed
      */
     public boolean removeStateTransitionEvent (EeeState state) {
-	Event event;
-	for (int i = 0; i < list.size(); i++) {
-	    event = list.get(i);
-	    if (event instanceof StateTransitionEvent && ((StateTransitionEvent) event).next_state == state) {
-		list.remove(i);
-		return true;
+	return removeStateTransitionEvent(0, state);
+    }
+
+    /**
+     * Removes the next state transition event of the specified port from the event list. If the list does not contain the event, it is unchanged.
+     * This method scans the whole list; handles returned by addEvent should be preferred to cancel events.
+     *
+     * @param port  the port of the link
+     * @param state the state of the state transition event to be removed
+     * @return true if a state transition event with the specified state is removed
+     */
+    public boolean removeStateTransitionEvent (int port, EeeState state) {
+	Event[] events = queue.toArray();
+	Event next_event = null;
+	for (int i = 0; i < events.length; i++) {
+	    if (events[i].scheduled && events[i].port == port && events[i] instanceof StateTransitionEvent && ((StateTransitionEvent) events[i]).next_state == state &&
+		(next_event == null || events[i].precedes(next_event))) {
+		next_event = events[i];
 	    }
 	}
-	return false;
+	if (next_event == null) {
+	    return false;
+	}
+	next_event.scheduled = false;
+	pending.remove(next_event);
+	return true;
     }
 }
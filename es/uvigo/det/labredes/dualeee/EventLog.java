@@ -0,0 +1,364 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class logs the handled events asynchronously.
+ * <p>
+ * Events are encoded as compact binary records into large direct buffers. Full buffers are drained
+ * by a background writer thread, which either writes them to a binary log file or decodes them into
+ * the usual text messages (event_time event_type event_info) on an output stream. Buffers are reused,
+ * so logging an event does not allocate.
+ * <p>
+ * A binary log file starts with the magic string "EEEEVLOG" followed by the format version (int).
+ * Each record starts with its type (byte) followed by its fields in big-endian byte order:
+ * <ul>
+ * <li>FRAME_ARRIVAL: time (long), frame id (long), frame size (int), queue size (int)
+ * <li>FRAME_DROP: time (long), frame id (long), queue size (int)
+ * <li>FRAME_TRANSMISSION: time (long), frame id (long), frame time (long), frame delay (long), queue size (int)
+ * <li>STATE_TRANSITION: time (long), next state ordinal (byte), queue threshold (int, NO_THRESHOLD if none)
+ * </ul>
+ * Times are in picoseconds.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class EventLog {
+    /**
+     * The magic string at the beginning of every binary log file.
+     */
+    public static final byte[] MAGIC = {'E', 'E', 'E', 'E', 'V', 'L', 'O', 'G'};
+    /**
+     * The format version.
+     */
+    public static final int VERSION = 1;
+    /**
+     * Record types.
+     */
+    public static final byte FRAME_ARRIVAL = 1, FRAME_DROP = 2, FRAME_TRANSMISSION = 3, STATE_TRANSITION = 4;
+    /**
+     * The queue threshold logged for states without threshold.
+     */
+    public static final int NO_THRESHOLD = Integer.MIN_VALUE;
+    /**
+     * The link states, indexed by ordinal.
+     */
+    private static final EeeState[] STATES = EeeState.values();
+    /**
+     * The size of the largest record (in bytes).
+     */
+    private static final int MAX_RECORD_SIZE = 37;
+    /**
+     * The size of each buffer (in bytes).
+     */
+    private static final int BUFFER_SIZE = 1 << 22;
+    /**
+     * The number of buffers.
+     */
+    private static final int NUM_BUFFERS = 3;
+    /**
+     * The buffer that tells the writer thread to finish.
+     */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    /**
+     * The buffer being filled.
+     */
+    private ByteBuffer current;
+    /**
+     * The buffers waiting to be written.
+     */
+    private BlockingQueue<ByteBuffer> full_buffers;
+    /**
+     * The buffers ready to be filled.
+     */
+    private BlockingQueue<ByteBuffer> free_buffers;
+    /**
+     * The binary log file, or null if events are logged as text.
+     */
+    private FileChannel channel;
+    /**
+     * The output stream where events are logged as text, or null if events are logged in binary.
+     */
+    private PrintStream output;
+    /**
+     * The text messages of a buffer, written at once on the output stream.
+     */
+    private ByteArrayOutputStream text;
+    /**
+     * The background writer thread.
+     */
+    private Thread writer;
+    /**
+     * The number of buffers submitted to and written by the writer thread.
+     */
+    private long submitted_buffers, written_buffers;
+    /**
+     * The error found by the writer thread, if any.
+     */
+    private volatile IOException write_error;
+
+    /**
+     * Creates a new event log that writes the events as text messages on the specified output stream.
+     *
+     * @param out the output stream
+     */
+    public EventLog (PrintStream out) {
+	output = out;
+	text = new ByteArrayOutputStream(1 << 23);
+	start();
+    }
+
+    /**
+     * Creates a new event log that writes the events to the specified binary log file.
+     *
+     * @param filename name of the binary log file
+     * @throws SimulationException if the file cannot be created
+     */
+    public EventLog (String filename) {
+	try {
+	    channel = new FileOutputStream(filename).getChannel();
+	    ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 4);
+	    header.put(MAGIC).putInt(VERSION).flip();
+	    while (header.hasRemaining()) {
+		channel.write(header);
+	    }
+	} catch (IOException e) {
+	    throw new SimulationException("Error while writing event log file!");
+	}
+	start();
+    }
+
+    /**
+     * Allocates the buffers and starts the writer thread.
+     */
+    private void start () {
+	full_buffers = new ArrayBlockingQueue<ByteBuffer>(NUM_BUFFERS + 1);
+	free_buffers = new ArrayBlockingQueue<ByteBuffer>(NUM_BUFFERS);
+	for (int i = 1; i < NUM_BUFFERS; i++) {
+	    free_buffers.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+	}
+	current = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	submitted_buffers = written_buffers = 0;
+	writer = new Thread(new Runnable() {
+		public void run () {
+		    drain();
+		}
+	    }, "EventLog writer");
+	writer.setDaemon(true);
+	writer.start();
+    }
+
+    /**
+     * Writes the submitted buffers until the log is closed. Runs on the writer thread.
+     */
+    private void drain () {
+	try {
+	    for (ByteBuffer buffer; (buffer = full_buffers.take()) != END;) {
+		try {
+		    if (write_error == null) {
+			if (channel != null) {
+			    while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			    }
+			} else {
+			    PrintStream text_stream = new PrintStream(text);
+			    decode(buffer, text_stream);
+			    text_stream.flush();
+			    text.writeTo(output);
+			    text.reset();
+			}
+		    }
+		} catch (IOException e) {
+		    write_error = e;
+		}
+		buffer.clear();
+		free_buffers.put(buffer);
+		synchronized (this) {
+		    written_buffers++;
+		    notifyAll();
+		}
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    /**
+     * Hands the current buffer to the writer thread and takes a free one.
+     */
+    private void submit () {
+	checkError();
+	current.flip();
+	try {
+	    synchronized (this) {
+		submitted_buffers++;
+	    }
+	    full_buffers.put(current);
+	    current = free_buffers.take();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SimulationException("Event log interrupted!");
+	}
+    }
+
+    /**
+     * Makes sure that the current buffer has room for another record.
+     */
+    private ByteBuffer reserve () {
+	if (current.remaining() < MAX_RECORD_SIZE) {
+	    submit();
+	}
+	return current;
+    }
+
+    /**
+     * Throws the error found by the writer thread, if any.
+     */
+    private void checkError () {
+	if (write_error != null) {
+	    throw new SimulationException("Error while writing event log: " + write_error.getMessage());
+	}
+    }
+
+    /**
+     * Logs a frame arrival.
+     *
+     * @param t     the event time (in picoseconds)
+     * @param fid   the frame identifier
+     * @param fsize the frame size (in bytes)
+     * @param qsize the queue size
+     */
+    public void logFrameArrival (long t, long fid, int fsize, int qsize) {
+	reserve().put(FRAME_ARRIVAL).putLong(t).putLong(fid).putInt(fsize).putInt(qsize);
+    }
+
+    /**
+     * Logs a frame drop.
+     *
+     * @param t     the event time (in picoseconds)
+     * @param fid   the frame identifier
+     * @param qsize the queue size
+     */
+    public void logFrameDrop (long t, long fid, int qsize) {
+	reserve().put(FRAME_DROP).putLong(t).putLong(fid).putInt(qsize);
+    }
+
+    /**
+     * Logs a frame transmission.
+     *
+     * @param t      the event time (in picoseconds)
+     * @param fid    the frame identifier
+     * @param ftime  the frame transmission time (in picoseconds)
+     * @param fdelay the frame delay (in picoseconds)
+     * @param qsize  the queue size
+     */
+    public void logFrameTransmission (long t, long fid, long ftime, long fdelay, int qsize) {
+	reserve().put(FRAME_TRANSMISSION).putLong(t).putLong(fid).putLong(ftime).putLong(fdelay).putInt(qsize);
+    }
+
+    /**
+     * Logs a state transition.
+     *
+     * @param t     the event time (in picoseconds)
+     * @param state the next state of the link
+     * @param qth   the queue threshold of the next state, or NO_THRESHOLD if none
+     */
+    public void logStateTransition (long t, EeeState state, int qth) {
+	reserve().put(STATE_TRANSITION).putLong(t).put((byte) state.ordinal()).putInt(qth);
+    }
+
+    /**
+     * Waits until all the logged events have been written.
+     *
+     * @throws SimulationException if the events cannot be written
+     */
+    public void flush () {
+	if (current.position() > 0) {
+	    submit();
+	}
+	try {
+	    synchronized (this) {
+		while (written_buffers < submitted_buffers) {
+		    wait();
+		}
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SimulationException("Event log interrupted!");
+	}
+	if (output != null) {
+	    output.flush();
+	}
+	checkError();
+    }
+
+    /**
+     * Writes all the logged events and stops the writer thread.
+     *
+     * @throws SimulationException if the events cannot be written
+     */
+    public void close () {
+	try {
+	    flush();
+	} finally {
+	    try {
+		full_buffers.put(END);
+		writer.join();
+		if (channel != null) {
+		    channel.close();
+		}
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    } catch (IOException e) {
+		write_error = e;
+	    }
+	}
+	checkError();
+    }
+
+    /**
+     * Decodes the complete records of the specified buffer and prints them as text messages.
+     * On return, the position of the buffer is set at the first incomplete record.
+     *
+     * @param buffer the buffer with the encoded records
+     * @param out    the output stream
+     * @throws IOException if the buffer holds an unknown record type
+     */
+    public static void decode (ByteBuffer buffer, PrintStream out) throws IOException {
+	while (buffer.hasRemaining()) {
+	    int start = buffer.position();
+	    byte type = buffer.get(start);
+	    int size = type == FRAME_ARRIVAL ? 25 : type == FRAME_DROP ? 21 : type == FRAME_TRANSMISSION ? 37 : type == STATE_TRANSITION ? 14 : -1;
+	    if (size < 0) {
+		throw new IOException("Unknown event log record type: " + type);
+	    }
+	    if (buffer.remaining() < size) {
+		return;
+	    }
+	    buffer.get();
+	    long t = buffer.getLong();
+	    if (type == FRAME_ARRIVAL) {
+		long fid = buffer.getLong();
+		int fsize = buffer.getInt();
+		out.format("%.3f FrameArrivalEvent %d %d %d %n", t / 1e6, fid, fsize, buffer.getInt());
+	    } else if (type == FRAME_DROP) {
+		long fid = buffer.getLong();
+		out.format("%.3f FrameDropEvent %d %d %n", t / 1e6, fid, buffer.getInt());
+	    } else if (type == FRAME_TRANSMISSION) {
+		long fid = buffer.getLong();
+		long ftime = buffer.getLong();
+		long fdelay = buffer.getLong();
+		out.format("%.3f FrameTransmissionEvent %d %.3f %.3f %d %n", t / 1e6, fid, ftime / 1e6, fdelay / 1e6, buffer.getInt());
+	    } else {
+		EeeState state = STATES[buffer.get()];
+		int qth = buffer.getInt();
+		out.format("%.3f StateTransitionEvent %s %s%n", t / 1e6, state, qth != NO_THRESHOLD ? String.valueOf(qth) : "");
+	    }
+	}
+    }
+}
@@ -0,0 +1,72 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * EventLogDecoder: prints the events of a binary event log as the text messages of the verbose mode.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public final class EventLogDecoder {
+
+    private EventLogDecoder () {}
+
+    /**
+     * Prints on the specified output stream the events of the specified binary event log.
+     *
+     * @param filename name of the binary event log file
+     * @param out      the output stream
+     * @throws SimulationException if the file is not a valid binary event log
+     */
+    public static void decode (String filename, PrintStream out) {
+	try (FileChannel channel = new FileInputStream(filename).getChannel()) {
+	    ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+	    while (buffer.position() < EventLog.MAGIC.length + 4 && channel.read(buffer) >= 0);
+	    buffer.flip();
+	    byte[] magic = new byte[EventLog.MAGIC.length];
+	    if (buffer.remaining() < magic.length + 4) {
+		throw new SimulationException("Invalid event log file!");
+	    }
+	    buffer.get(magic);
+	    if (!Arrays.equals(magic, EventLog.MAGIC) || buffer.getInt() != EventLog.VERSION) {
+		throw new SimulationException("Invalid event log file!");
+	    }
+	    while (true) {
+		EventLog.decode(buffer, out);
+		buffer.compact();
+		if (channel.read(buffer) < 0) {
+		    break;
+		}
+		buffer.flip();
+	    }
+	    buffer.flip();
+	    if (buffer.hasRemaining()) {
+		throw new SimulationException("Truncated event log file!");
+	    }
+	} catch (FileNotFoundException e) {
+	    throw new SimulationException("Event log file not found!");
+	} catch (IOException e) {
+	    throw new SimulationException("Error while reading event log file: " + e.getMessage());
+	}
+	out.flush();
+    }
+
+    /**
+     * Main method.
+     * Usage: java EventLogDecoder event_log_file
+     */
+    public static void main (String[] args) {
+	if (args.length != 1) {
+	    DualModeEeeSimulator.printError("Usage: java EventLogDecoder event_log_file");
+	}
+	try {
+	    decode(args[0], new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false));
+	} catch (SimulationException e) {
+	    DualModeEeeSimulator.printError(e.getMessage());
+	}
+    }
+}
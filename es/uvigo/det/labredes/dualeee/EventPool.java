@@ -0,0 +1,53 @@
+package es.uvigo.det.labredes.dualeee;
+
+/**
+ * This class implements a bounded stack of handled events ready to be reused.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class EventPool {
+    /**
+     * The recycled events.
+     */
+    private Event[] events;
+    /**
+     * The number of recycled events.
+     */
+    private int size;
+
+    /**
+     * Creates a new empty pool.
+     *
+     * @param capacity the maximum number of recycled events kept by the pool
+     */
+    public EventPool (int capacity) {
+	events = new Event[capacity];
+	size = 0;
+    }
+
+    /**
+     * Returns a recycled event.
+     *
+     * @return a recycled event or null if the pool is empty
+     */
+    public Event poll () {
+	if (size == 0) {
+	    return null;
+	}
+	Event event = events[--size];
+	events[size] = null;
+	return event;
+    }
+
+    /**
+     * Keeps the specified event for later reuse. The event is discarded if the pool is full.
+     *
+     * @param event the Event to be recycled
+     */
+    public void push (Event event) {
+	if (size < events.length) {
+	    events[size++] = event;
+	}
+    }
+}
@@ -0,0 +1,100 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * This class implements the priority queue that keeps the pending events of an event list.
+ * Events are ordered by event time and, for events occurring at the same instant, by insertion order.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+abstract public class EventQueue {
+    /**
+     * Orders events by event time and then by sequence number.
+     */
+    public static final Comparator<Event> ORDER = new Comparator<Event>() {
+	public int compare (Event e1, Event e2) {
+	    if (e1.precedes(e2)) {
+		return -1;
+	    } else if (e2.precedes(e1)) {
+		return 1;
+	    }
+	    return 0;
+	}
+    };
+
+    /**
+     * Creates a new event queue of the specified type.
+     *
+     * @param type the event queue type: binary|quaternary|calendar
+     * @return a new empty event queue
+     * @throws SimulationException if the type is unknown
+     */
+    public static EventQueue create (String type) {
+	if (type.equals("binary")) {
+	    return new HeapEventQueue(2);
+	} else if (type.equals("quaternary")) {
+	    return new HeapEventQueue(4);
+	} else if (type.equals("calendar")) {
+	    return new CalendarEventQueue();
+	}
+	throw new SimulationException("Unknown event queue type: " + type);
+    }
+
+    /**
+     * Adds the specified event to the queue.
+     * The sequence number of the event must have been already set.
+     *
+     * @param event the Event to be added
+     */
+    abstract public void add (Event event);
+
+    /**
+     * Returns the next event in the queue without removing it.
+     *
+     * @return the next event in the queue or null if the queue is empty
+     */
+    abstract public Event peek ();
+
+    /**
+     * Removes and returns the next event in the queue.
+     *
+     * @return the next event in the queue or null if the queue is empty
+     */
+    abstract public Event poll ();
+
+    /**
+     * Removes the specified event from the queue.
+     *
+     * @param event the Event to be removed
+     * @return true if the event was contained in the queue
+     */
+    abstract public boolean remove (Event event);
+
+    /**
+     * Returns the number of events contained in the queue.
+     *
+     * @return the number of events contained in the queue
+     */
+    abstract public int size ();
+
+    /**
+     * Returns all the events contained in the queue in no particular order.
+     *
+     * @return an array with all the events contained in the queue
+     */
+    abstract public Event[] toArray ();
+
+    /**
+     * Returns all the events contained in the queue sorted by event time.
+     *
+     * @return a sorted array with all the events contained in the queue
+     */
+    public Event[] toSortedArray () {
+	Event[] events = toArray();
+	Arrays.sort(events, ORDER);
+	return events;
+    }
+}
@@ -0,0 +1,127 @@
+package es.uvigo.det.labredes.dualeee;
+
+/**
+ * This class implements a set of events based on an open addressing hash table.
+ * Events are compared with their equals method, so the set detects duplicated events
+ * without allocating any entry object.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class EventSet {
+    /**
+     * The hash table (linear probing).
+     */
+    private Event[] table;
+    /**
+     * The number of events in the set.
+     */
+    private int size;
+
+    /**
+     * Creates a new empty set of events.
+     */
+    public EventSet () {
+	table = new Event[64];
+	size = 0;
+    }
+
+    /**
+     * Adds the specified event to the set if no equal event is already contained.
+     *
+     * @param event the Event to be added
+     * @return true if the event has been added
+     */
+    public boolean add (Event event) {
+	int mask = table.length - 1;
+	int i = slot(event, mask);
+	while (table[i] != null) {
+	    if (table[i].equals(event)) {
+		return false;
+	    }
+	    i = (i + 1) & mask;
+	}
+	table[i] = event;
+	size++;
+	if (2 * size > table.length) {
+	    rehash(2 * table.length);
+	}
+	return true;
+    }
+
+    /**
+     * Removes the event equal to the specified event from the set.
+     *
+     * @param event the Event to be removed
+     * @return true if the set contained an equal event
+     */
+    public boolean remove (Event event) {
+	int mask = table.length - 1;
+	int i = slot(event, mask);
+	while (table[i] != null) {
+	    if (table[i].equals(event)) {
+		deleteAt(i, mask);
+		size--;
+		return true;
+	    }
+	    i = (i + 1) & mask;
+	}
+	return false;
+    }
+
+    /**
+     * Returns the number of events contained in the set.
+     *
+     * @return the number of events contained in the set
+     */
+    public int size () {
+	return size;
+    }
+
+    /**
+     * Returns the initial slot of the specified event.
+     */
+    private static int slot (Event event, int mask) {
+	int h = event.hashCode() * 0x9e3779b9;
+	return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Empties the specified slot shifting back the following events of its cluster.
+     */
+    private void deleteAt (int i, int mask) {
+	int j = i;
+	while (true) {
+	    j = (j + 1) & mask;
+	    if (table[j] == null) {
+		break;
+	    }
+	    int k = slot(table[j], mask);
+	    // Move table[j] to the empty slot i unless its initial slot k lies cyclically in (i, j]
+	    if ((i <= j) ? (i < k && k <= j) : (i < k || k <= j)) {
+		continue;
+	    }
+	    table[i] = table[j];
+	    i = j;
+	}
+	table[i] = null;
+    }
+
+    /**
+     * Moves all the events to a new hash table of the specified length.
+     */
+    private void rehash (int length) {
+	Event[] old_table = table;
+	table = new Event[length];
+	int mask = length - 1;
+	for (int j = 0; j < old_table.length; j++) {
+	    if (old_table[j] != null) {
+		int i = slot(old_table[j], mask);
+		while (table[i] != null) {
+		    i = (i + 1) & mask;
+		}
+		table[i] = old_table[j];
+	    }
+	}
+    }
+}
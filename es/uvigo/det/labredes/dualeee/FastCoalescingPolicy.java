@@ -0,0 +1,39 @@
+package es.uvigo.det.labredes.dualeee;
+
+/**
+ * This class extends CoalescingPolicy class to implement the fast operation mode: the link always sleeps in the
+ * fast wake state.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class FastCoalescingPolicy extends CoalescingPolicy {
+    /**
+     * Returns the transition to the fast wake state.
+     *
+     * @return TRANSITION_TO_FAST
+     */
+    public EeeState getInitialState () {
+	return EeeState.TRANSITION_TO_FAST;
+    }
+
+    /**
+     * Returns the transition to the fast wake state.
+     *
+     * @param t the instant at which the last queued frame has been transmitted
+     * @return TRANSITION_TO_FAST
+     */
+    public EeeState getSleepTransition (long t) {
+	return EeeState.TRANSITION_TO_FAST;
+    }
+
+    /**
+     * Returns the transition to active from the fast wake state.
+     *
+     * @param state the current state of the link
+     * @return TRANSITION_TO_ACTIVE_FROM_FAST
+     */
+    protected EeeState getMaxDelayTransition (EeeState state) {
+	return EeeState.TRANSITION_TO_ACTIVE_FROM_FAST;
+    }
+}
@@ -6,11 +6,7 @@ package es.uvigo.det.labredes.dualeee;
  * @author Sergio Herreria-Alonso 
  * @version 1.0
  */
-public class FrameArrivalEvent extends Event<EeeLink> {
-    /**
-     * The global frame counter.
-     */
-    static public long frame_counter = 0;
+public class FrameArrivalEvent extends Event {
     /**
      * The unique identifier of the arriving frame.
      */
@@ -19,19 +15,71 @@ public class FrameArrivalEvent extends Event<EeeLink> {
      * The size of the arriving frame.
      */
     public int frame_size;
+    /**
+     * The instant at which the frame arrived at the first link of its path.
+     */
+    public long origin_time;
+    /**
+     * True if the frame has been transmitted by a previous link of its path.
+     */
+    public boolean forwarded;
+
+    /**
+     * Creates a new event representing the arrival of a new frame that is dispatched directly to the link.
+     *
+     * @param t     instant at which the new frame arrives
+     * @param fid   identifier of the new frame
+     * @param fsize size of the new frame
+     */
+    public FrameArrivalEvent (long t, long fid, int fsize) {
+	this(t, fid, fsize, null);
+    }
 
     /**
      * Creates a new event representing the arrival of a new frame.
      *
      * @param t      instant at which the new frame arrives
+     * @param fid    identifier of the new frame
      * @param fsize  size of the new frame
      * @param method name of the method that handles the frame arrival
      */
-    public FrameArrivalEvent (long t, int fsize, String method) {
+    public FrameArrivalEvent (long t, long fid, int fsize, String method) {
 	super(t, method);
-	frame_id = frame_counter;
-	frame_counter++;
+	frame_id = fid;
+	frame_size = fsize;
+	origin_time = t;
+	forwarded = false;
+    }
+
+    /**
+     * Reinitializes this recycled frame arrival event.
+     *
+     * @param t     instant at which the new frame arrives
+     * @param fid   identifier of the new frame
+     * @param fsize size of the new frame
+     * @return this event
+     */
+    FrameArrivalEvent reset (long t, long fid, int fsize) {
+	reset(t);
+	frame_id = fid;
 	frame_size = fsize;
+	origin_time = t;
+	forwarded = false;
+	return this;
+    }
+
+    /**
+     * Handles this event by calling directly the handleFrameArrivalEvent method of the specified link.
+     *
+     * @param link the link that handles the event
+     * @return true if the event has been handled; false if it must be handled through its handler method name
+     */
+    public boolean dispatch (EeeLink link) {
+	if (handler_method_name != null) {
+	    return false;
+	}
+	link.handleFrameArrivalEvent(this);
+	return true;
     }
 
     /**
@@ -55,9 +103,30 @@ public class FrameArrivalEvent extends Event<EeeLink> {
     }
 
     /**
-     * Prints on standard output a message describing the frame arrival event.
+     * Returns a hash code for this frame arrival event consistent with equals.
+     *
+     * @return a hash code for this event
+     */
+    public int hashCode () {
+	return 31 * Long.hashCode(time) + Long.hashCode(frame_id);
+    }
+
+    /**
+     * Prints on the output stream of the specified link a message describing the frame arrival event.
+     *
+     * @param link the link that handles the event
+     */
+    public void print (EeeLink link) {
+	link.context.output.format("%.3f FrameArrivalEvent %d %d %d %n", time / 1e6, frame_id, frame_size, link.queue_size);
+    }
+
+    /**
+     * Logs this event on the specified event log.
+     *
+     * @param log  the event log
+     * @param link the link that handles the event
      */
-    public void print () {
-	System.out.format("%.3f FrameArrivalEvent %d %d %d %n", time / 1e6, frame_id, frame_size, DualModeEeeSimulator.link.queue_size);
+    public void log (EventLog log, EeeLink link) {
+	log.logFrameArrival(time, frame_id, frame_size, link.queue_size);
     }
 }
@@ -0,0 +1,196 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+
+/**
+ * This class implements the FIFO transmission buffer of a link.
+ * Queued frames are stored in growable primitive ring buffers, so no object is kept per waiting frame.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class FrameBuffer {
+    /**
+     * The arrival time of each queued frame.
+     */
+    private long[] arrival_times;
+    /**
+     * The instant at which each queued frame arrived at the first link of its path.
+     */
+    private long[] origin_times;
+    /**
+     * The unique identifier of each queued frame.
+     */
+    private long[] frame_ids;
+    /**
+     * The size of each queued frame.
+     */
+    private int[] frame_sizes;
+    /**
+     * The position of the first frame in the ring buffers.
+     */
+    private int head;
+    /**
+     * The number of frames in the buffer.
+     */
+    private int size;
+
+    /**
+     * Creates a new empty frame buffer.
+     *
+     * @param capacity the initial capacity of the buffer (in frames)
+     */
+    public FrameBuffer (int capacity) {
+	int n = 1;
+	while (n < capacity) {
+	    n <<= 1;
+	}
+	arrival_times = new long[n];
+	origin_times = new long[n];
+	frame_ids = new long[n];
+	frame_sizes = new int[n];
+	head = size = 0;
+    }
+
+    /**
+     * Adds a frame that arrives at the first link of its path at the end of the buffer.
+     *
+     * @param time  arrival time of the frame
+     * @param fid   identifier of the frame
+     * @param fsize size of the frame
+     */
+    public void add (long time, long fid, int fsize) {
+	add(time, fid, fsize, time);
+    }
+
+    /**
+     * Adds a frame at the end of the buffer.
+     *
+     * @param time   arrival time of the frame
+     * @param fid    identifier of the frame
+     * @param fsize  size of the frame
+     * @param origin arrival time of the frame at the first link of its path
+     */
+    public void add (long time, long fid, int fsize, long origin) {
+	if (size == arrival_times.length) {
+	    grow();
+	}
+	int i = (head + size) & (arrival_times.length - 1);
+	arrival_times[i] = time;
+	origin_times[i] = origin;
+	frame_ids[i] = fid;
+	frame_sizes[i] = fsize;
+	size++;
+    }
+
+    /**
+     * Removes the first frame of the buffer. The buffer must not be empty.
+     */
+    public void remove () {
+	head = (head + 1) & (arrival_times.length - 1);
+	size--;
+    }
+
+    /**
+     * Returns the arrival time of the first frame of the buffer. The buffer must not be empty.
+     *
+     * @return the arrival time of the first frame
+     */
+    public long getFirstArrivalTime () {
+	return arrival_times[head];
+    }
+
+    /**
+     * Returns the arrival time of the first frame of the buffer at the first link of its path. The buffer must not be empty.
+     *
+     * @return the arrival time of the first frame at the first link of its path
+     */
+    public long getFirstOriginTime () {
+	return origin_times[head];
+    }
+
+    /**
+     * Returns the identifier of the first frame of the buffer. The buffer must not be empty.
+     *
+     * @return the identifier of the first frame
+     */
+    public long getFirstFrameId () {
+	return frame_ids[head];
+    }
+
+    /**
+     * Returns the size of the first frame of the buffer. The buffer must not be empty.
+     *
+     * @return the size of the first frame
+     */
+    public int getFirstFrameSize () {
+	return frame_sizes[head];
+    }
+
+    /**
+     * Returns the number of frames in the buffer.
+     *
+     * @return the number of frames in the buffer
+     */
+    public int size () {
+	return size;
+    }
+
+    /**
+     * Writes the queued frames in order.
+     *
+     * @param out the output to which the frames are written
+     * @throws IOException if the frames cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {
+	out.writeInt(size);
+	for (int j = 0; j < size; j++) {
+	    int i = (head + j) & (arrival_times.length - 1);
+	    out.writeLong(arrival_times[i]);
+	    out.writeLong(origin_times[i]);
+	    out.writeLong(frame_ids[i]);
+	    out.writeInt(frame_sizes[i]);
+	}
+    }
+
+    /**
+     * Replaces the queued frames with those written by writeState.
+     *
+     * @param in the input from which the frames are read
+     * @throws IOException if the frames cannot be read
+     */
+    public void readState (DataInput in) throws IOException {
+	head = size = 0;
+	for (int n = in.readInt(); n > 0; n--) {
+	    long time = in.readLong();
+	    long origin = in.readLong();
+	    long fid = in.readLong();
+	    add(time, fid, in.readInt(), origin);
+	}
+    }
+
+    /**
+     * Doubles the capacity of the buffer keeping the order of the queued frames.
+     */
+    private void grow () {
+	int n = arrival_times.length;
+	long[] new_arrival_times = new long[2 * n];
+	long[] new_origin_times = new long[2 * n];
+	long[] new_frame_ids = new long[2 * n];
+	int[] new_frame_sizes = new int[2 * n];
+	int first = n - head;
+	System.arraycopy(arrival_times, head, new_arrival_times, 0, first);
+	System.arraycopy(arrival_times, 0, new_arrival_times, first, head);
+	System.arraycopy(origin_times, head, new_origin_times, 0, first);
+	System.arraycopy(origin_times, 0, new_origin_times, first, head);
+	System.arraycopy(frame_ids, head, new_frame_ids, 0, first);
+	System.arraycopy(frame_ids, 0, new_frame_ids, first, head);
+	System.arraycopy(frame_sizes, head, new_frame_sizes, 0, first);
+	System.arraycopy(frame_sizes, 0, new_frame_sizes, first, head);
+	arrival_times = new_arrival_times;
+	origin_times = new_origin_times;
+	frame_ids = new_frame_ids;
+	frame_sizes = new_frame_sizes;
+	head = 0;
+    }
+}
@@ -6,12 +6,22 @@ package es.uvigo.det.labredes.dualeee;
  * @author Sergio Herreria-Alonso 
  * @version 1.0
  */
-public class FrameDropEvent extends Event<EeeLink> {
+public class FrameDropEvent extends Event {
     /**
      * The unique identifier of the discarded frame.
      */
     public long frame_id;
 
+    /**
+     * Creates a new event representing the drop of a new arriving frame that is dispatched directly to the link.
+     *
+     * @param t   instant at which the new arriving frame is discarded
+     * @param fid identifier of the discarded frame
+     */
+    public FrameDropEvent (long t, long fid) {
+	this(t, null, fid);
+    }
+
     /**
      * Creates a new event representing the drop of a new arriving frame.
      *
@@ -24,6 +34,33 @@ public class FrameDropEvent extends Event<EeeLink> {
 	frame_id = fid;
     }
 
+    /**
+     * Reinitializes this recycled frame drop event.
+     *
+     * @param t   instant at which the new arriving frame is discarded
+     * @param fid identifier of the discarded frame
+     * @return this event
+     */
+    FrameDropEvent reset (long t, long fid) {
+	reset(t);
+	frame_id = fid;
+	return this;
+    }
+
+    /**
+     * Handles this event by calling directly the handleFrameDropEvent method of the specified link.
+     *
+     * @param link the link that handles the event
+     * @return true if the event has been handled; false if it must be handled through its handler method name
+     */
+    public boolean dispatch (EeeLink link) {
+	if (handler_method_name != null) {
+	    return false;
+	}
+	link.handleFrameDropEvent(this);
+	return true;
+    }
+
     /**
      * Compares two frame drop events.
      *
@@ -45,9 +82,30 @@ public class FrameDropEvent extends Event<EeeLink> {
     }
 
     /**
-     * Prints on standard output a message describing the frame drop event.
+     * Returns a hash code for this frame drop event consistent with equals.
+     *
+     * @return a hash code for this event
+     */
+    public int hashCode () {
+	return 31 * Long.hashCode(time) + Long.hashCode(frame_id);
+    }
+
+    /**
+     * Prints on the output stream of the specified link a message describing the frame drop event.
+     *
+     * @param link the link that handles the event
+     */
+    public void print (EeeLink link) {
+	link.context.output.format("%.3f FrameDropEvent %d %d %n", time / 1e6, frame_id, link.queue_size);
+    }
+
+    /**
+     * Logs this event on the specified event log.
+     *
+     * @param log  the event log
+     * @param link the link that handles the event
      */
-    public void print () {
-	System.out.format("%.3f FrameDropEvent %d %d %n", time / 1e6, frame_id, DualModeEeeSimulator.link.queue_size);
+    public void log (EventLog log, EeeLink link) {
+	log.logFrameDrop(time, frame_id, link.queue_size);
     }
 }
@@ -1,6 +1,6 @@
 package es.uvigo.det.labredes.dualeee;
 
-import java.util.Random;
+import java.io.*;
 
 /**
  * This class generates random frame sizes.
@@ -14,9 +14,13 @@ abstract public class FrameSizeGenerator {
      */
     public int frame_size;
     /**
-     * The random number generator.
+     * The random number generator (java.util.Random unless another source is set).
      */
-    public Random rng;
+    public RandomSource rng;
+    /**
+     * The uniform random numbers drawn for the current batch of frame sizes.
+     */
+    private double[] uniforms = new double[0];
 
     /**
      * Creates a new random frame size generator.
@@ -25,7 +29,7 @@ abstract public class FrameSizeGenerator {
      */
     public FrameSizeGenerator (int fsize) {
 	frame_size = fsize;
-	rng = new Random();
+	rng = new JavaRandomSource();
     }
 
     /**
@@ -52,4 +56,66 @@ abstract public class FrameSizeGenerator {
      * @return the next frame size
      */
     abstract public int getNextFrameSize ();
+
+    /**
+     * Fills the specified array with the next frame sizes.
+     * By default, getNextFrameSize is called for each frame; generators override it with tighter sampling loops
+     * that return the same sizes.
+     *
+     * @param sizes the array to be filled with the frame sizes (in bytes)
+     * @param n     the maximum amount of frame sizes to be generated
+     * @return the amount of frame sizes generated, at least one
+     */
+    public int getNextFrameSizes (int[] sizes, int n) {
+	for (int i = 0; i < n; i++) {
+	    sizes[i] = getNextFrameSize();
+	}
+	return n;
+    }
+
+    /**
+     * Writes the state of this generator, that is, the state of its random source.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {
+	rng.writeState(out);
+    }
+
+    /**
+     * Reads a state written by writeState, so that this generator goes on with the same frame sizes.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     */
+    public void readState (DataInput in) throws IOException {
+	rng.readState(in);
+    }
+
+    /**
+     * Draws the specified amount of uniform random numbers in [0, 1) at once.
+     *
+     * @param n the amount of random numbers
+     * @return an array whose first n elements hold the random numbers, reused by the next call
+     */
+    protected double[] nextDoubles (int n) {
+	if (uniforms.length < n) {
+	    uniforms = new double[n];
+	}
+	for (int i = 0; i < n; i++) {
+	    uniforms[i] = rng.nextDouble();
+	}
+	return uniforms;
+    }
+
+    /**
+     * Returns a lower bound of the frame sizes returned by this generator.
+     * By default, frames are assumed to be at least one byte long.
+     *
+     * @return the minimum frame size (in bytes)
+     */
+    public int getMinimumFrameSize () {
+	return 1;
+    }
 }
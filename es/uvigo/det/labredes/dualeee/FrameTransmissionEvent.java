@@ -6,7 +6,7 @@ package es.uvigo.det.labredes.dualeee;
  * @author Sergio Herreria-Alonso 
  * @version 1.0
  */
-public class FrameTransmissionEvent extends Event<EeeLink> {
+public class FrameTransmissionEvent extends Event {
     /**
      * The unique identifier of the frame transmitted.
      */
@@ -20,6 +20,17 @@ public class FrameTransmissionEvent extends Event<EeeLink> {
      */
     public long frame_delay;
 
+    /**
+     * Creates a new event representing the transmission of a frame that is dispatched directly to the link.
+     *
+     * @param t     instant at which the link ends the transmission
+     * @param fid   identifier of the frame transmitted
+     * @param ftime time required to transmit the frame
+     */
+    public FrameTransmissionEvent (long t, long fid, long ftime) {
+	this(t, null, fid, ftime);
+    }
+
     /**
      * Creates a new event representing the transmission of a frame.
      *
@@ -35,6 +46,36 @@ public class FrameTransmissionEvent extends Event<EeeLink> {
 	frame_delay = 0;
     }
 
+    /**
+     * Reinitializes this recycled frame transmission event.
+     *
+     * @param t     instant at which the link ends the transmission
+     * @param fid   identifier of the frame transmitted
+     * @param ftime time required to transmit the frame
+     * @return this event
+     */
+    FrameTransmissionEvent reset (long t, long fid, long ftime) {
+	reset(t);
+	frame_id = fid;
+	frame_time = ftime;
+	frame_delay = 0;
+	return this;
+    }
+
+    /**
+     * Handles this event by calling directly the handleFrameTransmissionEvent method of the specified link.
+     *
+     * @param link the link that handles the event
+     * @return true if the event has been handled; false if it must be handled through its handler method name
+     */
+    public boolean dispatch (EeeLink link) {
+	if (handler_method_name != null) {
+	    return false;
+	}
+	link.handleFrameTransmissionEvent(this);
+	return true;
+    }
+
     /**
      * Compares two frame transmission events.
      *
@@ -56,9 +97,30 @@ public class FrameTransmissionEvent extends Event<EeeLink> {
     }
 
     /**
-     * Prints on standard output a message describing the frame transmission event.
+     * Returns a hash code for this frame transmission event consistent with equals.
+     *
+     * @return a hash code for this event
+     */
+    public int hashCode () {
+	return 31 * Long.hashCode(time) + Long.hashCode(frame_id);
+    }
+
+    /**
+     * Prints on the output stream of the specified link a message describing the frame transmission event.
+     *
+     * @param link the link that handles the event
+     */
+    public void print (EeeLink link) {
+	link.context.output.format("%.3f FrameTransmissionEvent %d %.3f %.3f %d %n", time / 1e6, frame_id, frame_time / 1e6, frame_delay / 1e6, link.queue_size);
+    }
+
+    /**
+     * Logs this event on the specified event log.
+     *
+     * @param log  the event log
+     * @param link the link that handles the event
      */
-    public void print () {
-	System.out.format("%.3f FrameTransmissionEvent %d %.3f %.3f %d %n", time / 1e6, frame_id, frame_time / 1e6, frame_delay / 1e6, DualModeEeeSimulator.link.queue_size);
+    public void log (EventLog log, EeeLink link) {
+	log.logFrameTransmission(time, frame_id, frame_time, frame_delay, link.queue_size);
     }
 }
@@ -0,0 +1,157 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.util.Arrays;
+
+/**
+ * This class extends EventQueue class to implement a d-ary heap of events.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class HeapEventQueue extends EventQueue {
+    /**
+     * The number of children of each node.
+     */
+    private int arity;
+    /**
+     * The heap array.
+     */
+    private Event[] heap;
+    /**
+     * The number of events in the heap.
+     */
+    private int size;
+
+    /**
+     * Creates a new empty d-ary heap.
+     *
+     * @param d the number of children of each node (2 for a binary heap)
+     */
+    public HeapEventQueue (int d) {
+	arity = d;
+	heap = new Event[64];
+	size = 0;
+    }
+
+    /**
+     * Adds the specified event to the heap.
+     *
+     * @param event the Event to be added
+     */
+    public void add (Event event) {
+	if (size == heap.length) {
+	    heap = Arrays.copyOf(heap, 2 * heap.length);
+	}
+	siftUp(size, event);
+	size++;
+    }
+
+    /**
+     * Returns the next event in the heap without removing it.
+     *
+     * @return the next event in the heap or null if the heap is empty
+     */
+    public Event peek () {
+	return size > 0 ? heap[0] : null;
+    }
+
+    /**
+     * Removes and returns the next event in the heap.
+     *
+     * @return the next event in the heap or null if the heap is empty
+     */
+    public Event poll () {
+	if (size == 0) {
+	    return null;
+	}
+	Event event = heap[0];
+	removeAt(0);
+	return event;
+    }
+
+    /**
+     * Removes the specified event from the heap.
+     *
+     * @param event the Event to be removed
+     * @return true if the event was contained in the heap
+     */
+    public boolean remove (Event event) {
+	for (int i = 0; i < size; i++) {
+	    if (heap[i] == event) {
+		removeAt(i);
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /**
+     * Returns the number of events contained in the heap.
+     *
+     * @return the number of events contained in the heap
+     */
+    public int size () {
+	return size;
+    }
+
+    /**
+     * Returns all the events contained in the heap in no particular order.
+     *
+     * @return an array with all the events contained in the heap
+     */
+    public Event[] toArray () {
+	return Arrays.copyOf(heap, size);
+    }
+
+    /**
+     * Removes the event placed at the specified position of the heap.
+     */
+    private void removeAt (int i) {
+	size--;
+	Event last = heap[size];
+	heap[size] = null;
+	if (i < size) {
+	    siftDown(i, last);
+	    if (heap[i] == last) {
+		siftUp(i, last);
+	    }
+	}
+    }
+
+    /**
+     * Moves up the specified event from position i until the heap property is restored.
+     */
+    private void siftUp (int i, Event event) {
+	while (i > 0) {
+	    int parent = (i - 1) / arity;
+	    if (!event.precedes(heap[parent])) {
+		break;
+	    }
+	    heap[i] = heap[parent];
+	    i = parent;
+	}
+	heap[i] = event;
+    }
+
+    /**
+     * Moves down the specified event from position i until the heap property is restored.
+     */
+    private void siftDown (int i, Event event) {
+	int first_child;
+	while ((first_child = arity * i + 1) < size) {
+	    int min_child = first_child;
+	    int last_child = Math.min(first_child + arity, size);
+	    for (int c = first_child + 1; c < last_child; c++) {
+		if (heap[c].precedes(heap[min_child])) {
+		    min_child = c;
+		}
+	    }
+	    if (!heap[min_child].precedes(event)) {
+		break;
+	    }
+	    heap[i] = heap[min_child];
+	    i = min_child;
+	}
+	heap[i] = event;
+    }
+}
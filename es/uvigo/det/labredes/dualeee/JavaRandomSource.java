@@ -0,0 +1,116 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+
+/**
+ * This class extends RandomSource class to draw random numbers from the sequence of java.util.Random by inversion,
+ * as former versions of the simulator did, so that their results can be reproduced.
+ * <p>
+ * The 48-bit linear congruential generator and the algorithms of nextDouble and nextInt specified by
+ * java.util.Random are implemented here, which gives exactly the same numbers while keeping the state of
+ * the generator accessible for checkpoints.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class JavaRandomSource extends RandomSource {
+    /**
+     * The multiplier of the linear congruential generator.
+     */
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    /**
+     * The increment of the linear congruential generator.
+     */
+    private static final long INCREMENT = 0xBL;
+    /**
+     * The mask of the 48 bits of the state.
+     */
+    private static final long MASK = (1L << 48) - 1;
+    /**
+     * The state of the generator.
+     */
+    private long state;
+
+    /**
+     * Creates a new generator with a seed taken from the system clock.
+     */
+    public JavaRandomSource () {
+	setSeed(System.nanoTime());
+    }
+
+    /**
+     * Sets the seed of the random number generator, as java.util.Random does.
+     *
+     * @param seed the seed
+     */
+    public void setSeed (long seed) {
+	state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * Advances the generator and returns the specified number of random bits.
+     */
+    private int next (int bits) {
+	state = (state * MULTIPLIER + INCREMENT) & MASK;
+	return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * Returns a uniform random number.
+     *
+     * @return a random number in [0, 1)
+     */
+    public double nextDouble () {
+	return (((long) next(26) << 27) + next(27)) * 0x1.0p-53;
+    }
+
+    /**
+     * Returns a uniform random integer.
+     *
+     * @param bound the upper bound (exclusive), which must be positive
+     * @return a random integer in [0, bound)
+     */
+    public int nextInt (int bound) {
+	if (bound <= 0) {
+	    throw new SimulationException("Random number bound must be positive!");
+	}
+	int r = next(31);
+	int m = bound - 1;
+	if ((bound & m) == 0) {
+	    return (int) ((bound * (long) r) >> 31);
+	}
+	for (int u = r; u - (r = u % bound) + m < 0; u = next(31));
+	return r;
+    }
+
+    /**
+     * Returns a Pareto random number by inversion of a uniform random number.
+     *
+     * @param xm    the scale (minimum value)
+     * @param alpha the shape
+     * @return a random number not lower than xm
+     */
+    public double nextPareto (double xm, double alpha) {
+	return xm / Math.pow(nextDouble(), 1 / alpha);
+    }
+
+    /**
+     * Writes the state of the generator.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {
+	out.writeLong(state);
+    }
+
+    /**
+     * Reads the state of the generator.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     */
+    public void readState (DataInput in) throws IOException {
+	state = in.readLong();
+    }
+}
@@ -0,0 +1,117 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+/**
+ * This class keeps the statistics of a link as named metrics, in the order in which they are reported.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class LinkStatistics {
+    /**
+     * The value of each metric.
+     */
+    private Map<String, Double> metrics;
+
+    /**
+     * Creates a new empty set of statistics.
+     */
+    public LinkStatistics () {
+	metrics = new LinkedHashMap<String, Double>();
+    }
+
+    /**
+     * Sets the value of the specified metric.
+     *
+     * @param name  the name of the metric
+     * @param value the value of the metric
+     */
+    public void put (String name, double value) {
+	metrics.put(name, value);
+    }
+
+    /**
+     * Returns the value of the specified metric.
+     *
+     * @param name the name of the metric
+     * @return the value of the metric or NaN if the metric is not available
+     */
+    public double get (String name) {
+	Double value = metrics.get(name);
+	return value != null ? value : Double.NaN;
+    }
+
+    /**
+     * Checks whether the specified metric is available.
+     *
+     * @param name the name of the metric
+     * @return true if the metric is available
+     */
+    public boolean contains (String name) {
+	return metrics.containsKey(name);
+    }
+
+    /**
+     * Returns the names of all the available metrics in the order in which they were set.
+     *
+     * @return the names of the available metrics
+     */
+    public Set<String> getNames () {
+	return metrics.keySet();
+    }
+
+    /**
+     * Returns the statistics of the interval between the specified instants, obtained from these statistics,
+     * measured up to the end of the interval, and from those measured up to its beginning.
+     * Frame counts and times in each state are subtracted, averages per frame are weighted by the corresponding
+     * frame counts and the rest of averages by time. Maximum frame delays and percentiles cannot be subtracted and
+     * are kept as they are, so they must already refer to the interval. The metrics that are only reported if
+     * some frame has been sent or delivered are left out if no frame has been sent or delivered during the interval.
+     *
+     * @param start the statistics measured up to the beginning of the interval
+     * @param t0    the beginning of the interval (in picoseconds)
+     * @param t     the end of the interval (in picoseconds)
+     * @return the statistics of the interval
+     */
+    public LinkStatistics since (LinkStatistics start, long t0, long t) {
+	LinkStatistics stats = new LinkStatistics();
+	boolean sent = getCount("frames_sent") > start.getCount("frames_sent");
+	boolean delivered = getCount("frames_delivered") > start.getCount("frames_delivered");
+	for (String name : getNames()) {
+	    double value = get(name);
+	    double start_value = start.getCount(name);
+	    if (name.matches("frames_delivered|average_end_to_end_delay|maximum_end_to_end_delay") && !delivered) {
+		continue;
+	    } else if (name.matches("average_frame_delay|maximum_frame_delay|average_frame_size|average_bit_rate|frame_delay_p.*") && !sent) {
+		continue;
+	    }
+	    if (name.matches("frames_received|frames_sent|frames_dropped|frames_delivered|time_in_.*")) {
+		value -= start_value;
+	    } else if (name.startsWith("ratio_in_")) {
+		String time_name = "time_in_" + name.substring("ratio_in_".length());
+		value = 100.0 * (get(time_name) - start.getCount(time_name)) * 1e6 / (t - t0);
+	    } else if (name.matches("average_frame_delay|average_end_to_end_delay|average_frame_size")) {
+		String count_name = name.equals("average_frame_delay") ? "frames_sent" : name.equals("average_end_to_end_delay") ? "frames_delivered" : "frames_received";
+		value = (value * get(count_name) - start_value * start.getCount(count_name)) / (get(count_name) - start.getCount(count_name));
+	    } else if (name.equals("average_coalescing_cycle")) {
+		double cycles = t / 1e6 / value - (start_value > 0 ? t0 / 1e6 / start_value : 0);
+		value = (t - t0) / 1e6 / cycles;
+	    } else if (!name.matches("maximum_frame_delay|maximum_end_to_end_delay|frame_delay_p.*")) {
+		value = (value * t - start_value * t0) / (t - t0);
+	    }
+	    stats.put(name, value);
+	}
+	return stats;
+    }
+
+    /**
+     * Returns the value of the specified metric or 0 if the metric is not available.
+     */
+    private double getCount (String name) {
+	Double value = metrics.get(name);
+	return value != null ? value : 0;
+    }
+}
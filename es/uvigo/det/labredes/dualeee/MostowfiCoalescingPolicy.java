@@ -0,0 +1,97 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+
+/**
+ * This class extends CoalescingPolicy class to implement the operation mode proposed by Mostowfi: the link wakes up
+ * periodically from the fast wake state and goes to the deep sleep state if no frame has arrived, or to the fast
+ * wake state again if at least half the deep to active queue threshold was queued when it last woke up.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class MostowfiCoalescingPolicy extends CoalescingPolicy {
+    /**
+     * The amount of frames queued when the link last started to wake up.
+     */
+    private int mostowfi_queue_size = 0;
+
+    /**
+     * Returns the transition to the fast wake state.
+     *
+     * @return TRANSITION_TO_FAST
+     */
+    public EeeState getInitialState () {
+	return EeeState.TRANSITION_TO_FAST;
+    }
+
+    /**
+     * Returns the transition to the fast wake state if the link woke up with at least half the deep to active
+     * queue threshold, or the transition to the deep sleep state otherwise.
+     *
+     * @param t the instant at which the last queued frame has been transmitted
+     * @return TRANSITION_TO_FAST or TRANSITION_TO_DEEP
+     */
+    public EeeState getSleepTransition (long t) {
+	return mostowfi_queue_size >= context.deep_to_active_qth / 2.0 ? EeeState.TRANSITION_TO_FAST : EeeState.TRANSITION_TO_DEEP;
+    }
+
+    /**
+     * Handles the entry of the link in the fast wake state, scheduling a wake up after the max fast wake time
+     * unless the link wakes up right away.
+     *
+     * @param t the instant at which the link enters the state
+     */
+    public void handleFastWake (long t) {
+	if (!wakeUpOnThreshold(t, EeeState.FAST_WAKE)) {
+	    link.scheduleWakeUp(t + context.max_fast_wake_time, EeeState.TRANSITION_TO_ACTIVE_FROM_FAST);
+	}
+    }
+
+    /**
+     * Sends the link to the deep sleep state if it wakes up with no frame to transmit.
+     *
+     * @param t                the instant at which the transition begins
+     * @param transition_state the transition to the active state
+     * @return true if there are frames to transmit
+     */
+    public boolean handleWakeUp (long t, EeeState transition_state) {
+	if (link.queue_size == 0) {
+	    link.scheduleTransition(t, EeeState.TRANSITION_TO_DEEP);
+	    return false;
+	}
+	mostowfi_queue_size = link.queue_size;
+	return true;
+    }
+
+    /**
+     * Returns the transition to active from the deep sleep state if the link is going to or is in deep sleep.
+     * In the fast wake state, the link already wakes up periodically.
+     *
+     * @param state the current state of the link
+     * @return TRANSITION_TO_ACTIVE_FROM_DEEP or null
+     */
+    protected EeeState getMaxDelayTransition (EeeState state) {
+	return state == EeeState.TRANSITION_TO_DEEP || state == EeeState.DEEP_SLEEP ? EeeState.TRANSITION_TO_ACTIVE_FROM_DEEP : null;
+    }
+
+    /**
+     * Writes the amount of frames queued when the link last started to wake up.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {
+	out.writeInt(mostowfi_queue_size);
+    }
+
+    /**
+     * Reads the amount of frames queued when the link last started to wake up.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     */
+    public void readState (DataInput in) throws IOException {
+	mostowfi_queue_size = in.readInt();
+    }
+}
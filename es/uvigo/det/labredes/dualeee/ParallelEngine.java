@@ -0,0 +1,283 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * This class processes the events of the ports of a multi-port switch with several worker threads.
+ * <p>
+ * Ports are split into blocks of consecutive ports, each one with its own event list handled by its own thread.
+ * Threads are synchronized conservatively in time windows: the links of a port can only affect the link of its
+ * next port, through the arrival of the frames they transmit, which occurs no earlier than the transmission time of
+ * the shortest frame plus the propagation delay after the transmission starts. This lookahead allows every thread to
+ * handle all its events up to the earliest pending event of the switch plus the lookahead without waiting for the rest.
+ * Between windows, the frames forwarded to another block are delivered to its event list.
+ * <p>
+ * Since the order of the events of each link does not depend on the blocks (see EventList), the results are the same
+ * as those of the sequential execution.
+ * <p>
+ * The worker threads of the blocks other than the first one are created once by start and wait between calls to
+ * runUntil, whose calling thread handles the first block, so that runs advanced in many short steps (as those of
+ * SequentialStoppingRule and WarmupDetector) do not create threads at every step. They are stopped by finish.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class ParallelEngine {
+    /**
+     * The event list of each block of ports.
+     */
+    private EventList[] event_lists;
+    /**
+     * The block of each port.
+     */
+    private int[] port_blocks;
+    /**
+     * The minimum time between the start of a transmission and the arrival of the frame at another block (in picoseconds).
+     */
+    private long lookahead;
+    /**
+     * The end of the current window (in picoseconds).
+     */
+    private long window_end;
+    /**
+     * The instant up to which events are processed by the current call to runUntil.
+     */
+    private long target_time;
+    /**
+     * True once there is no event left up to the target time or a thread has failed.
+     */
+    private boolean finished;
+    /**
+     * True if there are pending events after the target time.
+     */
+    private boolean pending_events;
+    /**
+     * The first error thrown by a thread, or null if no thread has failed.
+     */
+    private Throwable error;
+    /**
+     * The barrier at which all the threads wait for the next call to runUntil (or to finish), whose action
+     * starts the call.
+     */
+    private CyclicBarrier run_barrier;
+    /**
+     * The barrier at which all the threads wait between windows, whose action computes the next window.
+     */
+    private CyclicBarrier window_barrier;
+    /**
+     * The worker threads of the blocks, except the first one, which is handled by the thread calling runUntil.
+     */
+    private Thread[] threads;
+    /**
+     * True once the worker threads must stop.
+     */
+    private boolean stopped;
+
+    /**
+     * Creates a new parallel engine for the specified multi-port switch and creates the link of each port.
+     * The number of blocks is the number of threads, up to the number of ports.
+     *
+     * @param ctx     the simulation run of the switch
+     * @param threads the number of threads
+     * @throws SimulationException if the lookahead between two blocks is not positive
+     */
+    public ParallelEngine (SimulationContext ctx, int threads) {
+	SimulationContext[] ports = ctx.ports;
+	int num_blocks = Math.max(1, Math.min(threads, ports.length));
+	event_lists = new EventList[num_blocks];
+	for (int i = 0; i < num_blocks; i++) {
+	    event_lists[i] = new EventList(ctx, ctx.simulation_length, EventQueue.create(ctx.event_queue_type));
+	}
+	port_blocks = new int[ports.length];
+	int min_frame_size = Integer.MAX_VALUE;
+	for (int i = 0; i < ports.length; i++) {
+	    port_blocks[i] = (int) ((long) i * num_blocks / ports.length);
+	    ports[i].event_handler = event_lists[port_blocks[i]];
+	    ports[i].link = new EeeLink(ports[i], ports[i].link_capacity, ports[i].createTrafficGenerator(), ports[i].createFrameSizeGenerator());
+	    min_frame_size = Math.min(min_frame_size, ports[i].link.frame_size_generator.getMinimumFrameSize());
+	}
+
+	// Frames may reach a link from any upstream link, so the shortest frame of the switch bounds every transmission
+	lookahead = Long.MAX_VALUE;
+	for (int i = 0; i < ports.length; i++) {
+	    if (ports[i].next_port >= 0 && port_blocks[ports[i].next_port] != port_blocks[i]) {
+		long min_frame_time = (long) (8e12 * min_frame_size / ports[i].link_capacity);
+		lookahead = Math.min(lookahead, min_frame_time + ports[i].propagation_delay);
+	    }
+	}
+	if (lookahead <= 0) {
+	    throw new SimulationException("Parallel execution requires a positive lookahead between ports!");
+	}
+    }
+
+    /**
+     * Returns the number of events handled so far by all the threads.
+     *
+     * @return the number of events handled
+     */
+    public long getHandledEvents () {
+	long handled_events = 0;
+	for (EventList event_list : event_lists) {
+	    handled_events += event_list.getHandledEvents();
+	}
+	return handled_events;
+    }
+
+    /**
+     * Creates the barriers and starts the worker threads, which wait for the first call to runUntil.
+     */
+    public void start () {
+	stopped = false;
+	// The flags of the previous call are reset once every thread has left it
+	run_barrier = new CyclicBarrier(event_lists.length, new Runnable() {
+		public void run () {
+		    finished = false;
+		    error = null;
+		}
+	    });
+	window_barrier = new CyclicBarrier(event_lists.length, new Runnable() {
+		public void run () {
+		    try {
+			nextWindow();
+		    } catch (RuntimeException e) {
+			error = e;
+			finished = true;
+		    }
+		}
+	    });
+	threads = new Thread[event_lists.length];
+	for (int i = 1; i < threads.length; i++) {
+	    final EventList event_list = event_lists[i];
+	    threads[i] = new Thread(new Runnable() {
+		    public void run () {
+			try {
+			    while (true) {
+				run_barrier.await();
+				if (stopped) {
+				    return;
+				}
+				processWindows(event_list);
+			    }
+			} catch (InterruptedException | BrokenBarrierException e) {
+			    return;
+			}
+		    }
+		}, "ParallelEngine-" + i);
+	    threads[i].setDaemon(true);
+	    threads[i].start();
+	}
+    }
+
+    /**
+     * Processes all the events occurring up to the specified instant, one thread per block.
+     *
+     * @param t the instant (in picoseconds) up to which events are processed
+     * @return true if there are pending events after the specified instant
+     * @throws SimulationException if the simulation cannot be completed
+     */
+    public boolean runUntil (long t) {
+	target_time = t;
+	try {
+	    run_barrier.await();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SimulationException("Parallel simulation interrupted!");
+	} catch (BrokenBarrierException e) {
+	    throw new SimulationException("Parallel simulation failed: " + e);
+	}
+	processWindows(event_lists[0]);
+	if (error instanceof SimulationException) {
+	    throw (SimulationException) error;
+	} else if (error != null) {
+	    throw new SimulationException("Parallel simulation failed: " + error);
+	}
+	return pending_events;
+    }
+
+    /**
+     * Stops the worker threads and waits for them to end.
+     */
+    public void finish () {
+	if (threads == null) {
+	    return;
+	}
+	stopped = true;
+	try {
+	    run_barrier.await();
+	    for (int i = 1; i < threads.length; i++) {
+		threads[i].join();
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	} catch (BrokenBarrierException e) {
+	    // The worker threads have already ended
+	} finally {
+	    threads = null;
+	}
+    }
+
+    /**
+     * Handles the events of the specified event list window after window until there is no event left up to the
+     * target time. A failed thread keeps waiting at the barrier, so that the rest of threads can finish.
+     */
+    private void processWindows (EventList event_list) {
+	try {
+	    while (true) {
+		window_barrier.await();
+		if (finished) {
+		    return;
+		}
+		try {
+		    Event event;
+		    event_list.setHorizon(window_end);
+		    while ((event = event_list.getNextEvent(false)) != null && event.time <= window_end) {
+			event_list.handleEvent(event_list.getNextEvent(true));
+		    }
+		} catch (RuntimeException | Error e) {
+		    synchronized (this) {
+			if (error == null) {
+			    error = e;
+			}
+		    }
+		}
+	    }
+	} catch (InterruptedException | BrokenBarrierException e) {
+	    synchronized (this) {
+		if (error == null) {
+		    error = e;
+		}
+	    }
+	}
+    }
+
+    /**
+     * Delivers the frames forwarded between blocks and computes the next window, while all the threads wait.
+     * The window ends right before the earliest pending event plus the lookahead, so no event handled in the window
+     * can schedule an event in another block inside the window.
+     */
+    private void nextWindow () {
+	for (EventList event_list : event_lists) {
+	    List<Event> events = event_list.pollOutgoingEvents();
+	    for (Event event : events) {
+		event_lists[port_blocks[event.port]].receiveEvent(event);
+	    }
+	}
+	long next_time = Long.MAX_VALUE;
+	boolean empty = true;
+	for (EventList event_list : event_lists) {
+	    Event event = event_list.getNextEvent(false);
+	    if (event != null) {
+		next_time = Math.min(next_time, event.time);
+		empty = false;
+	    }
+	}
+	pending_events = !empty && next_time > target_time;
+	if (error != null || empty || next_time > target_time) {
+	    finished = true;
+	    return;
+	}
+	window_end = next_time > target_time - lookahead + 1 ? target_time : next_time + lookahead - 1;
+    }
+}
@@ -0,0 +1,180 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ParameterSweep: simulates a set of configurations concurrently and prints the power consumption and the average
+ * frame delay of each one.
+ * <p>
+ * With option -a, configurations are screened first with the analytic model: a configuration is discarded without
+ * being simulated if another one with the same workload (arrival rate, frame size and link capacity) has both a
+ * lower expected power consumption and a lower expected frame delay by more than the specified relative margin.
+ * Configurations that the analytic model does not support are always simulated.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public final class ParameterSweep {
+
+    private ParameterSweep () {}
+
+    /**
+     * Returns, for each configuration, another configuration that clearly dominates it according to the analytic model.
+     *
+     * @param configurations the configurations of the sweep
+     * @param models         the analytic model of each configuration, or null if it is not supported
+     * @param margin         the relative margin (e.g. 0.1 for 10%)
+     * @return the index of a dominating configuration for each configuration, or -1 if it is not dominated
+     */
+    public static int[] findDominated (SimulationContext[] configurations, AnalyticModel[] models, double margin) {
+	int[] dominated_by = new int[configurations.length];
+	for (int i = 0; i < configurations.length; i++) {
+	    dominated_by[i] = -1;
+	    for (int j = 0; j < configurations.length && models[i] != null; j++) {
+		if (models[j] != null && sameWorkload(configurations[i], configurations[j]) && models[j].dominates(models[i], margin)) {
+		    dominated_by[i] = j;
+		    break;
+		}
+	    }
+	}
+	return dominated_by;
+    }
+
+    /**
+     * Checks whether two configurations offer the same traffic to links of the same capacity.
+     */
+    private static boolean sameWorkload (SimulationContext a, SimulationContext b) {
+	return a.arrival_rate == b.arrival_rate && a.frame_size == b.frame_size && a.link_capacity == b.link_capacity;
+    }
+
+    /**
+     * Main method.
+     * Usage: java ParameterSweep [-l simulation_length] [-s simulation_seed] [-a margin] [-t threads] config_file...
+     */
+    public static void main (String[] args) {
+	long simulation_length = new SimulationContext().simulation_length;
+	Long simulation_seed = null;
+	double margin = -1;
+	int threads = Runtime.getRuntime().availableProcessors();
+	List<String> files = new ArrayList<String>();
+
+	// Arguments parsing
+	for (int i = 0; i < args.length; i++) {
+	    if (args[i].equals("-l")) {
+		try {
+		    simulation_length = (long) (1e12 * Double.parseDouble(args[i+1]));
+		} catch (NumberFormatException e) {
+		    DualModeEeeSimulator.printError("Invalid simulation length!");
+		}
+		i++;
+	    } else if (args[i].equals("-s")) {
+		try {
+		    simulation_seed = Long.valueOf(Integer.parseInt(args[i+1]));
+		} catch (NumberFormatException e) {
+		    DualModeEeeSimulator.printError("Invalid simulation seed!");
+		}
+		i++;
+	    } else if (args[i].equals("-a")) {
+		try {
+		    margin = Double.parseDouble(args[i+1]);
+		} catch (NumberFormatException e) {
+		    DualModeEeeSimulator.printError("Invalid dominance margin!");
+		}
+		if (margin < 0) {
+		    DualModeEeeSimulator.printError("Invalid dominance margin!");
+		}
+		i++;
+	    } else if (args[i].equals("-t")) {
+		try {
+		    threads = Integer.parseInt(args[i+1]);
+		} catch (NumberFormatException e) {
+		    DualModeEeeSimulator.printError("Invalid number of threads!");
+		}
+		if (threads < 1) {
+		    DualModeEeeSimulator.printError("Invalid number of threads!");
+		}
+		i++;
+	    } else {
+		files.add(args[i]);
+	    }
+	}
+	if (files.isEmpty()) {
+	    DualModeEeeSimulator.printError("Usage: java ParameterSweep [-l simulation_length] [-s simulation_seed] [-a margin] [-t threads] config_file...");
+	}
+
+	try {
+	    // Configuration files parsing
+	    SimulationContext[] configurations = new SimulationContext[files.size()];
+	    AnalyticModel[] models = new AnalyticModel[files.size()];
+	    for (int i = 0; i < configurations.length; i++) {
+		configurations[i] = new SimulationContext();
+		configurations[i].simulation_length = simulation_length;
+		if (simulation_seed != null) {
+		    configurations[i].setSeed(simulation_seed);
+		}
+		try {
+		    configurations[i].readConfiguration(new BufferedReader(new FileReader(files.get(i))));
+		} catch (FileNotFoundException e) {
+		    throw new SimulationException("Config file not found: " + files.get(i) + "!");
+		}
+		configurations[i].output = new PrintStream(new ByteArrayOutputStream());
+		if (margin >= 0 && AnalyticModel.supports(configurations[i])) {
+		    models[i] = new AnalyticModel(configurations[i]);
+		}
+	    }
+
+	    // Analytic screening (no model is evaluated without option -a)
+	    int[] dominated_by = findDominated(configurations, models, margin);
+
+	    // Simulation of the remaining configurations
+	    ExecutorService executor = Executors.newFixedThreadPool(threads);
+	    try {
+		List<Future<?>> results = new ArrayList<Future<?>>();
+		for (int i = 0; i < configurations.length; i++) {
+		    if (dominated_by[i] < 0) {
+			results.add(executor.submit(configurations[i]));
+		    }
+		}
+		for (Future<?> result : results) {
+		    result.get();
+		}
+	    } catch (ExecutionException e) {
+		if (e.getCause() instanceof SimulationException) {
+		    throw (SimulationException) e.getCause();
+		}
+		throw new SimulationException("Simulation failed: " + e.getCause());
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new SimulationException("Sweep interrupted!");
+	    } finally {
+		executor.shutdownNow();
+	    }
+
+	    // Results
+	    for (int i = 0; i < configurations.length; i++) {
+		System.out.format("%s:", files.get(i));
+		if (dominated_by[i] >= 0) {
+		    System.out.format(" discarded, dominated by %s", files.get(dominated_by[i]));
+		} else {
+		    LinkStatistics stats = configurations[i].getStatistics(simulation_length);
+		    System.out.format(" power %.3f", stats.get("power_consumption"));
+		    if (stats.contains("average_frame_delay")) {
+			System.out.format(" delay %.3f", stats.get("average_frame_delay"));
+		    }
+		}
+		if (models[i] != null) {
+		    System.out.format(" (analytic power %.3f delay %.3f)", models[i].getPowerConsumption(), models[i].getAverageFrameDelay());
+		}
+		System.out.format(" %n");
+	    }
+	} catch (SimulationException e) {
+	    DualModeEeeSimulator.printError(e.getMessage());
+	}
+    }
+}
@@ -45,7 +45,27 @@ public class ParetoTrafficGenerator extends TrafficGenerator {
      * @return instant at which the next frame arrives (in seconds)
      */
     public double getNextArrival () {
-	arrival_time += xm / Math.pow(rng.nextDouble(), 1 / alpha);	
+	arrival_time += rng.nextPareto(xm, alpha);	
 	return arrival_time;
-    }    
+    }
+
+    /**
+     * Fills the specified array with the instants at which the next frames arrive.
+     * The interarrival times are drawn in a separate loop before they are accumulated.
+     *
+     * @param times the array to be filled with the arrival instants (in picoseconds)
+     * @param n     the amount of arrivals to be generated
+     * @return n
+     */
+    public int getNextArrivals (long[] times, int n) {
+	double[] interarrival_times = getBuffer(n);
+	for (int i = 0; i < n; i++) {
+	    interarrival_times[i] = rng.nextPareto(xm, alpha);
+	}
+	for (int i = 0; i < n; i++) {
+	    arrival_time += interarrival_times[i];
+	    times[i] = (long) (1e12 * arrival_time);
+	}
+	return n;
+    }
 }
@@ -0,0 +1,72 @@
+package es.uvigo.det.labredes.dualeee;
+
+/**
+ * This class extends CoalescingPolicy class to implement the fast_mul and deep_mul operation modes: the sleeping link
+ * only checks its wake threshold every max delay, no matter when frames arrive.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class PeriodicCoalescingPolicy extends CoalescingPolicy {
+    /**
+     * The transition through which the link goes to sleep.
+     */
+    private EeeState sleep_state;
+
+    /**
+     * Creates a new periodic coalescing policy.
+     *
+     * @param ss the transition through which the link goes to sleep (TRANSITION_TO_FAST or TRANSITION_TO_DEEP)
+     */
+    public PeriodicCoalescingPolicy (EeeState ss) {
+	sleep_state = ss;
+    }
+
+    /**
+     * Returns the transition through which the link goes to sleep.
+     *
+     * @return TRANSITION_TO_FAST or TRANSITION_TO_DEEP
+     */
+    public EeeState getInitialState () {
+	return sleep_state;
+    }
+
+    /**
+     * Returns the transition through which the link goes to sleep.
+     *
+     * @param t the instant at which the last queued frame has been transmitted
+     * @return TRANSITION_TO_FAST or TRANSITION_TO_DEEP
+     */
+    public EeeState getSleepTransition (long t) {
+	return sleep_state;
+    }
+
+    /**
+     * Does nothing: frame arrivals never wake up the link.
+     *
+     * @param event the FrameArrivalEvent of the queued frame
+     */
+    public void handleFrameArrival (FrameArrivalEvent event) {}
+
+    /**
+     * Handles the entry of the link in the fast wake state, checking the wake threshold again after the max delay.
+     *
+     * @param t the instant at which the link enters the state
+     */
+    public void handleFastWake (long t) {
+	if (!wakeUpOnThreshold(t, EeeState.FAST_WAKE)) {
+	    link.scheduleTransition(t + context.max_delay, EeeState.FAST_WAKE);
+	}
+    }
+
+    /**
+     * Handles the entry of the link in the deep sleep state, checking the wake threshold again after the max delay.
+     *
+     * @param t the instant at which the link enters the state
+     */
+    public void handleDeepSleep (long t) {
+	if (!wakeUpOnThreshold(t, EeeState.DEEP_SLEEP)) {
+	    link.scheduleTransition(t + context.max_delay, EeeState.DEEP_SLEEP);
+	}
+    }
+}
@@ -0,0 +1,89 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+
+/**
+ * This class generates the random numbers drawn by the traffic and frame size generators.
+ * <p>
+ * Two sources are available: java, which follows the sequence of java.util.Random and reproduces the results of former versions
+ * of the simulator, and xoshiro, a faster generator without synchronization that also samples exponential and
+ * Pareto variates without computing logarithms or powers in most draws.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+abstract public class RandomSource {
+    /**
+     * Creates a new random source of the specified type.
+     *
+     * @param type the random source type: java|xoshiro
+     * @return a new random source
+     * @throws SimulationException if the type is unknown
+     */
+    public static RandomSource create (String type) {
+	if (type.equals("java")) {
+	    return new JavaRandomSource();
+	} else if (type.equals("xoshiro")) {
+	    return new XoshiroRandomSource();
+	}
+	throw new SimulationException("Unknown random generator: " + type);
+    }
+
+    /**
+     * Sets the seed of this random source. Different seeds give independent streams.
+     *
+     * @param seed the seed
+     */
+    abstract public void setSeed (long seed);
+
+    /**
+     * Returns a uniform random number.
+     *
+     * @return a random number in [0, 1)
+     */
+    abstract public double nextDouble ();
+
+    /**
+     * Returns a uniform random integer.
+     *
+     * @param bound the upper bound (exclusive), which must be positive
+     * @return a random integer in [0, bound)
+     */
+    abstract public int nextInt (int bound);
+
+    /**
+     * Writes the state of this random source, so that its stream can be resumed later on.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     */
+    abstract public void writeState (DataOutput out) throws IOException;
+
+    /**
+     * Reads a state written by writeState and resumes the stream from it.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     */
+    abstract public void readState (DataInput in) throws IOException;
+
+    /**
+     * Returns an exponential random number with mean 1.
+     *
+     * @return a random number in [0, infinity]
+     */
+    public double nextExponential () {
+	return -Math.log(nextDouble());
+    }
+
+    /**
+     * Returns a Pareto random number.
+     *
+     * @param xm    the scale (minimum value)
+     * @param alpha the shape
+     * @return a random number not lower than xm
+     */
+    public double nextPareto (double xm, double alpha) {
+	return xm * Math.exp(nextExponential() / alpha);
+    }
+}
@@ -0,0 +1,212 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class runs several independent replications of a simulation in parallel and
+ * reports the mean and the confidence interval of every link statistic.
+ * <p>
+ * Each generator of each replication draws from its own block of the period of the
+ * java.util.Random linear congruential generator. Blocks are obtained by jumping ahead
+ * from the master seed, so the random streams of different generators never overlap
+ * as long as no generator draws more than 2^48/(2*replications) numbers.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class ReplicationRunner {
+    /**
+     * Multiplier of the java.util.Random generator.
+     */
+    private static final long LCG_MULTIPLIER = 0x5DEECE66DL;
+    /**
+     * Increment of the java.util.Random generator.
+     */
+    private static final long LCG_INCREMENT = 0xBL;
+    /**
+     * Bit mask of the 48-bit state of the java.util.Random generator.
+     */
+    private static final long LCG_MASK = (1L << 48) - 1;
+
+    /**
+     * The configuration shared by all the replications.
+     */
+    private SimulationContext configuration;
+    /**
+     * The number of replications.
+     */
+    private int num_replications;
+    /**
+     * The number of replications run concurrently.
+     */
+    private int num_threads;
+    /**
+     * The statistics of each metric across replications.
+     */
+    private Map<String, SampleStatistics> statistics;
+    /**
+     * The frame delays of all the replications.
+     */
+    private DelayHistogram delay_histogram;
+
+    /**
+     * Creates a new replication runner using as many threads as available processors.
+     *
+     * @param ctx the configuration of the replications, whose simulation seed is used as master seed
+     * @param n   the number of replications
+     */
+    public ReplicationRunner (SimulationContext ctx, int n) {
+	this(ctx, n, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new replication runner.
+     *
+     * @param ctx     the configuration of the replications, whose simulation seed is used as master seed
+     * @param n       the number of replications
+     * @param threads the maximum number of replications run concurrently
+     */
+    public ReplicationRunner (SimulationContext ctx, int n, int threads) {
+	configuration = ctx;
+	num_replications = n;
+	num_threads = Math.max(1, Math.min(threads, n));
+	statistics = new LinkedHashMap<String, SampleStatistics>();
+	delay_histogram = new DelayHistogram();
+    }
+
+    /**
+     * Returns the seed that sets a java.util.Random generator at the beginning of the specified stream.
+     * The period of the generator starting at the master seed is split into equally sized streams.
+     *
+     * @param master_seed the master seed
+     * @param stream      the stream index
+     * @param num_streams the number of streams
+     * @return the seed to be passed to Random.setSeed
+     */
+    public static long getStreamSeed (long master_seed, int stream, int num_streams) {
+	long state = (master_seed ^ LCG_MULTIPLIER) & LCG_MASK;
+	long steps = (LCG_MASK / num_streams) * stream;
+
+	// Jump ahead: compose the affine map x -> a*x + c with itself (mod 2^48)
+	long acc_mult = 1, acc_inc = 0;
+	long cur_mult = LCG_MULTIPLIER, cur_inc = LCG_INCREMENT;
+	while (steps > 0) {
+	    if ((steps & 1) != 0) {
+		acc_mult = acc_mult * cur_mult;
+		acc_inc = acc_inc * cur_mult + cur_inc;
+	    }
+	    cur_inc = (cur_mult + 1) * cur_inc;
+	    cur_mult = cur_mult * cur_mult;
+	    steps >>>= 1;
+	}
+	state = (acc_mult * state + acc_inc) & LCG_MASK;
+	return state ^ LCG_MULTIPLIER;
+    }
+
+    /**
+     * Runs all the replications and collects their statistics.
+     *
+     * @throws SimulationException if any replication cannot be completed
+     */
+    public void run () {
+	List<SimulationContext> replications = new ArrayList<SimulationContext>();
+	for (int i = 0; i < num_replications; i++) {
+	    SimulationContext replication = configuration.copy();
+	    int num_streams = replication.getNumStreams();
+	    replication.setStreamSeeds(configuration.simulation_seed, i * num_streams, num_replications * num_streams);
+	    replication.simulation_verbose = false;
+	    replication.event_log_file = null;
+	    replication.sampling_file = null;
+	    replication.output = new PrintStream(new ByteArrayOutputStream());
+	    replications.add(replication);
+	}
+
+	ExecutorService executor = Executors.newFixedThreadPool(num_threads);
+	try {
+	    List<Future<?>> results = new ArrayList<Future<?>>();
+	    for (SimulationContext replication : replications) {
+		results.add(executor.submit(replication));
+	    }
+	    for (Future<?> result : results) {
+		result.get();
+	    }
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof SimulationException) {
+		throw (SimulationException) e.getCause();
+	    }
+	    throw new SimulationException("Replication failed: " + e.getCause());
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SimulationException("Replications interrupted!");
+	} finally {
+	    executor.shutdownNow();
+	}
+
+	for (SimulationContext replication : replications) {
+	    if (replication.getDelayHistogram() != null) {
+		delay_histogram.add(replication.getDelayHistogram());
+	    }
+	    LinkStatistics stats = replication.getStatistics(replication.simulation_length);
+	    for (String name : stats.getNames()) {
+		SampleStatistics sample = statistics.get(name);
+		if (sample == null) {
+		    sample = new SampleStatistics();
+		    statistics.put(name, sample);
+		}
+		sample.add(stats.get(name));
+	    }
+	}
+    }
+
+    /**
+     * Returns the statistics of the specified metric across replications.
+     *
+     * @param name the name of the metric
+     * @return the statistics of the metric or null if no replication reported it
+     */
+    public SampleStatistics getStatistics (String name) {
+	return statistics.get(name);
+    }
+
+    /**
+     * Returns the histogram of the frame delays of all the replications.
+     *
+     * @return the merged frame delay histogram
+     */
+    public DelayHistogram getDelayHistogram () {
+	return delay_histogram;
+    }
+
+    /**
+     * Prints on the specified output stream the mean and the 95% confidence interval of every metric,
+     * followed by the requested frame delay percentiles of all the replications together.
+     *
+     * @param out the output stream
+     */
+    public void printStatistics (PrintStream out) {
+	out.format("Replications: %d %n", num_replications);
+	for (Map.Entry<String, SampleStatistics> entry : statistics.entrySet()) {
+	    SampleStatistics sample = entry.getValue();
+	    out.format("%s: mean %.3f ci95 %.3f", entry.getKey(), sample.getMean(), sample.getHalfWidth(0.95));
+	    if (sample.getCount() < num_replications) {
+		out.format(" (%d replications)", sample.getCount());
+	    }
+	    out.format(" %n");
+	}
+	if (configuration.delay_percentiles.length > 0 && delay_histogram.getTotalCount() > 0) {
+	    out.format("Pooled frame delay percentiles:");
+	    for (double p : configuration.delay_percentiles) {
+		out.format(" %s %.3f", DelayHistogram.getLabel(p), delay_histogram.getValueAtPercentile(p) / 1e6);
+	    }
+	    out.format(" %n");
+	}
+    }
+}
@@ -0,0 +1,131 @@
+package es.uvigo.det.labredes.dualeee;
+
+/**
+ * This class accumulates independent observations of a metric and computes their mean and confidence interval.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class SampleStatistics {
+    /**
+     * The number of observations.
+     */
+    private long count;
+    /**
+     * The running mean of the observations.
+     */
+    private double mean;
+    /**
+     * The running sum of squared deviations from the mean (Welford's method).
+     */
+    private double m2;
+
+    /**
+     * Creates a new empty sample.
+     */
+    public SampleStatistics () {
+	count = 0;
+	mean = m2 = 0.0;
+    }
+
+    /**
+     * Adds a new observation to the sample.
+     *
+     * @param x the observed value
+     */
+    public void add (double x) {
+	count++;
+	double delta = x - mean;
+	mean += delta / count;
+	m2 += delta * (x - mean);
+    }
+
+    /**
+     * Returns the number of observations.
+     *
+     * @return the number of observations
+     */
+    public long getCount () {
+	return count;
+    }
+
+    /**
+     * Returns the sample mean.
+     *
+     * @return the sample mean or NaN if the sample is empty
+     */
+    public double getMean () {
+	return count > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * Returns the unbiased sample variance.
+     *
+     * @return the sample variance or NaN if there are less than two observations
+     */
+    public double getVariance () {
+	return count > 1 ? m2 / (count - 1) : Double.NaN;
+    }
+
+    /**
+     * Returns the half width of the confidence interval for the mean (Student's t distribution).
+     *
+     * @param confidence the confidence level (e.g. 0.95)
+     * @return the half width of the confidence interval or NaN if there are less than two observations
+     */
+    public double getHalfWidth (double confidence) {
+	if (count < 2) {
+	    return Double.NaN;
+	}
+	return studentQuantile(0.5 + confidence / 2, count - 1) * Math.sqrt(getVariance() / count);
+    }
+
+    /**
+     * Returns the specified quantile of the Student's t distribution.
+     * Exact for one and two degrees of freedom; otherwise computed with Hill's asymptotic expansion
+     * around the normal quantile (G. W. Hill, Algorithm 396, 1970).
+     *
+     * @param p  the probability (between 0.5 and 1)
+     * @param df the degrees of freedom
+     * @return the quantile
+     */
+    public static double studentQuantile (double p, long df) {
+	if (df == 1) {
+	    return Math.tan(Math.PI * (p - 0.5));
+	} else if (df == 2) {
+	    return (2 * p - 1) / Math.sqrt(2 * p * (1 - p));
+	}
+	double z = normalQuantile(p);
+	double z2 = z * z;
+	double g1 = (z2 + 1) * z / 4;
+	double g2 = ((5 * z2 + 16) * z2 + 3) * z / 96;
+	double g3 = (((3 * z2 + 19) * z2 + 17) * z2 - 15) * z / 384;
+	double g4 = ((((79 * z2 + 776) * z2 + 1482) * z2 - 1920) * z2 - 945) * z / 92160;
+	double n = df;
+	return z + g1 / n + g2 / (n * n) + g3 / (n * n * n) + g4 / (n * n * n * n);
+    }
+
+    /**
+     * Returns the specified quantile of the standard normal distribution (P. J. Acklam's rational approximation).
+     *
+     * @param p the probability (between 0 and 1)
+     * @return the quantile
+     */
+    public static double normalQuantile (double p) {
+	double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02, 1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+	double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02, 6.680131188771972e+01, -1.328068155288572e+01};
+	double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00, -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+	double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00, 3.754408661907416e+00};
+	double p_low = 0.02425;
+	if (p < p_low) {
+	    double q = Math.sqrt(-2 * Math.log(p));
+	    return (((((c[0]*q+c[1])*q+c[2])*q+c[3])*q+c[4])*q+c[5]) / ((((d[0]*q+d[1])*q+d[2])*q+d[3])*q+1);
+	} else if (p > 1 - p_low) {
+	    double q = Math.sqrt(-2 * Math.log(1 - p));
+	    return -(((((c[0]*q+c[1])*q+c[2])*q+c[3])*q+c[4])*q+c[5]) / ((((d[0]*q+d[1])*q+d[2])*q+d[3])*q+1);
+	}
+	double q = p - 0.5;
+	double r = q * q;
+	return (((((a[0]*r+a[1])*r+a[2])*r+a[3])*r+a[4])*r+a[5])*q / (((((b[0]*r+b[1])*r+b[2])*r+b[3])*r+b[4])*r+1);
+    }
+}
@@ -0,0 +1,188 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.PrintStream;
+
+/**
+ * This class runs a simulation until the confidence intervals of the average frame delay
+ * and of the power consumption are narrow enough, or until the simulation length is reached.
+ * <p>
+ * Confidence intervals are estimated with the method of batch means. The run is split into
+ * batches of equal simulated time; whenever the maximum number of batches is reached,
+ * adjacent batches are merged and the batch length is doubled.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class SequentialStoppingRule {
+    /**
+     * The minimum number of batches needed to test the stopping condition.
+     */
+    public static final int MIN_BATCHES = 20;
+    /**
+     * The maximum number of batches kept (must be even).
+     */
+    public static final int MAX_BATCHES = 64;
+    /**
+     * The default length of the first batches (in picoseconds). Default = 1 millisecond.
+     */
+    public static final long DEFAULT_BATCH_LENGTH = (long) 1e9;
+
+    /**
+     * The simulation run.
+     */
+    private SimulationContext context;
+    /**
+     * The target relative half width of the confidence intervals.
+     */
+    private double target_precision;
+    /**
+     * The confidence level of the confidence intervals.
+     */
+    private double confidence;
+    /**
+     * The current batch length (in picoseconds).
+     */
+    private long batch_length;
+
+    // Per batch sums: frame delays (in useconds), frames sent and energy (in peak power x picoseconds)
+    private double[] batch_delays, batch_frames, batch_energies;
+    private int num_batches;
+
+    // Results
+    private long stop_time;
+    private double delay_precision, power_precision;
+    private boolean converged;
+
+    /**
+     * Creates a new sequential stopping rule for the specified simulation run.
+     * The simulation length of the run is used as hard cap.
+     *
+     * @param ctx       the simulation run
+     * @param precision the target relative half width of the confidence intervals (e.g. 0.01)
+     * @param level     the confidence level of the confidence intervals (e.g. 0.95)
+     */
+    public SequentialStoppingRule (SimulationContext ctx, double precision, double level) {
+	context = ctx;
+	target_precision = precision;
+	confidence = level;
+	batch_length = Math.max(1, Math.min(DEFAULT_BATCH_LENGTH, ctx.simulation_length / MAX_BATCHES));
+	batch_delays = new double[MAX_BATCHES];
+	batch_frames = new double[MAX_BATCHES];
+	batch_energies = new double[MAX_BATCHES];
+	num_batches = 0;
+	delay_precision = power_precision = Double.NaN;
+	converged = false;
+    }
+
+    /**
+     * Runs the simulation until the target precision is met or the simulation length is reached.
+     * On return, the simulation length of the run is set to the simulated time actually needed.
+     *
+     * @throws SimulationException if the simulation cannot be completed
+     */
+    public void run () {
+	long cap = context.simulation_length;
+	context.start();
+	try {
+	    runBatches(cap);
+	} finally {
+	    context.finish();
+	}
+    }
+
+    /**
+     * Runs the batches until the target precision is met or the specified instant is reached.
+     */
+    private void runBatches (long cap) {
+	long t = 0;
+	double prev_delay = 0, prev_frames = 0, prev_energy = 0;
+	while (t < cap) {
+	    long batch_end = Math.min(cap, t + batch_length);
+	    context.runUntil(batch_end);
+	    LinkStatistics stats = context.getStatistics(batch_end);
+	    double frames = stats.get("frames_sent");
+	    double delay = frames > 0 ? stats.get("average_frame_delay") * frames : 0;
+	    double energy = stats.get("power_consumption") * batch_end;
+	    if (batch_end - t == batch_length) {
+		addBatch(delay - prev_delay, frames - prev_frames, energy - prev_energy);
+	    }
+	    prev_delay = delay;
+	    prev_frames = frames;
+	    prev_energy = energy;
+	    t = batch_end;
+	    if (checkPrecision()) {
+		converged = true;
+		break;
+	    }
+	}
+	stop_time = t;
+	context.simulation_length = t;
+    }
+
+    /**
+     * Adds a new batch, merging adjacent batches if the maximum number of batches is reached.
+     */
+    private void addBatch (double delay, double frames, double energy) {
+	batch_delays[num_batches] = delay;
+	batch_frames[num_batches] = frames;
+	batch_energies[num_batches] = energy;
+	num_batches++;
+	if (num_batches == MAX_BATCHES) {
+	    for (int i = 0; i < MAX_BATCHES / 2; i++) {
+		batch_delays[i] = batch_delays[2*i] + batch_delays[2*i+1];
+		batch_frames[i] = batch_frames[2*i] + batch_frames[2*i+1];
+		batch_energies[i] = batch_energies[2*i] + batch_energies[2*i+1];
+	    }
+	    num_batches = MAX_BATCHES / 2;
+	    batch_length *= 2;
+	}
+    }
+
+    /**
+     * Updates the achieved precisions and checks whether both meet the target.
+     */
+    private boolean checkPrecision () {
+	if (num_batches < MIN_BATCHES) {
+	    return false;
+	}
+	SampleStatistics delays = new SampleStatistics();
+	SampleStatistics powers = new SampleStatistics();
+	for (int i = 0; i < num_batches; i++) {
+	    if (batch_frames[i] > 0) {
+		delays.add(batch_delays[i] / batch_frames[i]);
+	    }
+	    powers.add(batch_energies[i] / batch_length);
+	}
+	delay_precision = delays.getCount() >= MIN_BATCHES ? delays.getHalfWidth(confidence) / Math.abs(delays.getMean()) : Double.NaN;
+	power_precision = powers.getHalfWidth(confidence) / Math.abs(powers.getMean());
+	return delay_precision <= target_precision && power_precision <= target_precision;
+    }
+
+    /**
+     * Returns true if the target precision was met before reaching the simulation length.
+     *
+     * @return true if the target precision was met
+     */
+    public boolean hasConverged () {
+	return converged;
+    }
+
+    /**
+     * Returns the simulated time actually needed.
+     *
+     * @return the simulated time (in picoseconds)
+     */
+    public long getStopTime () {
+	return stop_time;
+    }
+
+    /**
+     * Prints on the specified output stream the simulated time needed and the achieved precisions.
+     *
+     * @param out the output stream
+     */
+    public void printStatistics (PrintStream out) {
+	out.format("Simulated time: %.6f %s %n", stop_time / 1e12, converged ? "(target precision met)" : "(simulation length reached)");
+	out.format("Relative precision: delay %.4f power %.4f %n", delay_precision, power_precision);
+    }
+}
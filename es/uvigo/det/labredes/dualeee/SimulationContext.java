@@ -0,0 +1,755 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class keeps the configuration and the runtime state of a single simulation run.
+ * Each run owns its context, so independent simulations can be run concurrently in the same JVM.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class SimulationContext implements Runnable {
+
+    /* Simulation parameters */
+    /**
+     * Length of the simulation (in picoseconds). Default = 10 seconds.
+     */
+    public long simulation_length = (long) 10e12;
+    /**
+     * Seed for the simulation, from which the seeds of the generators are derived. Default = 123456789.
+     */
+    public long simulation_seed = 123456789;
+    /**
+     * Seed for the traffic generator. Default = simulation seed.
+     */
+    private long traffic_seed = 123456789;
+    /**
+     * Seed for the frame size generator. Default = simulation seed plus one.
+     */
+    private long frame_size_seed = 123456790;
+    /**
+     * The simulation seed when the seeds of the generators were last derived from it.
+     */
+    private long derived_seed = 123456789;
+    /**
+     * If true a message for each simulated event is printed on the output stream. Default = false.
+     */
+    public boolean simulation_verbose = false;
+    /**
+     * If not null, handled events are logged to this binary event log file instead of printed. Default = null.
+     */
+    public String event_log_file = null;
+    /**
+     * Window length of the time series sampler (in picoseconds). Default = 0 (no sampling).
+     */
+    public long sampling_window = 0;
+    /**
+     * File where the time series sampler writes (binary if its name ends with ".bin", CSV otherwise).
+     */
+    public String sampling_file = null;
+    /**
+     * Window length of the warm-up detector (in picoseconds). Default = 0 (no warm-up detection).
+     */
+    public long warmup_window = 0;
+    /**
+     * Percentiles of the frame delay included in the statistics (between 0 and 100). Default = none.
+     */
+    public double[] delay_percentiles = {};
+    /**
+     * Type of the event queue used by the event handler: binary|quaternary|calendar. Default = quaternary.
+     */
+    public String event_queue_type = "quaternary";
+    /**
+     * Random number generator of the traffic and frame size generators: java|xoshiro. Default = java.
+     */
+    public String random_generator = "java";
+    /**
+     * True if the frames queued while the link is active are transmitted without adding a transmission event
+     * to the event list whenever no other event may occur before the transmission ends (see EeeLink).
+     * The results are the same either way. Default = true.
+     */
+    public boolean collapse_busy_periods = true;
+    /**
+     * True if the frame arrivals that occur before any other event, such as those queued while the link sleeps
+     * waiting for its queue threshold, are handled without adding them to the event list (see EeeLink).
+     * The results are the same either way. Default = true.
+     */
+    public boolean fast_forward_arrivals = true;
+    /**
+     * Stream where event messages and statistics are printed. Default = standard output.
+     */
+    public PrintStream output = System.out;
+
+    /* Traffic parameters */
+    public String traffic_distribution = "deterministic";
+    public double arrival_rate = 1e9; // in bits per second
+    public double alpha_pareto = 2.5; // if pareto traffic distribution
+    public String traffic_file = ""; // if trace simulation
+    public String frame_size_distribution = "deterministic";
+    public int frame_size = 1500; // in bytes
+    public int frame_size_range = 0; // if uniform frame size distribution
+    public String frame_size_file = ""; // if trace simulation
+
+    /* EEE physical parameters */
+    public long link_capacity = (long) 40e9;
+    public long active_to_fast_t = (long) (0.9e-6 * 1e12);
+    public long fast_to_deep_t = (long) (1e-6 * 1e12);
+    public long fast_to_active_t = (long) (0.34e-6 * 1e12);
+    public long deep_to_active_t = (long) (5.5e-6 * 1e12);
+    public double fast_wake_consumption = 0.7;
+    public double deep_sleep_consumption = 0.1;
+
+    /* EEE configuration parameters (max_delay and queue thresholds are updated by the *_dyn modes) */
+    public long target_delay = (long) (32e-6 * 1e12);
+    public long max_delay = (long) (128e-6 * 1e12);
+    public int fast_to_active_qth = 1;
+    public int deep_to_active_qth = 1;
+    public long max_fast_wake_time = (long) (3.5e-6 * 1e12);
+    public String operation_mode = "dual";
+    /**
+     * Coalescing policies registered by the config file, by operation mode. Default = none.
+     */
+    public Map<String, Class<? extends CoalescingPolicy>> coalescing_policies = new HashMap<String, Class<? extends CoalescingPolicy>>();
+
+    /* Switch parameters */
+    /**
+     * Configuration of each port of a multi-port switch, or null if a single link is simulated. Default = null.
+     * All the links share the event handler of this context, which also keeps the simulation length and the
+     * event queue type; the rest of parameters are taken from the configuration of each port.
+     */
+    public SimulationContext[] ports = null;
+    /**
+     * Index of this port in the switch, or 0 if a single link is simulated. Default = 0.
+     */
+    public int port = 0;
+    /**
+     * Port whose link receives the frames transmitted by the link of this port, or -1 if frames leave the switch.
+     * Default = -1. Paths must go from lower to higher ports, so the ports form chains and trees.
+     */
+    public int next_port = -1;
+    /**
+     * Propagation delay to the link of the next port (in picoseconds). Default = 0.
+     */
+    public long propagation_delay = 0;
+    /**
+     * True if the link of this port is the last one of a path of several links. Default = false.
+     */
+    public boolean last_hop = false;
+    /**
+     * Number of threads that process the events of the ports in parallel. Default = 1 (sequential execution).
+     */
+    public int num_threads = 1;
+
+    /* Runtime state */
+    /**
+     * Dual-mode EEE link, or null if a multi-port switch is simulated (each port keeps its own link).
+     */
+    public EeeLink link;
+    /**
+     * Event handler.
+     */
+    public EventList event_handler;
+    /**
+     * Event log, or null if events are not logged.
+     */
+    public EventLog event_log;
+    /**
+     * Time series sampler, or null if the link is not sampled.
+     */
+    public TimeSeriesSampler sampler;
+    /**
+     * Parallel engine, or null if the events are processed sequentially by the event handler.
+     */
+    public ParallelEngine engine;
+
+    /**
+     * Creates a new simulation context with the default configuration.
+     */
+    public SimulationContext () {}
+
+    /**
+     * Returns a new simulation context with the same configuration as this one and no runtime state.
+     *
+     * @return a copy of the configuration of this context
+     */
+    public SimulationContext copy () {
+	SimulationContext context = new SimulationContext();
+	context.simulation_length = simulation_length;
+	context.simulation_seed = simulation_seed;
+	context.traffic_seed = traffic_seed;
+	context.frame_size_seed = frame_size_seed;
+	context.derived_seed = derived_seed;
+	context.simulation_verbose = simulation_verbose;
+	context.event_log_file = event_log_file;
+	context.sampling_window = sampling_window;
+	context.sampling_file = sampling_file;
+	context.warmup_window = warmup_window;
+	context.delay_percentiles = delay_percentiles.clone();
+	context.event_queue_type = event_queue_type;
+	context.random_generator = random_generator;
+	context.collapse_busy_periods = collapse_busy_periods;
+	context.fast_forward_arrivals = fast_forward_arrivals;
+	context.output = output;
+	context.traffic_distribution = traffic_distribution;
+	context.arrival_rate = arrival_rate;
+	context.alpha_pareto = alpha_pareto;
+	context.traffic_file = traffic_file;
+	context.frame_size_distribution = frame_size_distribution;
+	context.frame_size = frame_size;
+	context.frame_size_range = frame_size_range;
+	context.frame_size_file = frame_size_file;
+	context.link_capacity = link_capacity;
+	context.active_to_fast_t = active_to_fast_t;
+	context.fast_to_deep_t = fast_to_deep_t;
+	context.fast_to_active_t = fast_to_active_t;
+	context.deep_to_active_t = deep_to_active_t;
+	context.fast_wake_consumption = fast_wake_consumption;
+	context.deep_sleep_consumption = deep_sleep_consumption;
+	context.target_delay = target_delay;
+	context.max_delay = max_delay;
+	context.fast_to_active_qth = fast_to_active_qth;
+	context.deep_to_active_qth = deep_to_active_qth;
+	context.max_fast_wake_time = max_fast_wake_time;
+	context.operation_mode = operation_mode;
+	context.coalescing_policies = new HashMap<String, Class<? extends CoalescingPolicy>>(coalescing_policies);
+	context.port = port;
+	context.next_port = next_port;
+	context.propagation_delay = propagation_delay;
+	context.last_hop = last_hop;
+	context.num_threads = num_threads;
+	if (ports != null) {
+	    context.ports = new SimulationContext[ports.length];
+	    for (int i = 0; i < ports.length; i++) {
+		context.ports[i] = ports[i].copy();
+	    }
+	}
+	return context;
+    }
+
+    /**
+     * Sets the simulation seed. The traffic generator is seeded with the simulation seed
+     * and the frame size generator with the simulation seed plus one (or, with multiple ports, the generators of
+     * each port draw from their own streams, see setStreamSeeds).
+     *
+     * @param seed the simulation seed
+     */
+    public void setSeed (long seed) {
+	simulation_seed = seed;
+	traffic_seed = seed;
+	frame_size_seed = seed + 1;
+	derived_seed = seed;
+	if (ports != null) {
+	    setStreamSeeds(seed, 0, getNumStreams());
+	}
+    }
+
+    /**
+     * Returns the number of random streams drawn by the generators of this simulation run:
+     * two (traffic and frame size) per link.
+     *
+     * @return the number of random streams
+     */
+    public int getNumStreams () {
+	return ports != null ? 2 * ports.length : 2;
+    }
+
+    /**
+     * Seeds the generators so that they draw from consecutive streams of the period of the java.util.Random
+     * generator starting at the specified master seed. The traffic and frame size generators of each link
+     * (or of each port, in order) take two streams. The xoshiro generator is seeded with the same seeds, which give
+     * independent streams as well. These seeds are kept as long as the simulation seed is not changed; otherwise,
+     * they are derived again from the new simulation seed when the simulation is started (see setSeed).
+     *
+     * @param master_seed the master seed
+     * @param stream      the first stream
+     * @param num_streams the total number of streams the period is split into
+     */
+    public void setStreamSeeds (long master_seed, int stream, int num_streams) {
+	derived_seed = simulation_seed;
+	if (ports == null) {
+	    traffic_seed = ReplicationRunner.getStreamSeed(master_seed, stream, num_streams);
+	    frame_size_seed = ReplicationRunner.getStreamSeed(master_seed, stream + 1, num_streams);
+	    return;
+	}
+	for (int i = 0; i < ports.length; i++) {
+	    ports[i].setStreamSeeds(master_seed, stream + 2 * i, num_streams);
+	}
+    }
+
+    /**
+     * Reads the configuration from the specified config file.
+     * If the file has a PORTS line, the configuration of each port of a multi-port switch is created from the
+     * rest of lines, and then the PORT lines override the configuration of the specified ports.
+     *
+     * @param configuration_file the config file
+     * @throws SimulationException if the config file is not valid
+     */
+    public void readConfiguration (BufferedReader configuration_file) {
+	int num_ports = 0;
+	List<String> port_lines = new ArrayList<String>();
+	try {
+	    for (String line; (line = configuration_file.readLine()) != null;) {
+		if (line.startsWith(";")) { // Just a comment
+		    continue;
+		}
+		String[] line_fields = line.split("\\s+");
+		if (line_fields[0].equals("LINK")) {
+		    try {
+			link_capacity = (long) Double.parseDouble(line_fields[1]);
+		    } catch (NumberFormatException e) {
+			throw new SimulationException("Config file: invalid link capacity!");
+		    }			
+		} else if (line_fields[0].equals("TRAFFIC")) {
+		    if (line_fields[1].matches("deterministic|poisson|pareto|trace")) {
+			traffic_distribution = line_fields[1];
+		    } else {
+			throw new SimulationException("Config file: invalid traffic distribution!");
+		    }
+		    int field_offset = 0;
+		    if (traffic_distribution.equals("trace")) {
+			traffic_file = line_fields[2];
+		    } else {
+			try {
+			    arrival_rate = Double.parseDouble(line_fields[2]);
+			} catch (NumberFormatException e) {
+			    throw new SimulationException("Config file: invalid arrival rate!");
+			}
+			if (traffic_distribution.equals("pareto")) {
+			    try {
+				alpha_pareto = Double.parseDouble(line_fields[3]);
+			    } catch (NumberFormatException e) {
+				throw new SimulationException("Config file: invalid alpha pareto parameter!");
+			    }
+			    field_offset = 1;
+			}
+		    }
+		    if (line_fields[3 + field_offset].matches("deterministic|uniform|bimodal|trace")) {
+			frame_size_distribution = line_fields[3 + field_offset];
+		    } else {
+			throw new SimulationException("Config file: invalid frame size distribution!");
+		    }
+		    if (frame_size_distribution.equals("trace")) {
+			frame_size_file = line_fields[4 + field_offset];
+		    } else {
+			try {
+			    frame_size = Integer.parseInt(line_fields[4 + field_offset]);
+			} catch (NumberFormatException e) {
+			    throw new SimulationException("Config file: invalid frame size!");
+			}
+			if (frame_size <= 0) {
+			    throw new SimulationException("Config file: invalid frame size!");
+			}
+			if (frame_size_distribution.equals("uniform")) {
+			    try {
+				frame_size_range = Integer.parseInt(line_fields[5 + field_offset]);
+			    } catch (NumberFormatException e) {
+				throw new SimulationException("Config file: invalid frame size range!");
+			    }
+			    if (frame_size_range <= 0 || frame_size - frame_size_range/2.0 <= 0) {
+				throw new SimulationException("Config file: invalid frame size range!");
+			    }
+			}
+		    }
+		} else if (line_fields[0].equals("FAST")) {
+		    try {
+			fast_wake_consumption = Double.parseDouble(line_fields[1]);
+			active_to_fast_t = (long) (1e12 * Double.parseDouble(line_fields[2]));
+			fast_to_active_t = (long) (1e12 * Double.parseDouble(line_fields[3]));
+		    } catch (NumberFormatException e) {
+			throw new SimulationException("Config file: invalid fast wake configuration!");
+		    }
+		} else if (line_fields[0].equals("DEEP")) {
+		    try {
+			deep_sleep_consumption = Double.parseDouble(line_fields[1]);
+			fast_to_deep_t = (long) (1e12 * Double.parseDouble(line_fields[2]));
+			deep_to_active_t = (long) (1e12 * Double.parseDouble(line_fields[3]));
+		    } catch (NumberFormatException e) {
+			throw new SimulationException("Config file: invalid deep sleep configuration!");
+		    }
+		} else if (line_fields[0].equals("POLICY")) {
+		    if (line_fields.length < 3) {
+			throw new SimulationException("Config file: invalid coalescing policy!");
+		    }
+		    try {
+			coalescing_policies.put(line_fields[1], Class.forName(line_fields[2]).asSubclass(CoalescingPolicy.class));
+		    } catch (ClassNotFoundException | ClassCastException e) {
+			throw new SimulationException("Config file: invalid coalescing policy!");
+		    }
+		} else if (line_fields[0].equals("EEE")) {
+		    if (line_fields[1].matches("dual|fast|deep|dual_dyn|fast_dyn|deep_dyn|fast_mul|deep_mul|fast_time_dyn|deep_time_dyn|mostowfi") ||
+			coalescing_policies.containsKey(line_fields[1])) {
+			operation_mode = line_fields[1];
+		    } else {
+			throw new SimulationException("Config file: invalid EEE operation mode!");
+		    }
+		    try {
+			target_delay = (long) (1e12 * Double.parseDouble(line_fields[2]));
+			max_delay = (long) (1e12 * Double.parseDouble(line_fields[3]));
+			fast_to_active_qth = Integer.parseInt(line_fields[4]);
+			deep_to_active_qth = Integer.parseInt(line_fields[5]);
+			max_fast_wake_time = (long) (1e12 * Double.parseDouble(line_fields[6]));
+		    } catch (NumberFormatException e) {
+			throw new SimulationException("Config file: invalid EEE configuration!");
+		    }
+		    if (deep_to_active_t < fast_to_active_t) {
+			throw new SimulationException("Config file: too low deep to active transition!");
+		    }
+		    if ((operation_mode.matches("deep_dyn|deep_time_dyn") && target_delay < deep_to_active_t / 2.0) ||
+			(operation_mode.matches("fast_dyn|fast_time_dyn|dual_dyn") && target_delay < fast_to_active_t / 2.0)) {
+			throw new SimulationException("Config file: too low target delay!");
+		    }
+		    if (max_delay != 0 && (max_delay < max_fast_wake_time || max_delay < target_delay)) {
+			throw new SimulationException("Config file: too low max delay!");
+		    }
+		    if (deep_to_active_qth < fast_to_active_qth) {
+			throw new SimulationException("Config file: too low deep to active queue threshold!");
+		    }
+		} else if (line_fields[0].equals("PORTS")) {
+		    try {
+			num_ports = Integer.parseInt(line_fields[1]);
+		    } catch (NumberFormatException e) {
+			throw new SimulationException("Config file: invalid number of ports!");
+		    }
+		    if (num_ports < 1 || num_ports > EventList.MAX_PORTS) {
+			throw new SimulationException("Config file: invalid number of ports!");
+		    }
+		} else if (line_fields[0].equals("PORT")) {
+		    port_lines.add(line);
+		} else if (line_fields[0].equals("NEXT")) {
+		    try {
+			next_port = Integer.parseInt(line_fields[1]);
+		    } catch (RuntimeException e) {
+			throw new SimulationException("Config file: invalid next port!");
+		    }
+		    if (next_port < -1) {
+			throw new SimulationException("Config file: invalid next port!");
+		    }
+		    try {
+			propagation_delay = line_fields.length > 2 ? (long) (1e12 * Double.parseDouble(line_fields[2])) : 0;
+		    } catch (NumberFormatException e) {
+			throw new SimulationException("Config file: invalid propagation delay!");
+		    }
+		    if (propagation_delay < 0) {
+			throw new SimulationException("Config file: invalid propagation delay!");
+		    }
+		}
+	    }
+	    configuration_file.close();
+	} catch (IOException e) {
+	    throw new SimulationException("Error while reading config file!");
+	}
+	if (num_ports > 0) {
+	    createPorts(num_ports, port_lines);
+	} else if (!port_lines.isEmpty()) {
+	    throw new SimulationException("Config file: port configuration without PORTS line!");
+	}
+    }
+
+    /**
+     * Creates the configuration of each port as a copy of this configuration, overridden by the specified
+     * port lines (PORT first_port[-last_port] config_line, with ports numbered from 0).
+     * Then checks the next port of each port and marks the last links of the paths.
+     */
+    private void createPorts (int num_ports, List<String> port_lines) {
+	ports = null;
+	SimulationContext[] new_ports = new SimulationContext[num_ports];
+	for (int i = 0; i < num_ports; i++) {
+	    new_ports[i] = copy();
+	}
+	for (String line : port_lines) {
+	    String[] line_fields = line.trim().split("\\s+", 3);
+	    int first_port = -1, last_port = -1;
+	    try {
+		String[] range = line_fields[1].split("-");
+		first_port = Integer.parseInt(range[0]);
+		last_port = range.length > 1 ? Integer.parseInt(range[1]) : first_port;
+	    } catch (RuntimeException e) {
+		throw new SimulationException("Config file: invalid port!");
+	    }
+	    if (first_port < 0 || last_port < first_port || last_port >= num_ports || line_fields.length < 3 || line_fields[2].startsWith("PORT")) {
+		throw new SimulationException("Config file: invalid port!");
+	    }
+	    for (int i = first_port; i <= last_port; i++) {
+		new_ports[i].readConfiguration(new BufferedReader(new StringReader(line_fields[2])));
+	    }
+	}
+	for (int i = 0; i < num_ports; i++) {
+	    new_ports[i].port = i;
+	    if (new_ports[i].next_port >= 0) {
+		if (new_ports[i].next_port <= i || new_ports[i].next_port >= num_ports) {
+		    throw new SimulationException("Config file: invalid next port!");
+		}
+		new_ports[new_ports[i].next_port].last_hop = true;
+	    }
+	}
+	for (SimulationContext new_port : new_ports) {
+	    new_port.last_hop = new_port.last_hop && new_port.next_port < 0;
+	}
+	ports = new_ports;
+	setStreamSeeds(simulation_seed, 0, getNumStreams());
+    }
+
+    /**
+     * Creates the traffic generator described by the configuration.
+     *
+     * @return a new traffic generator seeded with the traffic seed
+     */
+    public TrafficGenerator createTrafficGenerator () {
+	TrafficGenerator tgen = null;
+	if (traffic_distribution.equals("deterministic")) {
+	    tgen = new DeterministicTrafficGenerator(arrival_rate, frame_size);
+	} else if (traffic_distribution.equals("poisson")) {
+	    tgen = new PoissonTrafficGenerator(arrival_rate, frame_size);
+	} else if (traffic_distribution.equals("pareto")) {
+	    tgen = new ParetoTrafficGenerator(arrival_rate, frame_size, alpha_pareto);
+	} else if (traffic_distribution.equals("trace")) {
+	    tgen = new TraceTrafficGenerator(traffic_file);
+	}
+	tgen.rng = RandomSource.create(random_generator);
+	tgen.setSeed(traffic_seed);
+	return tgen;
+    }
+
+    /**
+     * Creates the frame size generator described by the configuration.
+     *
+     * @return a new frame size generator seeded with the frame size seed
+     */
+    public FrameSizeGenerator createFrameSizeGenerator () {
+	FrameSizeGenerator fsgen = null;
+        if (frame_size_distribution.equals("deterministic")) {
+            fsgen = new DeterministicFrameSizeGenerator(frame_size);
+        } else if (frame_size_distribution.equals("uniform")) {
+	    fsgen = new UniformFrameSizeGenerator(frame_size, frame_size_range);
+	} else if (frame_size_distribution.equals("bimodal")) {
+	    fsgen = new BimodalFrameSizeGenerator(frame_size);
+        } else if (frame_size_distribution.equals("trace")) {
+	    fsgen = new TraceFrameSizeGenerator(frame_size_file);
+        }
+	fsgen.rng = RandomSource.create(random_generator);
+        fsgen.setSeed(frame_size_seed);
+	return fsgen;
+    }
+
+    /**
+     * Creates the coalescing policy of the operation mode. Policies registered by the config file take precedence
+     * over the built-in operation modes.
+     *
+     * @return a new coalescing policy
+     * @throws SimulationException if the registered policy cannot be instantiated
+     */
+    public CoalescingPolicy createCoalescingPolicy () {
+	CoalescingPolicy policy = null;
+	if (coalescing_policies.containsKey(operation_mode)) {
+	    try {
+		policy = coalescing_policies.get(operation_mode).getConstructor().newInstance();
+	    } catch (ReflectiveOperationException e) {
+		throw new SimulationException("Cannot create coalescing policy " + operation_mode + "!");
+	    }
+	} else if (operation_mode.equals("dual")) {
+	    policy = new DualCoalescingPolicy();
+	} else if (operation_mode.equals("fast")) {
+	    policy = new FastCoalescingPolicy();
+	} else if (operation_mode.equals("deep")) {
+	    policy = new DeepCoalescingPolicy();
+	} else if (operation_mode.equals("dual_dyn")) {
+	    policy = new DualDynamicCoalescingPolicy();
+	} else if (operation_mode.equals("fast_dyn")) {
+	    policy = new DynamicCoalescingPolicy(EeeState.TRANSITION_TO_FAST);
+	} else if (operation_mode.equals("deep_dyn")) {
+	    policy = new DynamicCoalescingPolicy(EeeState.TRANSITION_TO_DEEP);
+	} else if (operation_mode.equals("fast_time_dyn")) {
+	    policy = new TimeDynamicCoalescingPolicy(EeeState.TRANSITION_TO_FAST);
+	} else if (operation_mode.equals("deep_time_dyn")) {
+	    policy = new TimeDynamicCoalescingPolicy(EeeState.TRANSITION_TO_DEEP);
+	} else if (operation_mode.equals("fast_mul")) {
+	    policy = new PeriodicCoalescingPolicy(EeeState.TRANSITION_TO_FAST);
+	} else if (operation_mode.equals("deep_mul")) {
+	    policy = new PeriodicCoalescingPolicy(EeeState.TRANSITION_TO_DEEP);
+	} else if (operation_mode.equals("mostowfi")) {
+	    policy = new MostowfiCoalescingPolicy();
+	}
+	return policy;
+    }
+
+    /**
+     * Runs the simulation: creates the event handler and the link and processes all the events.
+     * If a warm-up window is set, the statistics of the detected warm-up period are discarded (see WarmupDetector).
+     *
+     * @throws SimulationException if the simulation cannot be completed
+     */
+    public void run () {
+	if (warmup_window > 0) {
+	    new WarmupDetector(this).run();
+	    return;
+	}
+	start();
+	try {
+	    runUntil(Long.MAX_VALUE);
+	} finally {
+	    finish();
+	}
+    }
+
+    /**
+     * Creates the event log, the event handler and the link (or the link of each port), without processing any event.
+     * In verbose mode, events are logged as text on the output stream unless a binary event log file is set.
+     * If several threads are requested for a multi-port switch, the ports are distributed by a parallel engine.
+     * If the simulation seed has been changed since the seeds of the generators were derived, they are derived again.
+     *
+     * @throws SimulationException if the simulation cannot be started
+     */
+    public void start () {
+	if (simulation_seed != derived_seed) {
+	    setSeed(simulation_seed);
+	}
+	if (ports != null) {
+	    if (simulation_verbose || event_log_file != null || sampling_file != null) {
+		throw new SimulationException("Event logging and sampling cannot be used with multiple ports!");
+	    }
+	    link = null;
+	    if (num_threads > 1 && ports.length > 1) {
+		event_handler = null;
+		engine = new ParallelEngine(this, num_threads);
+		engine.start();
+		return;
+	    }
+	    event_handler = new EventList(this);
+	    for (SimulationContext port : ports) {
+		port.event_handler = event_handler;
+		port.link = new EeeLink(port, port.link_capacity, port.createTrafficGenerator(), port.createFrameSizeGenerator());
+	    }
+	    return;
+	}
+	if (next_port >= 0) {
+	    throw new SimulationException("Config file: next port without PORTS line!");
+	}
+	if (event_log_file != null) {
+	    event_log = new EventLog(event_log_file);
+	} else if (simulation_verbose) {
+	    event_log = new EventLog(output);
+	}
+	event_handler = new EventList(this);
+	link = new EeeLink(this, link_capacity, createTrafficGenerator(), createFrameSizeGenerator());
+	if (sampling_window > 0 && sampling_file != null) {
+	    sampler = new TimeSeriesSampler(this, sampling_window, sampling_file);
+	}
+    }
+
+    /**
+     * Processes all the events occurring up to the specified instant.
+     * The simulation must have been already started.
+     *
+     * @param t the instant (in picoseconds) up to which events are processed
+     * @return true if there are pending events after the specified instant
+     * @throws SimulationException if the simulation cannot be completed
+     */
+    public boolean runUntil (long t) {
+	if (engine != null) {
+	    return engine.runUntil(t);
+	}
+	Event event;
+        while ((event = event_handler.getNextEvent(false)) != null) {
+	    if (event.time > t) {
+		return true;
+	    }
+	    if (sampler != null && event.time > sampler.next_sample_time) {
+		sampler.sampleUntil(event.time);
+	    }
+	    event_handler.setHorizon(sampler != null ? Math.min(t, sampler.next_sample_time) : t);
+	    event_handler.handleEvent(event_handler.getNextEvent(true));
+	}
+	return false;
+    }
+
+    /**
+     * Stops the threads of the parallel engine, if any.
+     * Samples the last windows and closes the time series sampler, if any.
+     * Then writes all the logged events and closes the event log, if any.
+     *
+     * @throws SimulationException if the samples or the events cannot be written
+     */
+    public void finish () {
+	if (engine != null) {
+	    engine.finish();
+	}
+	if (sampler != null) {
+	    TimeSeriesSampler s = sampler;
+	    sampler = null;
+	    s.close(simulation_length);
+	}
+	if (event_log != null) {
+	    EventLog log = event_log;
+	    event_log = null;
+	    log.close();
+	}
+    }
+
+    /**
+     * Returns the statistics of the link measured up to the specified instant.
+     * If a multi-port switch is simulated, the aggregate statistics of all the ports are returned.
+     *
+     * @param t the measurement instant (in picoseconds)
+     * @return the statistics of the link or the aggregate statistics of the switch
+     */
+    public LinkStatistics getStatistics (long t) {
+	if (ports == null) {
+	    return link.getStatistics(t);
+	}
+	AggregateStatistics aggregate = new AggregateStatistics();
+	for (SimulationContext port : ports) {
+	    aggregate.add(port.link.getStatistics(t));
+	}
+	LinkStatistics stats = aggregate.getStatistics();
+	DelayHistogram histogram = getDelayHistogram();
+	if (histogram != null && histogram.getTotalCount() > 0) {
+	    for (double p : delay_percentiles) {
+		stats.put("frame_delay_" + DelayHistogram.getLabel(p), histogram.getValueAtPercentile(p) / 1e6);
+	    }
+	}
+	return stats;
+    }
+
+    /**
+     * Returns the histogram of the delays of the frames sent so far by the link or by all the ports.
+     *
+     * @return the frame delay histogram or null if no frame delay percentile is requested
+     */
+    public DelayHistogram getDelayHistogram () {
+	if (ports == null) {
+	    return link.getDelayHistogram();
+	}
+	if (delay_percentiles.length == 0) {
+	    return null;
+	}
+	DelayHistogram histogram = new DelayHistogram();
+	for (SimulationContext port : ports) {
+	    if (port.link.getDelayHistogram() != null) {
+		histogram.add(port.link.getDelayHistogram());
+	    }
+	}
+	return histogram;
+    }
+
+    /**
+     * Prints on the output stream the statistics of the link.
+     * If a multi-port switch is simulated, the statistics of each port are followed by the aggregate statistics.
+     */
+    public void printStatistics () {
+	if (ports == null) {
+	    link.printStatistics();
+	    return;
+	}
+	for (int i = 0; i < ports.length; i++) {
+	    output.format("Port %d: %n", i);
+	    EeeLink.printStatistics(ports[i].link.getStatistics(simulation_length), output);
+	}
+	output.format("Aggregate (%d ports): %n", ports.length);
+	EeeLink.printStatistics(getStatistics(simulation_length), output);
+    }
+}
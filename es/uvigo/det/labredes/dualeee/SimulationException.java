@@ -0,0 +1,23 @@
+package es.uvigo.det.labredes.dualeee;
+
+/**
+ * This exception is thrown when a simulation cannot be configured or run.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class SimulationException extends RuntimeException {
+    /**
+     * The serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new simulation exception with the specified message.
+     *
+     * @param message the detail message
+     */
+    public SimulationException (String message) {
+	super(message);
+    }
+}
@@ -6,12 +6,22 @@ package es.uvigo.det.labredes.dualeee;
  * @author Sergio Herreria-Alonso 
  * @version 1.0
  */
-public class StateTransitionEvent extends Event<EeeLink> {
+public class StateTransitionEvent extends Event {
     /**
      * The next state of the link.
      */
     public EeeState next_state;
 
+    /**
+     * Creates a new event representing a state transition at the link that is dispatched directly to the link.
+     *
+     * @param t     instant at which the link changes its state
+     * @param state next state of the link
+     */
+    public StateTransitionEvent (long t, EeeState state) {
+	this(t, null, state);
+    }
+
     /**
      * Creates a new event representing a state transition at the link.
      *
@@ -24,6 +34,33 @@ public class StateTransitionEvent extends Event<EeeLink> {
 	next_state = state;
     }
 
+    /**
+     * Reinitializes this recycled state transition event.
+     *
+     * @param t     instant at which the link changes its state
+     * @param state next state of the link
+     * @return this event
+     */
+    StateTransitionEvent reset (long t, EeeState state) {
+	reset(t);
+	next_state = state;
+	return this;
+    }
+
+    /**
+     * Handles this event by calling directly the handleStateTransitionEvent method of the specified link.
+     *
+     * @param link the link that handles the event
+     * @return true if the event has been handled; false if it must be handled through its handler method name
+     */
+    public boolean dispatch (EeeLink link) {
+	if (handler_method_name != null) {
+	    return false;
+	}
+	link.handleStateTransitionEvent(this);
+	return true;
+    }
+
     /**
      * Compares two state transition events.
      *
@@ -38,22 +75,49 @@ public class StateTransitionEvent extends Event<EeeLink> {
             return false;
         }
 	StateTransitionEvent event = (StateTransitionEvent) obj;
-	if (time == event.time && next_state == event.next_state) {
+	if (time == event.time && next_state == event.next_state && port == event.port) {
 	    return true;
 	}
 	return false;
     }
 
     /**
-     * Prints on standard output a message describing the state transition event.
+     * Returns a hash code for this state transition event consistent with equals.
+     *
+     * @return a hash code for this event
+     */
+    public int hashCode () {
+	return 31 * (31 * Long.hashCode(time) + next_state.ordinal()) + port;
+    }
+
+    /**
+     * Prints on the output stream of the specified link a message describing the state transition event.
+     *
+     * @param link the link that handles the event
      */
-    public void print () {
+    public void print (EeeLink link) {
 	String queue_th = "";
 	if (next_state == EeeState.FAST_WAKE) {
-	    queue_th = String.valueOf(DualModeEeeSimulator.fast_to_active_qth);
+	    queue_th = String.valueOf(link.context.fast_to_active_qth);
+	} else if (next_state == EeeState.DEEP_SLEEP) {
+	    queue_th = String.valueOf(link.context.deep_to_active_qth);
+	}
+	link.context.output.format("%.3f StateTransitionEvent %s %s%n", time / 1e6, next_state, queue_th);
+    }
+
+    /**
+     * Logs this event on the specified event log.
+     *
+     * @param log  the event log
+     * @param link the link that handles the event
+     */
+    public void log (EventLog log, EeeLink link) {
+	int queue_th = EventLog.NO_THRESHOLD;
+	if (next_state == EeeState.FAST_WAKE) {
+	    queue_th = link.context.fast_to_active_qth;
 	} else if (next_state == EeeState.DEEP_SLEEP) {
-	    queue_th = String.valueOf(DualModeEeeSimulator.deep_to_active_qth);
+	    queue_th = link.context.deep_to_active_qth;
 	}
-	System.out.format("%.3f StateTransitionEvent %s %s%n", time / 1e6, next_state, queue_th);
+	log.logStateTransition(time, next_state, queue_th);
     }
 }
@@ -0,0 +1,129 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * This class loads a text trace file into chunked primitive arrays.
+ * A text trace holds either an interarrival time (in seconds) or a frame size (in bytes) per line.
+ * Only the first field of each line is read.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class TextTrace extends TraceData {
+    /**
+     * The number of records of each chunk.
+     */
+    private static final int CHUNK_RECORDS = 1 << 20;
+
+    /**
+     * The interarrival times, or null if the trace holds frame sizes.
+     */
+    private double[][] times;
+    /**
+     * The frame sizes, or null if the trace holds interarrival times.
+     */
+    private int[][] frame_sizes;
+
+    /**
+     * Loads the specified text trace. Loading stops at the first invalid line.
+     *
+     * @param filename    name of the trace file
+     * @param frame_sizes if true the trace holds frame sizes, otherwise interarrival times
+     * @throws SimulationException if the file cannot be read
+     */
+    public TextTrace (String filename, boolean frame_sizes) {
+	if (frame_sizes) {
+	    this.frame_sizes = new int[1][];
+	} else {
+	    times = new double[1][];
+	}
+	num_records = 0;
+	try (BufferedReader tracefile = new BufferedReader(new FileReader(filename))) {
+	    for (String line; (line = tracefile.readLine()) != null; num_records++) {
+		int chunk = (int) (num_records / CHUNK_RECORDS);
+		int offset = (int) (num_records % CHUNK_RECORDS);
+		String field = getFirstField(line);
+		try {
+		    if (frame_sizes) {
+			if (chunk == this.frame_sizes.length) {
+			    this.frame_sizes = Arrays.copyOf(this.frame_sizes, 2 * chunk);
+			}
+			if (offset == 0) {
+			    this.frame_sizes[chunk] = new int[CHUNK_RECORDS];
+			}
+			this.frame_sizes[chunk][offset] = Integer.parseInt(field);
+		    } else {
+			if (chunk == times.length) {
+			    times = Arrays.copyOf(times, 2 * chunk);
+			}
+			if (offset == 0) {
+			    times[chunk] = new double[CHUNK_RECORDS];
+			}
+			times[chunk][offset] = Double.parseDouble(field);
+		    }
+		} catch (NumberFormatException e) {
+		    error_message = frame_sizes ? "Trace file: invalid frame size!" : "Trace file: invalid interarrival time!";
+		    break;
+		}
+	    }
+	} catch (FileNotFoundException e) {
+	    throw new SimulationException("Trace file not found!");
+	} catch (IOException e) {
+	    throw new SimulationException("Error while reading trace file!");
+	}
+    }
+
+    /**
+     * Returns the first field of the specified line, which ends at the first whitespace.
+     */
+    private static String getFirstField (String line) {
+	for (int i = 0; i < line.length(); i++) {
+	    char c = line.charAt(i);
+	    if (c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == 0x0B) {
+		return line.substring(0, i);
+	    }
+	}
+	return line;
+    }
+
+    /**
+     * Returns false, since text traces hold interarrival times.
+     *
+     * @return false
+     */
+    public boolean isAbsolute () {
+	return false;
+    }
+
+    /**
+     * Returns the interarrival time of the specified record.
+     *
+     * @param i the record index
+     * @return the interarrival time (in seconds)
+     */
+    public double getTime (long i) {
+	return times[(int) (i / CHUNK_RECORDS)][(int) (i % CHUNK_RECORDS)];
+    }
+
+    /**
+     * Returns the frame size of the specified record.
+     *
+     * @param i the record index
+     * @return the frame size (in bytes)
+     */
+    public int getFrameSize (long i) {
+	return frame_sizes[(int) (i / CHUNK_RECORDS)][(int) (i % CHUNK_RECORDS)];
+    }
+
+    /**
+     * Returns the amount of memory taken by the loaded chunks.
+     *
+     * @return the amount of memory (in bytes)
+     */
+    public long getMemorySize () {
+	long chunks = (num_records + CHUNK_RECORDS - 1) / CHUNK_RECORDS;
+	return chunks * CHUNK_RECORDS * (times != null ? 8 : 4);
+    }
+}
@@ -0,0 +1,79 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+
+/**
+ * This class extends DynamicCoalescingPolicy class to implement the fast_time_dyn and deep_time_dyn operation modes:
+ * the max delay, instead of the wake threshold, is updated every time the link goes to sleep.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class TimeDynamicCoalescingPolicy extends DynamicCoalescingPolicy {
+    /**
+     * The integral over time of the max delay in force, up to the last parameter update.
+     */
+    private double weighted_sum_active_max_delay = 0.0;
+
+    /**
+     * Creates a new time-based dynamic coalescing policy.
+     *
+     * @param ss the transition through which the link goes to sleep (TRANSITION_TO_FAST or TRANSITION_TO_DEEP)
+     */
+    public TimeDynamicCoalescingPolicy (EeeState ss) {
+	super(ss);
+    }
+
+    /**
+     * Adds the average max delay to the specified statistics.
+     *
+     * @param stats the statistics of the link
+     * @param t     the measurement instant (in picoseconds)
+     */
+    public void putStatistics (LinkStatistics stats, long t) {
+	double weighted_sum = weighted_sum_active_max_delay + context.max_delay * (t - prev_update_active);
+	stats.put("average_coalescing_max_delay", weighted_sum / 1e6 / t);
+    }
+
+    /**
+     * Writes the state of the policy, including the max delay adapted so far.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {
+	super.writeState(out);
+	out.writeDouble(weighted_sum_active_max_delay);
+	out.writeLong(context.max_delay);
+    }
+
+    /**
+     * Reads the state of the policy, including the max delay adapted so far.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     */
+    public void readState (DataInput in) throws IOException {
+	super.readState(in);
+	weighted_sum_active_max_delay = in.readDouble();
+	context.max_delay = in.readLong();
+    }
+
+    /**
+     * Updates the max delay, never below 1 ns.
+     *
+     * @param transition_state the transition through which the link goes to sleep
+     * @param t                the instant of the update (in picoseconds)
+     * @param avg_arrival_rate the frame arrival rate measured since the last update (in frames per picosecond)
+     * @param w0               the expected waiting time of the frames queued while active (in picoseconds)
+     */
+    protected void updateParameters (EeeState transition_state, long t, double avg_arrival_rate, long w0) {
+	weighted_sum_active_max_delay += context.max_delay * (t - prev_update_active);
+	context.max_delay = context.target_delay - w0;
+	context.max_delay += (long) (Math.sqrt(1 + Math.pow(1 + avg_arrival_rate * (context.target_delay - w0), 2)) / avg_arrival_rate);
+	context.max_delay -= transition_state == EeeState.TRANSITION_TO_FAST ? context.fast_to_active_t : context.deep_to_active_t;
+	if (context.max_delay <= 1e3) { // 1ns
+	    context.max_delay = (long) 1e3;
+	}
+    }
+}
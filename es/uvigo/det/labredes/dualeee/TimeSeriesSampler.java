@@ -0,0 +1,215 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+
+/**
+ * This class samples the link statistics on a fixed simulated-time window and writes one row per window.
+ * <p>
+ * Samples are taken by the event loop right before handling the first event after the end of each window,
+ * so sampling does not add any event to the event list. Each row holds the end of the window (in seconds),
+ * the power consumption, the time in each state (in useconds), the frames sent, the average and maximum
+ * frame delay (in useconds), the queue size at the end of the window, the average queue size, the
+ * current queue thresholds and max delay (in useconds) and the frames dropped. All the values refer to
+ * the window only.
+ * <p>
+ * Rows are written either as CSV, with a header line and six decimals, or in binary: the magic string "EEESERIE",
+ * the number of columns (int), the name of each column (UTF) and then the values of each row (double).
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class TimeSeriesSampler {
+    /**
+     * The magic string at the beginning of every binary time series file.
+     */
+    public static final byte[] MAGIC = {'E', 'E', 'E', 'S', 'E', 'R', 'I', 'E'};
+
+    /**
+     * The simulation run.
+     */
+    private SimulationContext context;
+    /**
+     * The window length (in picoseconds).
+     */
+    private long window;
+    /**
+     * The end of the current window (in picoseconds).
+     */
+    public long next_sample_time;
+    /**
+     * The end of the last sampled window (in picoseconds).
+     */
+    private long last_sample_time;
+    /**
+     * The binary output stream, or null if rows are written as CSV.
+     */
+    private DataOutputStream binary_output;
+    /**
+     * The CSV output stream, or null if rows are written in binary.
+     */
+    private PrintStream csv_output;
+    /**
+     * The values of the current row.
+     */
+    private double[] row;
+    /**
+     * The cumulative values at the end of the last sampled window.
+     */
+    private double prev_frames, prev_delay, prev_energy, prev_queue_area, prev_dropped;
+    private double[] prev_time_in_states;
+
+    /**
+     * Creates a new sampler for the specified simulation run.
+     * Rows are written in binary if the file name ends with ".bin" and as CSV otherwise.
+     *
+     * @param ctx      the simulation run, whose link must have been already created
+     * @param w        the window length (in picoseconds)
+     * @param filename name of the output file
+     * @throws SimulationException if the file cannot be created
+     */
+    public TimeSeriesSampler (SimulationContext ctx, long w, String filename) {
+	context = ctx;
+	window = w;
+	next_sample_time = w;
+	last_sample_time = 0;
+	EeeState[] states = EeeState.values();
+	String[] columns = new String[11 + states.length];
+	int n = 0;
+	columns[n++] = "time";
+	columns[n++] = "power_consumption";
+	for (EeeState st : states) {
+	    columns[n++] = "time_in_" + st;
+	}
+	columns[n++] = "frames_sent";
+	columns[n++] = "average_frame_delay";
+	columns[n++] = "maximum_frame_delay";
+	columns[n++] = "queue_size";
+	columns[n++] = "average_queue_size";
+	columns[n++] = "fast_to_active_qth";
+	columns[n++] = "deep_to_active_qth";
+	columns[n++] = "max_delay";
+	columns[n++] = "frames_dropped";
+	row = new double[columns.length];
+	prev_time_in_states = new double[states.length];
+	try {
+	    OutputStream out = new BufferedOutputStream(new FileOutputStream(filename), 1 << 16);
+	    if (filename.endsWith(".bin")) {
+		binary_output = new DataOutputStream(out);
+		binary_output.write(MAGIC);
+		binary_output.writeInt(columns.length);
+		for (String column : columns) {
+		    binary_output.writeUTF(column);
+		}
+	    } else {
+		csv_output = new PrintStream(out, false);
+		csv_output.print(String.join(",", columns));
+		csv_output.print('\n');
+	    }
+	} catch (IOException e) {
+	    throw new SimulationException("Error while writing time series file!");
+	}
+    }
+
+    /**
+     * Samples all the windows that end before the specified instant.
+     *
+     * @param t the time of the next event to be handled (in picoseconds)
+     */
+    public void sampleUntil (long t) {
+	while (next_sample_time < t) {
+	    sample(next_sample_time);
+	    next_sample_time += window;
+	}
+    }
+
+    /**
+     * Samples the window that ends at the specified instant.
+     */
+    private void sample (long t) {
+	EeeLink link = context.link;
+	LinkStatistics stats = link.getStatistics(t);
+	double duration = t - last_sample_time;
+	double frames = stats.get("frames_sent");
+	double delay = frames > 0 ? stats.get("average_frame_delay") * frames : 0;
+	double energy = stats.get("power_consumption") * t;
+	double queue_area = link.getQueueArea(t);
+
+	int n = 0;
+	row[n++] = t / 1e12;
+	row[n++] = (energy - prev_energy) / duration;
+	for (EeeState st : EeeState.values()) {
+	    double time_in_state = stats.get("time_in_" + st);
+	    row[n++] = time_in_state - prev_time_in_states[st.ordinal()];
+	    prev_time_in_states[st.ordinal()] = time_in_state;
+	}
+	row[n++] = frames - prev_frames;
+	row[n++] = frames > prev_frames ? (delay - prev_delay) / (frames - prev_frames) : 0;
+	row[n++] = link.pollWindowMaximumDelay() / 1e6;
+	row[n++] = link.queue_size;
+	row[n++] = (queue_area - prev_queue_area) / duration;
+	row[n++] = context.fast_to_active_qth;
+	row[n++] = context.deep_to_active_qth;
+	row[n++] = context.max_delay / 1e6;
+	row[n++] = stats.get("frames_dropped") - prev_dropped;
+	prev_dropped = stats.get("frames_dropped");
+	prev_frames = frames;
+	prev_delay = delay;
+	prev_energy = energy;
+	prev_queue_area = queue_area;
+	last_sample_time = t;
+	write();
+    }
+
+    /**
+     * Writes the current row.
+     */
+    private void write () {
+	try {
+	    if (binary_output != null) {
+		for (double value : row) {
+		    binary_output.writeDouble(value);
+		}
+	    } else {
+		for (int i = 0; i < row.length; i++) {
+		    if (i > 0) {
+			csv_output.print(',');
+		    }
+		    if (row[i] == Math.rint(row[i]) && Math.abs(row[i]) < 1e15) {
+			csv_output.print((long) row[i]);
+		    } else {
+			csv_output.format("%.6f", row[i]);
+		    }
+		}
+		csv_output.print('\n');
+	    }
+	} catch (IOException e) {
+	    throw new SimulationException("Error while writing time series file!");
+	}
+    }
+
+    /**
+     * Samples the remaining windows up to the specified instant, including a last shorter window if needed,
+     * and closes the output file.
+     *
+     * @param t the end of the simulation (in picoseconds)
+     * @throws SimulationException if the file cannot be written
+     */
+    public void close (long t) {
+	sampleUntil(t + 1);
+	if (last_sample_time < t) {
+	    sample(t);
+	}
+	try {
+	    if (binary_output != null) {
+		binary_output.close();
+	    } else {
+		csv_output.close();
+		if (csv_output.checkError()) {
+		    throw new IOException();
+		}
+	    }
+	} catch (IOException e) {
+	    throw new SimulationException("Error while writing time series file!");
+	}
+    }
+}
@@ -0,0 +1,46 @@
+package es.uvigo.det.labredes.dualeee;
+
+/**
+ * This class implements a handle to a scheduled event that can be cancelled in constant time.
+ * The handle remembers the sequence number the event got when it was scheduled, so it
+ * becomes stale as soon as the event is handled, cancelled or scheduled again.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class TimerHandle {
+    /**
+     * The scheduled event.
+     */
+    Event event;
+    /**
+     * The sequence number of the event when it was scheduled.
+     */
+    long sequence_number;
+
+    /**
+     * Creates a new handle not referring to any event.
+     */
+    public TimerHandle () {
+	event = null;
+	sequence_number = -1;
+    }
+
+    /**
+     * Returns the scheduled event.
+     *
+     * @return the scheduled event or null if the handle does not refer to any event
+     */
+    public Event getEvent () {
+	return event;
+    }
+
+    /**
+     * Checks whether the event is still waiting to be handled.
+     *
+     * @return true if the event is still scheduled and has not been cancelled
+     */
+    public boolean isPending () {
+	return event != null && event.scheduled && event.sequence_number == sequence_number;
+    }
+}
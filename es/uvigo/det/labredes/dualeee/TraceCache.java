@@ -0,0 +1,146 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the traces loaded by all the simulation runs of the process, so every trace
+ * is read from disk only once. Traces are shared read-only: each generator keeps its own cursor.
+ * <p>
+ * The least recently used traces are evicted when the cached traces take more memory than the
+ * memory budget. A trace that is evicted while some generators are still reading it remains valid
+ * for them; it is just loaded again by the next generator that requests it.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public final class TraceCache {
+    /**
+     * The cached traces, in access order.
+     */
+    private static final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    /**
+     * The memory budget (in bytes). Default = 1 GB.
+     */
+    private static long memory_budget = 1L << 30;
+    /**
+     * The memory taken by the cached traces (in bytes).
+     */
+    private static long memory_used = 0;
+
+    /**
+     * A cached trace, loaded by the first generator that requests it.
+     */
+    private static class Entry {
+	volatile TraceData data;
+	long memory_size;
+    }
+
+    private TraceCache () {}
+
+    /**
+     * Sets the memory budget, evicting the least recently used traces if needed.
+     *
+     * @param bytes the memory budget (in bytes)
+     */
+    public static synchronized void setMemoryBudget (long bytes) {
+	memory_budget = bytes;
+	evict();
+    }
+
+    /**
+     * Returns the memory budget.
+     *
+     * @return the memory budget (in bytes)
+     */
+    public static synchronized long getMemoryBudget () {
+	return memory_budget;
+    }
+
+    /**
+     * Returns the memory taken by the cached traces.
+     *
+     * @return the memory taken by the cached traces (in bytes)
+     */
+    public static synchronized long getMemoryUsed () {
+	return memory_used;
+    }
+
+    /**
+     * Removes all the cached traces.
+     */
+    public static synchronized void clear () {
+	entries.clear();
+	memory_used = 0;
+    }
+
+    /**
+     * Returns the specified trace, loading it if it is not cached.
+     * Binary traces hold both times and frame sizes, so they are shared by traffic and frame size generators.
+     *
+     * @param filename    name of the trace file
+     * @param frame_sizes if true the frame sizes of a text trace are requested, otherwise its interarrival times
+     * @return the trace
+     * @throws SimulationException if the trace cannot be loaded
+     */
+    public static TraceData getTrace (String filename, boolean frame_sizes) {
+	String key;
+	try {
+	    key = new File(filename).getCanonicalPath();
+	} catch (IOException e) {
+	    throw new SimulationException("Trace file not found!");
+	}
+	boolean binary = BinaryTrace.isBinaryTrace(filename);
+	if (!binary) {
+	    key += frame_sizes ? " (frame sizes)" : " (interarrival times)";
+	}
+
+	Entry entry;
+	synchronized (TraceCache.class) {
+	    entry = entries.get(key);
+	    if (entry == null) {
+		entry = new Entry();
+		entries.put(key, entry);
+	    }
+	}
+	// Traces are loaded outside the cache lock, so different traces can be loaded concurrently
+	synchronized (entry) {
+	    if (entry.data == null) {
+		try {
+		    entry.data = binary ? new BinaryTrace(filename) : new TextTrace(filename, frame_sizes);
+		} catch (SimulationException e) {
+		    synchronized (TraceCache.class) {
+			if (entries.get(key) == entry) {
+			    entries.remove(key);
+			}
+		    }
+		    throw e;
+		}
+		synchronized (TraceCache.class) {
+		    if (entries.get(key) == entry) {
+			entry.memory_size = entry.data.getMemorySize();
+			memory_used += entry.memory_size;
+			evict();
+		    }
+		}
+	    }
+	    return entry.data;
+	}
+    }
+
+    /**
+     * Evicts the least recently used traces until the memory budget is met.
+     */
+    private static void evict () {
+	Iterator<Entry> it = entries.values().iterator();
+	while (memory_used > memory_budget && it.hasNext()) {
+	    Entry entry = it.next();
+	    if (entry.data != null) {
+		memory_used -= entry.memory_size;
+		it.remove();
+	    }
+	}
+    }
+}
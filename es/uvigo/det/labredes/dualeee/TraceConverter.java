@@ -0,0 +1,317 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * TraceConverter: converts a pair of text trace files (interarrival times and frame sizes) into a binary trace.
+ * <p>
+ * Text traces are split into chunks at line boundaries and parsed in parallel. The number of lines of
+ * every chunk is counted first, so a prefix sum gives the index of the first record of each chunk and
+ * every chunk is written directly at its place in the memory-mapped output file. With option -a,
+ * interarrival times are turned into arrival times with a parallel prefix sum: each chunk accumulates
+ * its own times and then adds the total time of all the preceding chunks. Since floating point addition
+ * is not associative, these arrival times may differ in the last bit from those accumulated sequentially
+ * from the text trace.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public final class TraceConverter {
+    /**
+     * The maximum size of a chunk of text (in bytes).
+     */
+    private static final long MAX_CHUNK_SIZE = 1 << 28;
+
+    private TraceConverter () {}
+
+    /**
+     * Converts the specified text traces into a binary trace.
+     *
+     * @param traffic_file    name of the text file with an interarrival time (in seconds) per line
+     * @param frame_size_file name of the text file with a frame size (in bytes) per line
+     * @param output_file     name of the binary trace file
+     * @param absolute        if true arrival times are stored instead of interarrival times
+     * @param threads         the number of threads
+     * @return the number of records of the binary trace
+     * @throws SimulationException if the text traces are not valid
+     */
+    public static long convert (String traffic_file, String frame_size_file, String output_file, boolean absolute, int threads) {
+	ExecutorService executor = Executors.newFixedThreadPool(threads);
+	try (FileChannel traffic = new RandomAccessFile(traffic_file, "r").getChannel();
+	     FileChannel frame_sizes = new RandomAccessFile(frame_size_file, "r").getChannel()) {
+	    long[] traffic_chunks = splitLines(traffic, threads);
+	    long[] traffic_records = countLines(executor, traffic, traffic_chunks);
+	    long[] frame_size_chunks = splitLines(frame_sizes, threads);
+	    long[] frame_size_records = countLines(executor, frame_sizes, frame_size_chunks);
+
+	    long num_records = traffic_records[traffic_records.length - 1];
+	    BinaryTrace trace = new BinaryTrace(output_file, num_records, absolute ? BinaryTrace.ABSOLUTE : 0);
+
+	    List<Callable<Double>> tasks = new ArrayList<Callable<Double>>();
+	    for (int i = 0; i + 1 < traffic_chunks.length; i++) {
+		tasks.add(new ChunkParser(trace, traffic, traffic_chunks[i], traffic_chunks[i+1], traffic_records[i], true, absolute));
+	    }
+	    for (int i = 0; i + 1 < frame_size_chunks.length; i++) {
+		tasks.add(new ChunkParser(trace, frame_sizes, frame_size_chunks[i], frame_size_chunks[i+1], frame_size_records[i], false, false));
+	    }
+	    List<Double> chunk_times = invokeAll(executor, tasks);
+
+	    if (absolute) {
+		tasks.clear();
+		double carry = 0.0;
+		for (int i = 0; i + 1 < traffic_chunks.length; i++) {
+		    if (i > 0) {
+			tasks.add(new ChunkShifter(trace, traffic_records[i], traffic_records[i+1], carry));
+		    }
+		    carry += chunk_times.get(i);
+		}
+		invokeAll(executor, tasks);
+	    }
+	    trace.force();
+	    return num_records;
+	} catch (FileNotFoundException e) {
+	    throw new SimulationException("Trace file not found!");
+	} catch (IOException e) {
+	    throw new SimulationException("Error while reading trace file!");
+	} finally {
+	    executor.shutdownNow();
+	}
+    }
+
+    /**
+     * Splits the specified text file into chunks that start at the beginning of a line.
+     *
+     * @return the offsets of the chunks, followed by the file size
+     */
+    private static long[] splitLines (FileChannel channel, int threads) throws IOException {
+	long size = channel.size();
+	int num_chunks = (int) Math.max(threads, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+	long[] offsets = new long[num_chunks + 1];
+	ByteBuffer buffer = ByteBuffer.allocate(4096);
+	int n = 1;
+	for (int i = 1; i < num_chunks; i++) {
+	    long pos = Math.max(offsets[n-1], size * i / num_chunks);
+	    // Move forward to the byte following the next line feed
+	    boolean found = false;
+	    while (!found && pos < size) {
+		buffer.clear();
+		int read = channel.read(buffer, pos);
+		for (int j = 0; j < read; j++) {
+		    if (buffer.get(j) == '\n') {
+			pos += j + 1;
+			found = true;
+			break;
+		    }
+		}
+		if (!found) {
+		    pos += read;
+		}
+	    }
+	    if (pos > offsets[n-1] && pos < size) {
+		offsets[n++] = pos;
+	    }
+	}
+	offsets[n++] = size;
+	long[] chunks = new long[n];
+	System.arraycopy(offsets, 0, chunks, 0, n);
+	return chunks;
+    }
+
+    /**
+     * Counts the lines of every chunk in parallel.
+     *
+     * @return the index of the first line of every chunk, followed by the total number of lines
+     */
+    private static long[] countLines (ExecutorService executor, final FileChannel channel, long[] chunks) throws IOException {
+	List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+	for (int i = 0; i + 1 < chunks.length; i++) {
+	    final long start = chunks[i], end = chunks[i+1];
+	    tasks.add(new Callable<Long>() {
+		    public Long call () throws IOException {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+			long lines = 0;
+			int length = buffer.limit();
+			for (int j = 0; j < length; j++) {
+			    if (buffer.get(j) == '\n') {
+				lines++;
+			    }
+			}
+			if (length > 0 && buffer.get(length - 1) != '\n') {
+			    lines++;
+			}
+			return lines;
+		    }
+		});
+	}
+	List<Long> counts = invokeAll(executor, tasks);
+	long[] first_lines = new long[chunks.length];
+	for (int i = 0; i + 1 < chunks.length; i++) {
+	    first_lines[i+1] = first_lines[i] + counts.get(i);
+	}
+	return first_lines;
+    }
+
+    /**
+     * Runs the specified tasks and returns their results in order.
+     */
+    private static <T> List<T> invokeAll (ExecutorService executor, List<Callable<T>> tasks) {
+	List<T> results = new ArrayList<T>();
+	try {
+	    for (Future<T> future : executor.invokeAll(tasks)) {
+		results.add(future.get());
+	    }
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof SimulationException) {
+		throw (SimulationException) e.getCause();
+	    }
+	    throw new SimulationException("Error while reading trace file!");
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new SimulationException("Trace conversion interrupted!");
+	}
+	return results;
+    }
+
+    /**
+     * Parses the lines of a chunk of a text trace and writes them into the binary trace.
+     */
+    private static class ChunkParser implements Callable<Double> {
+	private BinaryTrace trace;
+	private FileChannel channel;
+	private long start, end, first_record;
+	private boolean times, absolute;
+
+	ChunkParser (BinaryTrace bt, FileChannel fc, long s, long e, long fr, boolean t, boolean a) {
+	    trace = bt;
+	    channel = fc;
+	    start = s;
+	    end = e;
+	    first_record = fr;
+	    times = t;
+	    absolute = a;
+	}
+
+	/**
+	 * Parses the chunk and returns the sum of its interarrival times.
+	 */
+	public Double call () throws IOException {
+	    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+	    byte[] token = new byte[64];
+	    double sum = 0.0;
+	    long record = first_record;
+	    int length = buffer.limit();
+	    int pos = 0;
+	    while (pos < length && (times || record < trace.num_records)) {
+		// The first field of the line ends at the first whitespace
+		int token_length = 0;
+		byte b;
+		while (pos < length && (b = buffer.get(pos)) != '\n' && b != ' ' && b != '\t' && b != '\r' && b != '\f' && b != 0x0B) {
+		    if (token_length == token.length) {
+			token = Arrays.copyOf(token, 2 * token.length);
+		    }
+		    token[token_length++] = b;
+		    pos++;
+		}
+		while (pos < length && buffer.get(pos) != '\n') {
+		    pos++;
+		}
+		pos++;
+		String field = new String(token, 0, token_length, StandardCharsets.ISO_8859_1);
+		if (times) {
+		    double t;
+		    try {
+			t = Double.parseDouble(field);
+		    } catch (NumberFormatException e) {
+			throw new SimulationException("Trace file: invalid interarrival time!");
+		    }
+		    sum += t;
+		    trace.putTime(record++, absolute ? sum : t);
+		} else {
+		    try {
+			trace.putFrameSize(record++, Integer.parseInt(field));
+		    } catch (NumberFormatException e) {
+			throw new SimulationException("Trace file: invalid frame size!");
+		    }
+		}
+	    }
+	    return sum;
+	}
+    }
+
+    /**
+     * Adds the total time of the preceding chunks to the arrival times of a chunk.
+     */
+    private static class ChunkShifter implements Callable<Double> {
+	private BinaryTrace trace;
+	private long first_record, end_record;
+	private double carry;
+
+	ChunkShifter (BinaryTrace bt, long fr, long er, double c) {
+	    trace = bt;
+	    first_record = fr;
+	    end_record = er;
+	    carry = c;
+	}
+
+	/**
+	 * Shifts the arrival times of the chunk.
+	 */
+	public Double call () {
+	    for (long i = first_record; i < end_record; i++) {
+		trace.putTime(i, carry + trace.getTime(i));
+	    }
+	    return carry;
+	}
+    }
+
+    /**
+     * Main method.
+     * Usage: java TraceConverter [-a] [-t threads] traffic_file frame_size_file binary_trace_file
+     */
+    public static void main (String[] args) {
+	boolean absolute = false;
+	int threads = Runtime.getRuntime().availableProcessors();
+	List<String> files = new ArrayList<String>();
+
+	// Arguments parsing
+	for (int i = 0; i < args.length; i++) {
+	    if (args[i].equals("-a")) {
+		absolute = true;
+	    } else if (args[i].equals("-t")) {
+		try {
+		    threads = Integer.parseInt(args[i+1]);
+		} catch (NumberFormatException e) {
+		    DualModeEeeSimulator.printError("Invalid number of threads!");
+		}
+		if (threads < 1) {
+		    DualModeEeeSimulator.printError("Invalid number of threads!");
+		}
+		i++;
+	    } else {
+		files.add(args[i]);
+	    }
+	}
+	if (files.size() != 3) {
+	    DualModeEeeSimulator.printError("Usage: java TraceConverter [-a] [-t threads] traffic_file frame_size_file binary_trace_file");
+	}
+
+	try {
+	    long records = convert(files.get(0), files.get(1), files.get(2), absolute, threads);
+	    System.out.format("Records: %d %n", records);
+	} catch (SimulationException e) {
+	    DualModeEeeSimulator.printError(e.getMessage());
+	}
+    }
+}
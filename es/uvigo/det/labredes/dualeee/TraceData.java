@@ -0,0 +1,49 @@
+package es.uvigo.det.labredes.dualeee;
+
+/**
+ * This class holds the records of a trace loaded in memory. Records are read by index,
+ * so any number of generators can read the same trace through their own cursors.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+abstract public class TraceData {
+    /**
+     * The number of valid records of the trace.
+     */
+    public long num_records;
+    /**
+     * The error found right after the last valid record, or null if all the records are valid.
+     */
+    public String error_message;
+
+    /**
+     * Returns true if records hold arrival times instead of interarrival times.
+     *
+     * @return true if the trace holds arrival times
+     */
+    abstract public boolean isAbsolute ();
+
+    /**
+     * Returns the time of the specified record.
+     *
+     * @param i the record index
+     * @return the (inter)arrival time (in seconds)
+     */
+    abstract public double getTime (long i);
+
+    /**
+     * Returns the frame size of the specified record.
+     *
+     * @param i the record index
+     * @return the frame size (in bytes)
+     */
+    abstract public int getFrameSize (long i);
+
+    /**
+     * Returns the amount of memory taken by the records.
+     *
+     * @return the amount of memory (in bytes)
+     */
+    abstract public long getMemorySize ();
+}
@@ -4,15 +4,21 @@ import java.io.*;
 
 /**
  * This class extends FrameSizeGenerator class to feed the simulator with a trace file.
+ * The trace can be either a text file with a frame size (in bytes) per line or a binary trace.
+ * Traces are loaded through the process-wide trace cache.
  *
  * @author Sergio Herreria-Alonso 
  * @version 1.0
  */
 public class TraceFrameSizeGenerator extends FrameSizeGenerator {
     /**
-     * The trace file.
+     * The trace.
      */
-    private BufferedReader tracefile;
+    private TraceData trace;
+    /**
+     * The index of the next record of the trace.
+     */
+    private long next_record;
 
     /**
      * Creates a new trace frame size generator.
@@ -21,11 +27,8 @@ public class TraceFrameSizeGenerator extends FrameSizeGenerator {
      */
     public TraceFrameSizeGenerator (String filename) {
 	super(0);
-	try {
-	    tracefile = new BufferedReader(new FileReader(filename));
-	} catch (FileNotFoundException e) {
-	    DualModeEeeSimulator.printError("Trace file not found!");
-	}
+	trace = TraceCache.getTrace(filename, true);
+	next_record = 0;
     }
 
     /**
@@ -35,19 +38,54 @@ public class TraceFrameSizeGenerator extends FrameSizeGenerator {
      */
     public int getNextFrameSize () {
 	int next_frame_size = 0;
-	try {
-	    String line = tracefile.readLine();
-	    if (line != null) {
-		String[] line_fields = line.split("\\s+");
-		try {
-		    next_frame_size = Integer.parseInt(line_fields[0]);
-		} catch (NumberFormatException e) {
-		    DualModeEeeSimulator.printError("Trace file: invalid frame size!");
-		}
-	    }
-	} catch (IOException e) {
-	    DualModeEeeSimulator.printError("Error while reading trace file!");
+	if (next_record < trace.num_records) {
+	    next_frame_size = trace.getFrameSize(next_record++);
+	} else if (trace.error_message != null) {
+	    throw new SimulationException(trace.error_message);
 	}
 	return next_frame_size;
     }
+
+    /**
+     * Fills the specified array with the next frame sizes of the trace.
+     * The batch stops at the end of the trace, so an incomplete trace only fails once its last frame is consumed.
+     *
+     * @param sizes the array to be filled with the frame sizes (in bytes)
+     * @param n     the maximum amount of frame sizes to be generated
+     * @return the amount of frame sizes generated, at least one
+     * @throws SimulationException if the trace could not be completely read
+     */
+    public int getNextFrameSizes (int[] sizes, int n) {
+	if (next_record >= trace.num_records) {
+	    sizes[0] = getNextFrameSize();
+	    return 1;
+	}
+	int count = (int) Math.min(n, trace.num_records - next_record);
+	for (int i = 0; i < count; i++) {
+	    sizes[i] = trace.getFrameSize(next_record++);
+	}
+	return count;
+    }
+
+    /**
+     * Writes the state of this generator, including the next record of the trace.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {
+	super.writeState(out);
+	out.writeLong(next_record);
+    }
+
+    /**
+     * Reads a state written by writeState, so that this generator goes on with the same frame sizes.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     */
+    public void readState (DataInput in) throws IOException {
+	super.readState(in);
+	next_record = in.readLong();
+    }
 }
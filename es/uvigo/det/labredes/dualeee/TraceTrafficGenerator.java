@@ -4,15 +4,21 @@ import java.io.*;
 
 /**
  * This class extends TrafficGenerator class to feed the simulator with a trace file.
+ * The trace can be either a text file with an interarrival time (in seconds) per line or a binary trace.
+ * Traces are loaded through the process-wide trace cache.
  *
  * @author Sergio Herreria-Alonso 
  * @version 1.0
  */
 public class TraceTrafficGenerator extends TrafficGenerator {
     /**
-     * The trace file.
+     * The trace.
      */
-    private BufferedReader tracefile;
+    private TraceData trace;
+    /**
+     * The index of the next record of the trace.
+     */
+    private long next_record;
 
     /**
      * Creates a new trace traffic generator.
@@ -21,11 +27,8 @@ public class TraceTrafficGenerator extends TrafficGenerator {
      */
     public TraceTrafficGenerator (String filename) {
 	super(0, 0);
-	try {
-	    tracefile = new BufferedReader(new FileReader(filename));
-	} catch (FileNotFoundException e) {
-	    DualModeEeeSimulator.printError("Trace file not found!");
-	}
+	trace = TraceCache.getTrace(filename, false);
+	next_record = 0;
     }
 
     /**
@@ -34,21 +37,60 @@ public class TraceTrafficGenerator extends TrafficGenerator {
      * @return instant at which the next frame arrives (in seconds)
      */
     public double getNextArrival () {
-	try {
-	    String line = tracefile.readLine();
-	    if (line != null) {
-		String[] line_fields = line.split("\\s+");
-		try {
-		    arrival_time += Double.parseDouble(line_fields[0]);
-		} catch (NumberFormatException e) {
-		    DualModeEeeSimulator.printError("Trace file: invalid interarrival time!");
-		}
-	    } else {
-		arrival_time = Double.MAX_VALUE;
-	    }
-	} catch (IOException e) {
-	    DualModeEeeSimulator.printError("Error while reading trace file!");
+	if (next_record < trace.num_records) {
+	    double t = trace.getTime(next_record++);
+	    arrival_time = trace.isAbsolute() ? t : arrival_time + t;
+	} else if (trace.error_message != null) {
+	    throw new SimulationException(trace.error_message);
+	} else {
+	    arrival_time = Double.MAX_VALUE;
 	}
 	return arrival_time;
     }
+
+    /**
+     * Fills the specified array with the instants at which the next frames of the trace arrive.
+     * The batch stops at the end of the trace, so an incomplete trace only fails once its last frame is consumed.
+     *
+     * @param times the array to be filled with the arrival instants (in picoseconds)
+     * @param n     the maximum amount of arrivals to be generated
+     * @return the amount of arrivals generated, at least one
+     * @throws SimulationException if the trace could not be completely read
+     */
+    public int getNextArrivals (long[] times, int n) {
+	if (next_record >= trace.num_records) {
+	    times[0] = (long) (1e12 * getNextArrival());
+	    return 1;
+	}
+	int count = (int) Math.min(n, trace.num_records - next_record);
+	boolean absolute = trace.isAbsolute();
+	for (int i = 0; i < count; i++) {
+	    double t = trace.getTime(next_record++);
+	    arrival_time = absolute ? t : arrival_time + t;
+	    times[i] = (long) (1e12 * arrival_time);
+	}
+	return count;
+    }
+
+    /**
+     * Writes the state of this generator, including the next record of the trace.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {
+	super.writeState(out);
+	out.writeLong(next_record);
+    }
+
+    /**
+     * Reads a state written by writeState, so that this generator goes on with the same arrivals.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     */
+    public void readState (DataInput in) throws IOException {
+	super.readState(in);
+	next_record = in.readLong();
+    }
 }
@@ -1,6 +1,6 @@
 package es.uvigo.det.labredes.dualeee;
 
-import java.util.Random;
+import java.io.*;
 
 /**
  * This class simulates the arrival of frames.
@@ -22,9 +22,13 @@ abstract public class TrafficGenerator {
      */
     public double arrival_time;
     /**
-     * The random number generator.
+     * The random number generator (java.util.Random unless another source is set).
      */
-    public Random rng;
+    public RandomSource rng;
+    /**
+     * The interarrival times drawn for the current batch of arrivals.
+     */
+    private double[] buffer = new double[0];
 
     /**
      * Creates a new random traffic generator.
@@ -36,7 +40,7 @@ abstract public class TrafficGenerator {
 	frame_size = 8 * size;
 	frame_rate = frame_size > 0 ? rate / frame_size : 0;
 	arrival_time = 0.0;
-	rng = new Random();
+	rng = new JavaRandomSource();
     }
 
     /**
@@ -74,4 +78,55 @@ abstract public class TrafficGenerator {
      * @return instant at which the next frame arrives (in seconds)
      */
     abstract public double getNextArrival ();
+
+    /**
+     * Fills the specified array with the instants at which the next frames arrive.
+     * By default, getNextArrival is called for each frame; generators override it with tighter sampling loops
+     * that return the same instants.
+     *
+     * @param times the array to be filled with the arrival instants (in picoseconds)
+     * @param n     the maximum amount of arrivals to be generated
+     * @return the amount of arrivals generated, at least one
+     */
+    public int getNextArrivals (long[] times, int n) {
+	for (int i = 0; i < n; i++) {
+	    times[i] = (long) (1e12 * getNextArrival());
+	}
+	return n;
+    }
+
+    /**
+     * Writes the state of this generator: the instant of the former arrival and the state of its random source.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {
+	out.writeDouble(arrival_time);
+	rng.writeState(out);
+    }
+
+    /**
+     * Reads a state written by writeState, so that this generator goes on with the same arrivals.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     */
+    public void readState (DataInput in) throws IOException {
+	arrival_time = in.readDouble();
+	rng.readState(in);
+    }
+
+    /**
+     * Returns an array for the interarrival times of a batch, reused by the next call.
+     *
+     * @param n the amount of interarrival times
+     * @return an array of at least n elements
+     */
+    protected double[] getBuffer (int n) {
+	if (buffer.length < n) {
+	    buffer = new double[n];
+	}
+	return buffer;
+    }
 }
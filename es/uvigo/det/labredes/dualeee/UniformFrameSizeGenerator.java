@@ -36,4 +36,28 @@ public class UniformFrameSizeGenerator extends FrameSizeGenerator {
     public int getNextFrameSize () {
 	return min_frame_size + rng.nextInt(max_frame_size - min_frame_size + 1);
     }
+
+    /**
+     * Returns the minimum frame size.
+     *
+     * @return the minimum frame size (in bytes)
+     */
+    public int getMinimumFrameSize () {
+	return min_frame_size;
+    }
+
+    /**
+     * Fills the specified array with the next frame sizes.
+     *
+     * @param sizes the array to be filled with the frame sizes (in bytes)
+     * @param n     the amount of frame sizes to be generated
+     * @return n
+     */
+    public int getNextFrameSizes (int[] sizes, int n) {
+	int range = max_frame_size - min_frame_size + 1;
+	for (int i = 0; i < n; i++) {
+	    sizes[i] = min_frame_size + rng.nextInt(range);
+	}
+	return n;
+    }
 }
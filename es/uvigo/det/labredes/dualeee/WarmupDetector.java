@@ -0,0 +1,258 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.PrintStream;
+
+/**
+ * This class runs a simulation detecting the end of its initial transient with the MSER-5 rule and discards
+ * the statistics measured up to then, as if they had been reset at that instant.
+ * <p>
+ * The run is split into batches of five windows of equal simulated time, and the average frame delay and the
+ * power consumption of each batch are recorded, along with the statistics of every link at the beginning of
+ * each batch. Whenever the maximum number of batches is reached, adjacent batches are merged and the batch length
+ * is doubled. At the end of the run, the truncation point of each series is the beginning of the batch that
+ * minimizes the marginal standard error (the variance of the remaining batch means divided by their number),
+ * searched over the first half of the run as the MSER rule prescribes. The warm-up period ends at the latest of
+ * the truncation points of both series. If the minimum falls at the middle of the run, the transient may be longer
+ * than half the run and the warm-up period is not detected, so no statistic is discarded.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class WarmupDetector {
+    /**
+     * The number of windows per batch.
+     */
+    public static final int BATCH_WINDOWS = 5;
+    /**
+     * The minimum number of batches needed to detect the warm-up period.
+     */
+    public static final int MIN_BATCHES = 20;
+    /**
+     * The maximum number of batches kept (must be even).
+     */
+    public static final int MAX_BATCHES = 64;
+
+    /**
+     * The simulation run.
+     */
+    private SimulationContext context;
+    /**
+     * The links of the simulation run.
+     */
+    private EeeLink[] links;
+    /**
+     * The current batch length (in picoseconds).
+     */
+    private long batch_length;
+
+    // Per batch sums: frame delays (in useconds), frames sent and energy (in peak power x picoseconds)
+    private double[] batch_delays, batch_frames, batch_energies;
+    private int num_batches;
+
+    // Per link statistics and delay histogram counts at the beginning of each batch, and maximum delays of each batch
+    private LinkStatistics[][] batch_statistics;
+    private long[][][] batch_histograms;
+    private long[][] batch_maximum_delays, batch_maximum_end_to_end_delays;
+
+    // Results
+    private long truncation_point;
+
+    /**
+     * Creates a new warm-up detector for the specified simulation run.
+     *
+     * @param ctx the simulation run, whose warm-up window sets the length of the first batches
+     */
+    public WarmupDetector (SimulationContext ctx) {
+	context = ctx;
+	batch_length = BATCH_WINDOWS * ctx.warmup_window;
+	batch_delays = new double[MAX_BATCHES];
+	batch_frames = new double[MAX_BATCHES];
+	batch_energies = new double[MAX_BATCHES];
+	num_batches = 0;
+	batch_statistics = new LinkStatistics[MAX_BATCHES + 1][];
+	batch_histograms = new long[MAX_BATCHES + 1][][];
+	batch_maximum_delays = new long[MAX_BATCHES][];
+	batch_maximum_end_to_end_delays = new long[MAX_BATCHES][];
+	truncation_point = -1;
+    }
+
+    /**
+     * Runs the simulation up to the simulation length and discards the statistics of the warm-up period, if detected.
+     *
+     * @throws SimulationException if the simulation cannot be completed
+     */
+    public void run () {
+	if (context.sampler != null || context.sampling_file != null) {
+	    throw new SimulationException("Sampling cannot be used with warm-up detection!");
+	}
+	context.start();
+	try {
+	    if (context.ports == null) {
+		links = new EeeLink[] {context.link};
+	    } else {
+		links = new EeeLink[context.ports.length];
+		for (int i = 0; i < links.length; i++) {
+		    links[i] = context.ports[i].link;
+		}
+	    }
+	    runBatches(context.simulation_length);
+	    truncate();
+	} finally {
+	    context.finish();
+	}
+    }
+
+    /**
+     * Runs the batches up to the specified instant.
+     */
+    private void runBatches (long cap) {
+	long t = 0;
+	double prev_delay = 0, prev_frames = 0, prev_energy = 0;
+	takeSnapshot(0, 0);
+	while (t < cap) {
+	    long batch_end = Math.min(cap, t + batch_length);
+	    context.runUntil(batch_end);
+	    if (batch_end - t == batch_length) {
+		LinkStatistics stats = context.getStatistics(batch_end);
+		double frames = stats.get("frames_sent");
+		double delay = frames > 0 ? stats.get("average_frame_delay") * frames : 0;
+		double energy = stats.get("power_consumption") * batch_end;
+		addBatch(batch_end, delay - prev_delay, frames - prev_frames, energy - prev_energy);
+		prev_delay = delay;
+		prev_frames = frames;
+		prev_energy = energy;
+	    }
+	    t = batch_end;
+	}
+    }
+
+    /**
+     * Saves the statistics of every link at the beginning of the specified batch.
+     */
+    private void takeSnapshot (int batch, long t) {
+	batch_statistics[batch] = new LinkStatistics[links.length];
+	batch_histograms[batch] = new long[links.length][];
+	for (int i = 0; i < links.length; i++) {
+	    batch_statistics[batch][i] = links[i].getStatistics(t);
+	    if (links[i].getDelayHistogram() != null) {
+		batch_histograms[batch][i] = links[i].getDelayHistogram().getCounts();
+	    }
+	}
+    }
+
+    /**
+     * Adds a new batch ending at the specified instant, merging adjacent batches if the maximum number of batches
+     * is reached.
+     */
+    private void addBatch (long t, double delay, double frames, double energy) {
+	batch_delays[num_batches] = delay;
+	batch_frames[num_batches] = frames;
+	batch_energies[num_batches] = energy;
+	batch_maximum_delays[num_batches] = new long[links.length];
+	batch_maximum_end_to_end_delays[num_batches] = new long[links.length];
+	for (int i = 0; i < links.length; i++) {
+	    batch_maximum_delays[num_batches][i] = links[i].pollWindowMaximumDelay();
+	    batch_maximum_end_to_end_delays[num_batches][i] = links[i].pollWindowMaximumEndToEndDelay();
+	}
+	num_batches++;
+	takeSnapshot(num_batches, t);
+	if (num_batches == MAX_BATCHES) {
+	    for (int i = 0; i < MAX_BATCHES / 2; i++) {
+		batch_delays[i] = batch_delays[2*i] + batch_delays[2*i+1];
+		batch_frames[i] = batch_frames[2*i] + batch_frames[2*i+1];
+		batch_energies[i] = batch_energies[2*i] + batch_energies[2*i+1];
+		for (int j = 0; j < links.length; j++) {
+		    batch_maximum_delays[i][j] = Math.max(batch_maximum_delays[2*i][j], batch_maximum_delays[2*i+1][j]);
+		    batch_maximum_end_to_end_delays[i][j] = Math.max(batch_maximum_end_to_end_delays[2*i][j], batch_maximum_end_to_end_delays[2*i+1][j]);
+		}
+		batch_statistics[i+1] = batch_statistics[2*i+2];
+		batch_histograms[i+1] = batch_histograms[2*i+2];
+	    }
+	    for (int i = MAX_BATCHES / 2 + 1; i <= MAX_BATCHES; i++) {
+		batch_statistics[i] = null;
+		batch_histograms[i] = null;
+	    }
+	    num_batches = MAX_BATCHES / 2;
+	    batch_length *= 2;
+	}
+    }
+
+    /**
+     * Detects the warm-up period and discards the statistics measured during it.
+     */
+    private void truncate () {
+	if (num_batches < MIN_BATCHES) {
+	    return;
+	}
+	double[] delays = new double[num_batches];
+	double[] powers = new double[num_batches];
+	boolean all_sent = true;
+	for (int i = 0; i < num_batches; i++) {
+	    all_sent &= batch_frames[i] > 0;
+	    delays[i] = batch_frames[i] > 0 ? batch_delays[i] / batch_frames[i] : 0;
+	    powers[i] = batch_energies[i] / batch_length;
+	}
+	int batch = getTruncationBatch(powers);
+	if (batch >= 0 && all_sent) {
+	    int delay_batch = getTruncationBatch(delays);
+	    batch = delay_batch >= 0 ? Math.max(batch, delay_batch) : -1;
+	}
+	if (batch < 0) {
+	    return;
+	}
+	truncation_point = batch * batch_length;
+	for (int i = 0; i < links.length; i++) {
+	    long max_delay = links[i].pollWindowMaximumDelay();
+	    long max_end_to_end_delay = links[i].pollWindowMaximumEndToEndDelay();
+	    for (int j = batch; j < num_batches; j++) {
+		max_delay = Math.max(max_delay, batch_maximum_delays[j][i]);
+		max_end_to_end_delay = Math.max(max_end_to_end_delay, batch_maximum_end_to_end_delays[j][i]);
+	    }
+	    links[i].truncateStatistics(truncation_point, batch_statistics[batch][i], max_delay, max_end_to_end_delay, batch_histograms[batch][i]);
+	}
+    }
+
+    /**
+     * Returns the first batch after the truncation point of the specified series of batch means according to
+     * the MSER rule, or -1 if the minimum marginal standard error is found at the middle of the series.
+     */
+    private static int getTruncationBatch (double[] means) {
+	int n = means.length;
+	double sum = 0, sum_squares = 0;
+	double min_error = Double.POSITIVE_INFINITY;
+	int batch = -1;
+	for (int d = n - 1; d >= 0; d--) {
+	    sum += means[d];
+	    sum_squares += means[d] * means[d];
+	    int m = n - d;
+	    double error = (sum_squares - sum * sum / m) / ((double) m * m);
+	    if (d <= n / 2 && error <= min_error) {
+		min_error = error;
+		batch = d;
+	    }
+	}
+	return batch < n / 2 ? batch : -1;
+    }
+
+    /**
+     * Returns the end of the warm-up period.
+     *
+     * @return the truncation point (in picoseconds) or -1 if the warm-up period has not been detected
+     */
+    public long getTruncationPoint () {
+	return truncation_point;
+    }
+
+    /**
+     * Prints on the specified output stream the end of the warm-up period.
+     *
+     * @param out the output stream
+     */
+    public void printStatistics (PrintStream out) {
+	if (truncation_point >= 0) {
+	    out.format("Warm-up: truncation point %.6f s %n", truncation_point / 1e12);
+	} else {
+	    out.format("Warm-up: not detected (run longer or with shorter windows) %n");
+	}
+    }
+}
@@ -0,0 +1,191 @@
+package es.uvigo.det.labredes.dualeee;
+
+import java.io.*;
+
+/**
+ * This class extends RandomSource class to draw random numbers from a xoshiro256** generator.
+ * <p>
+ * The state is initialized from the seed with SplitMix64, so any two different seeds give independent streams.
+ * Exponential random numbers are drawn with the ziggurat method of Marsaglia and Tsang, which only computes
+ * a logarithm or an exponential in about 1% of the draws, and Pareto random numbers are obtained from them.
+ *
+ * @author Sergio Herreria-Alonso
+ * @version 1.0
+ */
+public class XoshiroRandomSource extends RandomSource {
+    /**
+     * The number of layers of the ziggurat.
+     */
+    private static final int LAYERS = 256;
+    /**
+     * The start of the tail of the ziggurat.
+     */
+    private static final double TAIL_START = 7.697117470131487;
+    /**
+     * The scale of the integer draws of the ziggurat (53 bits).
+     */
+    private static final double SCALE = 0x1.0p53;
+    /**
+     * The ziggurat tables: integer bounds for quick acceptance, layer widths and density at each layer.
+     */
+    private static final long[] KE = new long[LAYERS];
+    private static final double[] WE = new double[LAYERS];
+    private static final double[] FE = new double[LAYERS];
+
+    static {
+	double de = TAIL_START, te = de, ve = 3.949659822581572e-3;
+	double q = ve / Math.exp(-de);
+	KE[0] = (long) ((de / q) * SCALE);
+	KE[1] = 0;
+	WE[0] = q / SCALE;
+	WE[LAYERS-1] = de / SCALE;
+	FE[0] = 1.0;
+	FE[LAYERS-1] = Math.exp(-de);
+	for (int i = LAYERS - 2; i >= 1; i--) {
+	    de = -Math.log(ve / de + Math.exp(-de));
+	    KE[i+1] = (long) ((de / te) * SCALE);
+	    te = de;
+	    FE[i] = Math.exp(-de);
+	    WE[i] = de / SCALE;
+	}
+    }
+
+    /**
+     * The state of the generator.
+     */
+    private long s0, s1, s2, s3;
+
+    /**
+     * Creates a new xoshiro256** generator with a seed taken from the system clock.
+     */
+    public XoshiroRandomSource () {
+	setSeed(System.nanoTime());
+    }
+
+    /**
+     * Sets the seed of the generator.
+     *
+     * @param seed the seed
+     */
+    public void setSeed (long seed) {
+	long x = seed;
+	x += 0x9e3779b97f4a7c15L;
+	s0 = mix(x);
+	x += 0x9e3779b97f4a7c15L;
+	s1 = mix(x);
+	x += 0x9e3779b97f4a7c15L;
+	s2 = mix(x);
+	x += 0x9e3779b97f4a7c15L;
+	s3 = mix(x);
+    }
+
+    /**
+     * Writes the state of the generator.
+     *
+     * @param out the output to which the state is written
+     * @throws IOException if the state cannot be written
+     */
+    public void writeState (DataOutput out) throws IOException {
+	out.writeLong(s0);
+	out.writeLong(s1);
+	out.writeLong(s2);
+	out.writeLong(s3);
+    }
+
+    /**
+     * Reads the state of the generator.
+     *
+     * @param in the input from which the state is read
+     * @throws IOException if the state cannot be read
+     */
+    public void readState (DataInput in) throws IOException {
+	s0 = in.readLong();
+	s1 = in.readLong();
+	s2 = in.readLong();
+	s3 = in.readLong();
+    }
+
+    /**
+     * Returns the SplitMix64 output for the specified state.
+     */
+    private static long mix (long z) {
+	z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+	z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+	return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the next 64 random bits.
+     *
+     * @return the random bits
+     */
+    public long nextLong () {
+	long result = Long.rotateLeft(s1 * 5, 7) * 9;
+	long t = s1 << 17;
+	s2 ^= s0;
+	s3 ^= s1;
+	s1 ^= s2;
+	s0 ^= s3;
+	s2 ^= t;
+	s3 = Long.rotateLeft(s3, 45);
+	return result;
+    }
+
+    /**
+     * Returns a uniform random number.
+     *
+     * @return a random number in [0, 1)
+     */
+    public double nextDouble () {
+	return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Returns a uniform random integer without bias, by Lemire's multiply and reject method.
+     *
+     * @param bound the upper bound (exclusive), which must be positive
+     * @return a random integer in [0, bound)
+     */
+    public int nextInt (int bound) {
+	long m = (nextLong() >>> 32) * bound;
+	long l = m & 0xffffffffL;
+	if (l < bound) {
+	    long threshold = (0x100000000L - bound) % bound;
+	    while (l < threshold) {
+		m = (nextLong() >>> 32) * bound;
+		l = m & 0xffffffffL;
+	    }
+	}
+	return (int) (m >>> 32);
+    }
+
+    /**
+     * Returns an exponential random number with mean 1, drawn with the ziggurat method.
+     * The lowest 8 bits of each draw choose the layer and the highest 53 bits the point within it.
+     *
+     * @return a random number in [0, infinity)
+     */
+    public double nextExponential () {
+	long u = nextLong();
+	int iz = (int) (u & (LAYERS - 1));
+	long jz = u >>> 11;
+	if (jz < KE[iz]) {
+	    return jz * WE[iz];
+	}
+	while (true) {
+	    if (iz == 0) {
+		return TAIL_START - Math.log(1 - nextDouble());
+	    }
+	    double x = jz * WE[iz];
+	    if (FE[iz] + nextDouble() * (FE[iz-1] - FE[iz]) < Math.exp(-x)) {
+		return x;
+	    }
+	    u = nextLong();
+	    iz = (int) (u & (LAYERS - 1));
+	    jz = u >>> 11;
+	    if (jz < KE[iz]) {
+		return jz * WE[iz];
+	    }
+	}
+    }
+}